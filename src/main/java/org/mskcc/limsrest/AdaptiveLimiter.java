@@ -0,0 +1,202 @@
+package org.mskcc.limsrest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD limit on the number of RMI calls in flight against the LIMS server.
+ * <p>
+ * Every completed call reports its round trip time. The limit grows by one per {@code limit} fast calls while callers
+ * are actually using all of it, and is cut by {@link #BACKOFF} when the smoothed latency of a method rises above
+ * {@code tolerance} times that method's baseline or a call fails with a RemoteException. A cut needs at least
+ * {@code limit} completions since the previous one, i.e. the limit is cut at most once per round of in-flight calls.
+ * <p>
+ * Latency is tracked by method (and data type) because a getStringVal and a queryDataRecords differ by far more than
+ * any tolerance. The baseline of a method is its fastest call of the previous {@link #WINDOW} calls so it follows the
+ * server if it gets permanently slower or faster.
+ */
+public class AdaptiveLimiter {
+    static final double BACKOFF = 0.9;
+    static final int WINDOW = 100;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long maxWaitMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private double limit;
+    private int inFlight = 0;
+    private double smoothedNanos = 0;
+    private final Map<String, MethodLatency> latencies = new HashMap<>();
+    private long calls = 0;
+    private long lastCutAt;
+    private long rejected = 0;
+
+    private static class MethodLatency {
+        long calls = 0;
+        double smoothedNanos = 0;
+        long baselineNanos = 0;
+        long windowMinNanos = Long.MAX_VALUE;
+
+        /**
+         * @return smoothed latency relative to the baseline
+         */
+        double add(long latencyNanos) {
+            calls++;
+            windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+            if (baselineNanos == 0 || calls % WINDOW == 0) {
+                baselineNanos = Math.max(1, windowMinNanos);
+                windowMinNanos = Long.MAX_VALUE;
+            }
+            smoothedNanos = smoothedNanos == 0 ? latencyNanos
+                    : (1 - SMOOTHING) * smoothedNanos + SMOOTHING * latencyNanos;
+            return smoothedNanos / baselineNanos;
+        }
+    }
+
+    public AdaptiveLimiter(int minLimit, int maxLimit, int initialLimit, double tolerance, long maxWaitMs) {
+        if (minLimit < 1 || maxLimit < minLimit)
+            throw new IllegalArgumentException("Invalid RMI limits min:" + minLimit + " max:" + maxLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastCutAt = -maxLimit;
+        this.tolerance = tolerance;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    /**
+     * Waits for a free slot, throws {@link LimsConnectionTimeoutException} after {@code maxWaitMs}.
+     */
+    public void acquire() {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejected++;
+                    throw new LimsConnectionTimeoutException("Timed out after " + maxWaitMs +
+                            "ms waiting for one of " + (int) limit + " LIMS RMI call slots.");
+                }
+                remaining = slotFreed.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LimsConnectionTimeoutException("Interrupted waiting for a LIMS RMI call slot.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param method       RMI method and data type of the call, e.g. {@code queryDataRecords(Sample)}
+     * @param latencyNanos round trip time of the call
+     * @param failed       true if the call failed because of the server or network rather than its arguments
+     */
+    public void release(String method, long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit;
+            inFlight--;
+            calls++;
+
+            double ratio = latencies.computeIfAbsent(method, m -> new MethodLatency()).add(latencyNanos);
+            smoothedNanos = smoothedNanos == 0 ? latencyNanos
+                    : (1 - SMOOTHING) * smoothedNanos + SMOOTHING * latencyNanos;
+
+            if (failed || ratio > tolerance) {
+                if (calls - lastCutAt >= (long) limit) {
+                    limit = Math.max(minLimit, limit * BACKOFF);
+                    lastCutAt = calls;
+                }
+            } else if (saturated) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getLatencyMs() {
+        lock.lock();
+        try {
+            return smoothedNanos / 1_000_000;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 0 if the method was not called yet
+     */
+    public double getBaselineLatencyMs(String method) {
+        lock.lock();
+        try {
+            MethodLatency latency = latencies.get(method);
+            return latency == null ? 0 : latency.baselineNanos / 1_000_000.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return baseline latency by method and data type
+     */
+    public Map<String, Double> getBaselineLatencyMs() {
+        lock.lock();
+        try {
+            Map<String, Double> baselines = new TreeMap<>();
+            for (Map.Entry<String, MethodLatency> latency : latencies.entrySet()) {
+                baselines.put(latency.getKey(), latency.getValue().baselineNanos / 1_000_000.0);
+            }
+            return baselines;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCalls() {
+        lock.lock();
+        try {
+            return calls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
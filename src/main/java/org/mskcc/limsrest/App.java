@@ -1,17 +1,24 @@
 package org.mskcc.limsrest;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.cmo.messaging.Gateway;
+import org.mskcc.limsrest.util.OncotreeIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.boot.web.servlet.support.SpringBootServletInitializer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
 import org.springframework.web.bind.annotation.RestController;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.PathSelectors;
@@ -28,6 +35,17 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
 public class App extends SpringBootServletInitializer {
     private static Log log = LogFactory.getLog(App.class);
 
+    // replaces the LIMS with a FakeLims fixture, see lims.fake.fixture
+    static final String FAKE_LIMS_PROFILE = "fake-lims";
+
+    // filter order, all after Spring Security: the deadline is set and RMI calls are counted before a request waits
+    // for its bulkhead, and the LIMS connection filter runs innermost so only admitted requests lease a connection and
+    // return it before their bulkhead slot is released
+    static final int DEADLINE_FILTER_ORDER = 1;
+    static final int RMI_CALL_FILTER_ORDER = 2;
+    static final int BULKHEAD_FILTER_ORDER = 3;
+    static final int LIMS_CONNECTION_FILTER_ORDER = 4;
+
     @Autowired
     private Environment env;
 
@@ -63,30 +81,163 @@ public class App extends SpringBootServletInitializer {
     }
 
     @Bean(destroyMethod = "cleanup")
-    public ConnectionPoolLIMS connectionQueue() {
+    public ConnectionPoolLIMS connectionQueue(ConnectionLIMS connection) {
+        log.info("Creating LIMS task queue.");
+        long agingMs = env.getProperty("lims.scheduler.agingMs", Long.class, PriorityTaskScheduler.DEFAULT_AGING_MS);
+        boolean asyncEnabled = env.getProperty("lims.async.enabled", Boolean.class, true);
+        return new ConnectionPoolLIMS(connection, agingMs, asyncEnabled);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ConnectionLIMS connection() {
         String host = env.getProperty("lims.host");
         Integer port = Integer.parseInt(env.getProperty("lims.port"));
         String guid = env.getProperty("lims.guid");
 
-        String user1 = env.getProperty("lims.user1");
-        String pass1 = env.getProperty("lims.pword1");
-        String user2 = env.getProperty("lims.user2");
-        String pass2 = env.getProperty("lims.pword2");
+        // without a read timeout a hung RMI call blocks its thread and connection forever
+        String rmiTimeout = env.getProperty("lims.rmi.responseTimeoutMs");
+        if (rmiTimeout != null && System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null)
+            System.setProperty("sun.rmi.transport.tcp.responseTimeout", rmiTimeout);
+
+        // by default only user2 is used, user1 is added when fanning work out across both API credentials
+        List<ConnectionLIMS.Credential> credentials = new ArrayList<>();
+        if (env.getProperty("lims.pool.fanOutCredentials", Boolean.class, false)) {
+            credentials.add(new ConnectionLIMS.Credential(env.getProperty("lims.user1"), env.getProperty("lims.pword1")));
+        }
+        credentials.add(new ConnectionLIMS.Credential(env.getProperty("lims.user2"), env.getProperty("lims.pword2")));
+
+        int poolSize = env.getProperty("lims.pool.size", Integer.class, ConnectionLIMS.DEFAULT_POOL_SIZE);
+        int writeConnections = env.getProperty("lims.pool.writeConnections", Integer.class, 0);
+        int batchConnections = env.getProperty("lims.pool.batchConnections", Integer.class, 0);
+        ConnectionLIMS.Routing routing = ConnectionLIMS.Routing.valueOf(
+                env.getProperty("lims.pool.routing", ConnectionLIMS.Routing.ROUND_ROBIN.name()));
+        long maxWaitMs = env.getProperty("lims.pool.maxWaitMs", Long.class, ConnectionLIMS.DEFAULT_MAX_WAIT_MS);
+        long validateAfterIdleMs = env.getProperty("lims.pool.validateAfterIdleMs", Long.class,
+                ConnectionLIMS.DEFAULT_VALIDATE_AFTER_IDLE_MS);
+
+        // for benchmarks and load tests without a LIMS, only with the fake-lims profile active
+        ConnectionLIMS.VeloxConnectionFactory factory = null;
+        String fakeFixture = env.getProperty("lims.fake.fixture");
+        if (env.acceptsProfiles(Profiles.of(FAKE_LIMS_PROFILE))) {
+            if (fakeFixture == null || fakeFixture.trim().isEmpty())
+                throw new IllegalStateException("Profile " + FAKE_LIMS_PROFILE + " requires lims.fake.fixture");
+            FakeLims fake;
+            try {
+                fake = FakeLims.load(fakeFixture.trim());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to load fake LIMS fixture " + fakeFixture, e);
+            }
+            Long latencyMs = env.getProperty("lims.fake.latencyMs", Long.class);
+            if (latencyMs != null)
+                fake.setLatency(latencyMs, env.getProperty("lims.fake.jitterMs", Long.class, 0L));
+            log.warn("Using fake LIMS from " + fakeFixture + " with " + fake.size() + " records instead of " + host);
+            factory = (credential, limiter) -> new FakeVeloxConnection(fake, credential.getUser(), limiter);
+        } else if (fakeFixture != null && !fakeFixture.trim().isEmpty()) {
+            log.warn("Ignoring lims.fake.fixture, profile " + FAKE_LIMS_PROFILE + " is not active");
+        }
+
+        log.info("Creating LIMS connection pool with " + poolSize + " connection(s) for each of " +
+                credentials.size() + " credential(s), routing: " + routing);
+        ConnectionLIMS pool = new ConnectionLIMS(host, port, guid, credentials, poolSize, writeConnections,
+                batchConnections, routing, maxWaitMs, validateAfterIdleMs, factory);
 
-        log.info("Creating LIMS connection pool.");
-        return new ConnectionPoolLIMS(host, port, guid, user1, pass1, user2, pass2);
+        if (env.getProperty("lims.rmi.limiter.enabled", Boolean.class, false)) {
+            int maxLimit = env.getProperty("lims.rmi.limiter.maxLimit", Integer.class, pool.getPoolSize());
+            int minLimit = env.getProperty("lims.rmi.limiter.minLimit", Integer.class, 1);
+            double tolerance = env.getProperty("lims.rmi.limiter.tolerance", Double.class, 2.0);
+            log.info("Limiting LIMS RMI calls adaptively between " + minLimit + " and " + maxLimit);
+            pool.setRmiLimiter(new AdaptiveLimiter(minLimit, maxLimit, maxLimit, tolerance, maxWaitMs));
+        }
+        return pool;
     }
 
     @Bean(destroyMethod = "close")
-    public ConnectionLIMS connection() {
-        String host = env.getProperty("lims.host");
-        Integer port = Integer.parseInt(env.getProperty("lims.port"));
-        String guid = env.getProperty("lims.guid");
-        String user2 = env.getProperty("lims.user2");
-        String pass2 = env.getProperty("lims.pword2");
+    public WorkflowStageRefresher workflowStageRefresher(ConnectionLIMS connection) {
+        long refreshMs = env.getProperty("lims.workflowStages.refreshMs", Long.class, 3600000L);
+        return new WorkflowStageRefresher(connection, refreshMs);
+    }
+
+    @Bean
+    public PickListCache pickListCache(ConnectionLIMS connection) {
+        long ttlMs = env.getProperty("lims.picklists.ttlMs", Long.class, 3600000L);
+        PickListCache pickLists = new PickListCache(connection, ttlMs);
+        List<String> warmUp = new ArrayList<>();
+        for (String pickList : env.getProperty("lims.picklists.warmUp", "").split(",")) {
+            if (!pickList.trim().isEmpty())
+                warmUp.add(pickList.trim());
+        }
+        pickLists.warmUp(connection, warmUp);
+        return pickLists;
+    }
 
-        log.info("Creating LIMS connection");
-        return new ConnectionLIMS(host, port, guid, user2, pass2);
+    @Bean(destroyMethod = "close")
+    public IndexBarcodeReference indexBarcodeReference(ConnectionLIMS connection) {
+        long refreshMs = env.getProperty("lims.indexBarcodes.refreshMs", Long.class, 3600000L);
+        return new IndexBarcodeReference(connection, refreshMs);
+    }
+
+    @Bean(destroyMethod = "close")
+    public OncotreeIndexRefresher oncotreeIndexRefresher() {
+        String apiUrl = oncotreeRestUrl == null || oncotreeRestUrl.trim().isEmpty()
+                ? OncotreeIndex.DEFAULT_API_URL : oncotreeRestUrl.trim();
+        String file = env.getProperty("oncotree.index.file",
+                Paths.get(System.getProperty("java.io.tmpdir"), "limsrest-oncotree-tumor-types.json").toString());
+        long refreshMs = env.getProperty("oncotree.index.refreshMs", Long.class, 86400000L);
+        return new OncotreeIndexRefresher(apiUrl, file.trim().isEmpty() ? null : Paths.get(file), refreshMs);
+    }
+
+    @Bean
+    public FilterRegistrationBean<LimsConnectionFilter> limsConnectionFilter(ConnectionLIMS connection) {
+        FilterRegistrationBean<LimsConnectionFilter> registration =
+                new FilterRegistrationBean<>(new LimsConnectionFilter(connection));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(LIMS_CONNECTION_FILTER_ORDER);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<DeadlineFilter> deadlineFilter() {
+        long defaultMs = env.getProperty("lims.deadline.defaultMs", Long.class, 300000L);
+        long maxMs = env.getProperty("lims.deadline.maxMs", Long.class, 600000L);
+        FilterRegistrationBean<DeadlineFilter> registration =
+                new FilterRegistrationBean<>(new DeadlineFilter(defaultMs, maxMs));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(DEADLINE_FILTER_ORDER);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<RmiCallFilter> rmiCallFilter() {
+        boolean header = env.getProperty("lims.rmi.callsHeader.enabled", Boolean.class, false);
+        Map<String, RmiCallBudget> budgets = RmiCallBudget.parse(env.getProperty("lims.rmi.budgets"));
+        log.info("LIMS RMI call budgets for endpoints: " + budgets.keySet());
+        FilterRegistrationBean<RmiCallFilter> registration =
+                new FilterRegistrationBean<>(new RmiCallFilter(header, budgets));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(RMI_CALL_FILTER_ORDER);
+        return registration;
+    }
+
+    @Bean
+    public RequestCoalescer requestCoalescer() {
+        return new RequestCoalescer(env.getProperty("lims.coalescing.enabled", Boolean.class, true));
+    }
+
+    @Bean
+    public BulkheadFilter bulkheadFilter() {
+        long maxWaitMs = env.getProperty("lims.bulkhead.maxWaitMs", Long.class, 0L);
+        int retryAfterSeconds = env.getProperty("lims.bulkhead.retryAfterSeconds", Integer.class, 5);
+        Map<String, Bulkhead> bulkheads = BulkheadFilter.parse(env.getProperty("lims.bulkhead.endpoints"), maxWaitMs);
+        log.info("Limiting concurrent requests for endpoints: " + bulkheads.keySet());
+        return new BulkheadFilter(bulkheads, retryAfterSeconds);
+    }
+
+    @Bean
+    public FilterRegistrationBean<BulkheadFilter> bulkheadFilterRegistration(BulkheadFilter bulkheadFilter) {
+        FilterRegistrationBean<BulkheadFilter> registration = new FilterRegistrationBean<>(bulkheadFilter);
+        registration.addUrlPatterns("/*");
+        registration.setOrder(BULKHEAD_FILTER_ORDER);
+        return registration;
     }
 
     @Bean
@@ -0,0 +1,80 @@
+package org.mskcc.limsrest;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the number of concurrent requests to one endpoint. Up to {@code maxQueue} further callers may wait
+ * {@code maxWaitMs} for a permit, anyone beyond that is rejected straight away so requests never pile up behind a
+ * single busy endpoint.
+ */
+public class Bulkhead {
+    private final String name;
+    private final int limit;
+    private final int maxQueue;
+    private final long maxWaitMs;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public Bulkhead(String name, int limit, int maxQueue, long maxWaitMs) {
+        if (limit < 1)
+            throw new IllegalArgumentException("Bulkhead " + name + " needs a limit of at least 1.");
+        this.name = name;
+        this.limit = limit;
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWaitMs = maxWaitMs;
+        this.permits = new Semaphore(limit, true);
+    }
+
+    /**
+     * @return true if a permit was acquired, the caller must then call {@link #release()} exactly once
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        if (permits.tryAcquire())
+            return true;
+        if (waiting.incrementAndGet() > maxQueue) {
+            waiting.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        try {
+            if (permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS))
+                return true;
+            rejected.incrementAndGet();
+            return false;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public int getActive() {
+        return limit - permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
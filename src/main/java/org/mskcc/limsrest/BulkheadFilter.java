@@ -0,0 +1,127 @@
+package org.mskcc.limsrest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies the configured {@link Bulkhead} of an endpoint to each request for it. Requests over the endpoint's limit and
+ * wait queue get a 429 with a Retry-After header instead of waiting for a LIMS connection.
+ * <p>
+ * Endpoints are configured as a comma separated list of {@code path:limit:queue}, e.g.
+ * {@code /getWESSampleData:2:4,/getHiseqList:2:4}. Endpoints not listed are not limited.
+ */
+public class BulkheadFilter extends OncePerRequestFilter {
+    private static Log log = LogFactory.getLog(BulkheadFilter.class);
+
+    private final Map<String, Bulkhead> bulkheads;
+    private final int retryAfterSeconds;
+
+    public BulkheadFilter(Map<String, Bulkhead> bulkheads, int retryAfterSeconds) {
+        this.bulkheads = bulkheads;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public static Map<String, Bulkhead> parse(String endpoints, long maxWaitMs) {
+        Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+        if (endpoints == null || endpoints.trim().isEmpty())
+            return bulkheads;
+        for (String endpoint : endpoints.split(",")) {
+            String[] parts = endpoint.trim().split(":");
+            if (parts.length != 3)
+                throw new IllegalArgumentException("Invalid bulkhead '" + endpoint + "', expected path:limit:queue");
+            String path = parts[0].trim();
+            bulkheads.put(path, new Bulkhead(path, Integer.parseInt(parts[1].trim()),
+                    Integer.parseInt(parts[2].trim()), maxWaitMs));
+        }
+        return bulkheads;
+    }
+
+    public Collection<Bulkhead> getBulkheads() {
+        return Collections.unmodifiableCollection(bulkheads.values());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !bulkheads.containsKey(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Bulkhead bulkhead = bulkheads.get(request.getServletPath());
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            log.warn("Rejecting " + bulkhead.getName() + " from " + request.getRemoteAddr() + ", " +
+                    bulkhead.getActive() + " active and " + bulkhead.getWaiting() + " waiting.");
+            response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(),
+                    "Too many concurrent " + bulkhead.getName() + " requests, retry later.");
+            return;
+        }
+
+        Permit permit = new Permit(bulkhead);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // async endpoints hold the permit until the response is actually written
+            if (request.isAsyncStarted())
+                request.getAsyncContext().addListener(permit);
+            else
+                permit.release();
+        }
+    }
+
+    private static class Permit implements AsyncListener {
+        private final Bulkhead bulkhead;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true))
+                bulkhead.release();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -4,47 +4,426 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pool of authenticated LIMS connections.
+ * <p>
+ * Each configured LIMS API credential backs its own lane of connections, and checkouts are routed across the lanes
+ * round-robin or to the least loaded one. Reads and writes have separate budgets ({@link ExecutionLane}) so that
+ * long read-only traversals can never hold every connection while a write is waiting.
+ * <p>
+ * Callers either check a connection out explicitly ({@link #checkout()} / {@link Lease#close()}) or use
+ * {@link #getConnection()}, which binds one pooled connection to the calling thread until
+ * {@link #releaseConnection()} is called. HTTP request threads are released by {@link LimsConnectionFilter}.
+ */
 public class ConnectionLIMS {
     private static Log log = LogFactory.getLog(ConnectionLIMS.class);
 
-    private VeloxConnection conn1;
-    private VeloxConnection conn2;
-    private VeloxConnection inUse;
+    public static final int DEFAULT_POOL_SIZE = 1;
+    public static final long DEFAULT_MAX_WAIT_MS = 60000;
+    public static final long DEFAULT_VALIDATE_AFTER_IDLE_MS = 30 * 60 * 1000;
+
+    public enum Routing {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    private final String host;
+    private final String guid;
+    private final Routing routing;
+    private final long maxWaitMs;
+    private final long validateAfterIdleMs;
+
+    private final List<CredentialLane> lanes = new ArrayList<>();
+    // one permit per idle connection across all lanes
+    private final Semaphore available = new Semaphore(0, true);
+    private final Map<ExecutionLane, Semaphore> budgets = new EnumMap<>(ExecutionLane.class);
+    private final Map<ExecutionLane, Integer> budgetSizes = new EnumMap<>(ExecutionLane.class);
+    private final AtomicInteger nextLane = new AtomicInteger();
+    private final ThreadLocal<Lease> threadLease = new ThreadLocal<>();
+    private volatile boolean closed = false;
+    private volatile AdaptiveLimiter rmiLimiter;
 
     public ConnectionLIMS(String host, int port, String guid, String user1, String pass1) {
-        conn1 = new VeloxConnection(host, port, guid, user1, pass1);
+        this(host, port, guid, user1, pass1, DEFAULT_POOL_SIZE, DEFAULT_MAX_WAIT_MS, DEFAULT_VALIDATE_AFTER_IDLE_MS);
+    }
+
+    public ConnectionLIMS(String host, int port, String guid, String user, String pass, int poolSize,
+                          long maxWaitMs, long validateAfterIdleMs) {
+        this(host, port, guid, Collections.singletonList(new Credential(user, pass)), poolSize, 0, Routing.ROUND_ROBIN,
+                maxWaitMs, validateAfterIdleMs);
+    }
+
+    /**
+     * @param connectionsPerCredential number of connections opened for each credential
+     * @param writeConnections         connections reserved for the write lane, the rest of the pool serves reads.
+     *                                 Ignored (both lanes share the whole pool) unless it leaves at least one
+     *                                 connection for reads.
+     */
+    public ConnectionLIMS(String host, int port, String guid, List<Credential> credentials,
+                          int connectionsPerCredential, int writeConnections, Routing routing, long maxWaitMs,
+                          long validateAfterIdleMs) {
+        this(host, port, guid, credentials, connectionsPerCredential, writeConnections, routing, maxWaitMs,
+                validateAfterIdleMs, null);
+    }
+
+    /**
+     * @param factory opens something other than an RMI connection to host, e.g. a {@link FakeVeloxConnection}, or
+     *                null for the LIMS at host
+     */
+    public ConnectionLIMS(String host, int port, String guid, List<Credential> credentials,
+                          int connectionsPerCredential, int writeConnections, Routing routing, long maxWaitMs,
+                          long validateAfterIdleMs, VeloxConnectionFactory factory) {
+        this(host, port, guid, credentials, connectionsPerCredential, writeConnections, 0, routing, maxWaitMs,
+                validateAfterIdleMs, factory);
+    }
+
+    /**
+     * @param batchConnections connections reserved for {@link ExecutionLane#BATCH} writes, taken from the read share.
+     *                         Ignored (batch writes share the write budget) unless the write lane is split off and
+     *                         at least one connection is left for reads.
+     */
+    public ConnectionLIMS(String host, int port, String guid, List<Credential> credentials,
+                          int connectionsPerCredential, int writeConnections, int batchConnections, Routing routing,
+                          long maxWaitMs, long validateAfterIdleMs, VeloxConnectionFactory factory) {
+        if (credentials.isEmpty())
+            throw new IllegalArgumentException("At least one LIMS credential is required.");
+        if (connectionsPerCredential < 1)
+            throw new IllegalArgumentException("LIMS connection pool size must be at least 1.");
+        this.host = host;
+        this.guid = guid;
+        this.routing = routing;
+        this.maxWaitMs = maxWaitMs;
+        this.validateAfterIdleMs = validateAfterIdleMs;
+
+        for (Credential credential : credentials) {
+            log.info("Opening " + connectionsPerCredential + " LIMS connection(s) for " + credential.user +
+                    " to host: " + host + guid);
+            CredentialLane lane = new CredentialLane(credential.user);
+            lanes.add(lane);
+            for (int i = 0; i < connectionsPerCredential; i++) {
+                VeloxConnection velox = factory == null
+                        ? new LimsVeloxConnection(host, port, guid, credential.user, credential.password,
+                        this::getRmiLimiter)
+                        : factory.create(credential, this::getRmiLimiter);
+                PooledConnection pooled = new PooledConnection(lane, i, velox);
+                try {
+                    boolean status = pooled.velox.open();
+                    if (pooled.velox.isConnected()) {
+                        log.info("LIMS connection " + pooled + " established with status: " + status);
+                    }
+                } catch (Exception e) {
+                    log.error("Connection error:" + e);
+                    close();
+                    throw new RuntimeException("Failed to open LIMS connection.");
+                }
+                lane.connections.add(pooled);
+                lane.idle.offerFirst(pooled);
+                available.release();
+            }
+        }
+
+        int total = getPoolSize();
+        boolean split = writeConnections > 0 && writeConnections < total;
+        boolean splitBatch = split && batchConnections > 0 && writeConnections + batchConnections < total;
+        budgetSizes.put(ExecutionLane.READ, split ? total - writeConnections - (splitBatch ? batchConnections : 0) : total);
+        budgetSizes.put(ExecutionLane.WRITE, split ? writeConnections : total);
+        budgetSizes.put(ExecutionLane.BATCH, splitBatch ? batchConnections : budgetSizes.get(ExecutionLane.WRITE));
+        budgets.put(ExecutionLane.READ, new Semaphore(budgetSizes.get(ExecutionLane.READ), true));
+        budgets.put(ExecutionLane.WRITE, new Semaphore(budgetSizes.get(ExecutionLane.WRITE), true));
+        budgets.put(ExecutionLane.BATCH, splitBatch
+                ? new Semaphore(batchConnections, true) : budgets.get(ExecutionLane.WRITE));
+        log.info("LIMS connection budgets: " + budgetSizes);
+    }
+
+    /**
+     * Returns the read lane connection leased to the current thread, checking one out of the pool on first use.
+     * The lease is held until {@link #releaseConnection()} is called from the same thread.
+     */
+    public VeloxConnection getConnection() {
+        return getConnection(ExecutionLane.READ);
+    }
+
+    /**
+     * Same as {@link #getConnection()} but checks out from the given lane. A thread that already holds a lease keeps
+     * using it, whatever lane it came from.
+     */
+    public VeloxConnection getConnection(ExecutionLane lane) {
+        Lease lease = threadLease.get();
+        if (lease == null) {
+            lease = checkout(lane);
+            threadLease.set(lease);
+        }
+        return lease.getConnection();
+    }
+
+    /**
+     * Returns the connection bound to the current thread by {@link #getConnection()} to the pool, if any.
+     */
+    public void releaseConnection() {
+        Lease lease = threadLease.get();
+        if (lease != null) {
+            threadLease.remove();
+            lease.close();
+        }
+    }
+
+    public Lease checkout() {
+        return checkout(ExecutionLane.READ);
+    }
+
+    /**
+     * Checks a connection out of the pool within the lane's budget, waiting at most the configured max wait.
+     *
+     * @throws LimsConnectionTimeoutException if no connection became available in time
+     */
+    public Lease checkout(ExecutionLane executionLane) {
+        if (closed)
+            throw new IllegalStateException("LIMS connection pool is closed.");
+        Semaphore budget = budgets.get(executionLane);
+        long deadline = System.currentTimeMillis() + maxWaitMs;
         try {
-            log.info("Opening LIMS connection to host: " + host + guid);
-            boolean status = conn1.open();
-            if (conn1.isConnected()) {
-                log.info("LIMS connection established with status: " + status);
+            if (!budget.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                log.warn("No " + executionLane + " LIMS connection available after " + maxWaitMs + "ms, budget: " +
+                        budgetSizes.get(executionLane));
+                throw new LimsConnectionTimeoutException("No LIMS connection available after " + maxWaitMs + "ms.");
             }
-        } catch (Exception e) {
-            log.error("Connection error:" + e);
-            throw new RuntimeException("Failed to open LIMS connection.");
+            if (!available.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                budget.release();
+                log.warn("No LIMS connection available after " + maxWaitMs + "ms, pool size: " + getPoolSize());
+                throw new LimsConnectionTimeoutException("No LIMS connection available after " + maxWaitMs + "ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LimsConnectionTimeoutException("Interrupted while waiting for a LIMS connection.");
         }
+        return take(executionLane);
+    }
 
-        inUse = conn1;
+    /**
+     * Checks a connection out only if the lane's budget and the pool both have one free right now.
+     *
+     * @return the lease, or null without waiting
+     */
+    public Lease tryCheckout(ExecutionLane executionLane) {
+        if (closed)
+            return null;
+        Semaphore budget = budgets.get(executionLane);
+        if (!budget.tryAcquire())
+            return null;
+        if (!available.tryAcquire()) {
+            budget.release();
+            return null;
+        }
+        return take(executionLane);
     }
 
-    public synchronized VeloxConnection getConnection() {
-        if (!inUse.isConnected()) {
-            try {
-                boolean opened = inUse.open();
-                log.info("Attempt to re-open connection with result: " + opened);
-            } catch (Exception e) {
-                log.error("Failed to re-open connection: " + e.getMessage());
+    private Lease take(ExecutionLane executionLane) {
+        // holding a permit guarantees an idle connection in some lane, but another thread may take the one we aim for
+        PooledConnection pooled = null;
+        while (pooled == null) {
+            for (CredentialLane lane : laneOrder()) {
+                pooled = lane.idle.pollFirst();
+                if (pooled != null)
+                    break;
             }
         }
+        pooled.lane.inUse.incrementAndGet();
+        validate(pooled);
+        return new Lease(pooled, executionLane);
+    }
+
+    /*
+     * Lanes in the order they should be tried for the next checkout.
+     */
+    private List<CredentialLane> laneOrder() {
+        if (lanes.size() == 1)
+            return lanes;
+        List<CredentialLane> order = new ArrayList<>(lanes);
+        if (routing == Routing.LEAST_LOADED) {
+            order.sort((a, b) -> Double.compare(a.load(), b.load()));
+        } else {
+            Collections.rotate(order, -Math.floorMod(nextLane.getAndIncrement(), lanes.size()));
+        }
+        return order;
+    }
 
+    private void checkin(PooledConnection pooled, ExecutionLane executionLane) {
+        pooled.lastReturned = System.currentTimeMillis();
+        pooled.lane.inUse.decrementAndGet();
+        if (closed) {
+            pooled.close();
+        } else {
+            pooled.lane.idle.offerFirst(pooled);
+            available.release();
+        }
+        budgets.get(executionLane).release();
+    }
+
+    /*
+     * Re-opens a connection that dropped, and refreshes one that sat idle long enough for the LIMS session to expire.
+     */
+    private void validate(PooledConnection pooled) {
+        VeloxConnection velox = pooled.velox;
+        boolean idleTooLong = System.currentTimeMillis() - pooled.lastReturned > validateAfterIdleMs;
+        if (velox.isConnected() && !idleTooLong)
+            return;
+        try {
+            if (velox.isConnected())
+                velox.close();
+            boolean opened = velox.open();
+            log.info("Re-opened LIMS connection " + pooled + " with result: " + opened);
+        } catch (Exception e) {
+            log.error("Failed to re-open LIMS connection " + pooled + ": " + e.getMessage());
+        }
+    }
+
+    public int getPoolSize() {
+        int size = 0;
+        for (CredentialLane lane : lanes)
+            size += lane.connections.size();
+        return size;
+    }
+
+    public int getIdleCount() {
+        return available.availablePermits();
+    }
+
+    /**
+     * @return number of connections the lane may hold at once
+     */
+    public int getBudget(ExecutionLane executionLane) {
+        return budgetSizes.get(executionLane);
+    }
+
+    /**
+     * @return connections currently checked out, by LIMS user
+     */
+    public Map<String, Integer> getInUseByCredential() {
+        Map<String, Integer> inUse = new LinkedHashMap<>();
+        for (CredentialLane lane : lanes)
+            inUse.put(lane.user, lane.inUse.get());
         return inUse;
     }
 
+    /**
+     * Limits the DataRecordManager calls in flight across all pooled connections, null for no limit.
+     */
+    public void setRmiLimiter(AdaptiveLimiter rmiLimiter) {
+        this.rmiLimiter = rmiLimiter;
+    }
+
+    public AdaptiveLimiter getRmiLimiter() {
+        return rmiLimiter;
+    }
+
     public void close() {
-        if (conn1.isConnected()) {
-            try {
-                conn1.close();
-            } catch (Exception e) {
+        closed = true;
+        for (CredentialLane lane : lanes) {
+            for (PooledConnection pooled : lane.connections) {
+                pooled.close();
+            }
+        }
+        log.info("Closed LIMS connection pool to host: " + host + guid);
+    }
+
+    public static class Credential {
+        private final String user;
+        private final String password;
+
+        public Credential(String user, String password) {
+            this.user = user;
+            this.password = password;
+        }
+
+        public String getUser() {
+            return user;
+        }
+    }
+
+    /**
+     * Creates the connections of the pool, the limiter supplies the pool's current RMI limiter.
+     */
+    public interface VeloxConnectionFactory {
+        VeloxConnection create(Credential credential, Supplier<AdaptiveLimiter> limiter);
+    }
+
+    private static class CredentialLane {
+        private final String user;
+        private final List<PooledConnection> connections = new ArrayList<>();
+        // LIFO so the most recently used (and most likely still valid) connection is handed out first
+        private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+        private final AtomicInteger inUse = new AtomicInteger();
+
+        CredentialLane(String user) {
+            this.user = user;
+        }
+
+        double load() {
+            return (double) inUse.get() / connections.size();
+        }
+    }
+
+    private static class PooledConnection {
+        private final CredentialLane lane;
+        private final int id;
+        private final VeloxConnection velox;
+        private volatile long lastReturned = System.currentTimeMillis();
+
+        PooledConnection(CredentialLane lane, int id, VeloxConnection velox) {
+            this.lane = lane;
+            this.id = id;
+            this.velox = velox;
+        }
+
+        void close() {
+            if (velox.isConnected()) {
+                try {
+                    velox.close();
+                } catch (Exception e) {
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return lane.user + "-" + id;
+        }
+    }
+
+    /**
+     * A checked out connection, returned to the pool by {@link #close()}.
+     */
+    public class Lease implements AutoCloseable {
+        private PooledConnection pooled;
+        private final ExecutionLane executionLane;
+
+        private Lease(PooledConnection pooled, ExecutionLane executionLane) {
+            this.pooled = pooled;
+            this.executionLane = executionLane;
+        }
+
+        public VeloxConnection getConnection() {
+            if (pooled == null)
+                throw new IllegalStateException("LIMS connection lease was already returned.");
+            return pooled.velox;
+        }
+
+        @Override
+        public void close() {
+            if (pooled != null) {
+                checkin(pooled, executionLane);
+                pooled = null;
             }
         }
     }
@@ -1,52 +1,156 @@
 package org.mskcc.limsrest;
 
-import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.mskcc.limsrest.service.LimsTask;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * LIMS connection pool with dedicated LIMS connections.
+ * Executes queued LIMS work, each task on a connection checked out of the shared LIMS connection pool.
+ * Read and write tasks are queued separately, each lane with as many threads as it has connections, and within a
+ * lane tasks run by {@link TaskPriority}.
+ * <p>
+ * Controllers with long traversals use {@link #supplyAsync(Callable)} so the servlet thread is freed while the LIMS
+ * work runs here. With async disabled the same work runs inline on the calling thread.
+ * <p>
+ * Queued work inherits the {@link Deadline} of the submitting request, work still queued when it passes never starts.
  */
 public class ConnectionPoolLIMS {
-    private static final ExecutorService executor = Executors.newFixedThreadPool(1);
+    private final Map<ExecutionLane, PriorityTaskScheduler> schedulers = new EnumMap<>(ExecutionLane.class);
+    private final ConnectionLIMS pool;
+    private final boolean asyncEnabled;
+    private final ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "lims-deadlines");
+        t.setDaemon(true);
+        return t;
+    });
 
-    private final VeloxConnection conn1;
-    private final VeloxConnection conn2;
-
-    public ConnectionPoolLIMS(String host, int port, String guid, String user1, String pass1, String user2, String pass2) {
-        conn1 = new VeloxConnection(host, port, guid, user1, pass1);
-        conn2 = new VeloxConnection(host, port, guid, user2, pass2);
+    public ConnectionPoolLIMS(ConnectionLIMS pool) {
+        this(pool, PriorityTaskScheduler.DEFAULT_AGING_MS, true);
     }
 
-    public VeloxConnection getConnection() {
-        // use the connection that is not busy (current logic prefers conn1)
-        if (conn1.isConnected()) { // TODO check other connection is open or it must be since only 2 threads?
-            System.out.println("USING CONNECTION 2");
-            return conn2;
-        } else {
-            System.out.println("USING CONNECTION 1");
-            return conn1;
+    public ConnectionPoolLIMS(ConnectionLIMS pool, long agingMs, boolean asyncEnabled) {
+        this.pool = pool;
+        this.asyncEnabled = asyncEnabled;
+        deadlines.setRemoveOnCancelPolicy(true);
+        for (ExecutionLane lane : ExecutionLane.values()) {
+            schedulers.put(lane, new PriorityTaskScheduler("lims-" + lane.name().toLowerCase(),
+                    pool.getBudget(lane), agingMs));
         }
     }
 
+    public ConnectionLIMS.Lease checkout(ExecutionLane lane) {
+        return pool.checkout(lane);
+    }
+
     public Future<Object> submitTask(LimsTask task) {
         task.setConnectionPool(this);
-        return executor.submit(task);
+        return schedulers.get(task.getExecutionLane()).submit(RmiCallStats.propagate(Deadline.propagate(task)), task.getPriority());
     }
 
-    public void cleanup() {
-        executor.shutdown();
-        try {
-            if (conn1 != null && conn1.isConnected()) {
-                conn1.close();
+    /**
+     * Queues work that uses {@link ConnectionLIMS#getConnection(ExecutionLane)} directly. A connection of the lane is
+     * leased before the work starts, so work that asks for a write connection on the batch lane uses the batch budget,
+     * and it is returned to the pool when the work completes.
+     */
+    public <T> Future<T> submit(Callable<T> task, ExecutionLane lane, TaskPriority priority) {
+        return schedulers.get(lane).submit(RmiCallStats.propagate(Deadline.propagate(() -> {
+            try {
+                pool.getConnection(lane);
+                return task.call();
+            } finally {
+                pool.releaseConnection();
             }
-            if (conn2 != null && conn2.isConnected()) {
-                conn2.close();
+        })), priority);
+    }
+
+    public <T> CompletableFuture<T> supplyAsync(Callable<T> task) {
+        return supplyAsync(task, ExecutionLane.READ, TaskPriority.INTERACTIVE);
+    }
+
+    /**
+     * @param partial the work returns a partial result once the deadline passes. Only work still queued then fails with
+     *                {@link DeadlineExceededException}, work that is running is left to stop at its next
+     *                {@link Deadline#check()} and return what it gathered.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Callable<T> task, boolean partial) {
+        return supplyAsync(task, ExecutionLane.READ, TaskPriority.INTERACTIVE, partial);
+    }
+
+    /**
+     * Runs the work on the lane's scheduler and completes the returned future with its result or exception. If the
+     * request deadline passes first the future fails with {@link DeadlineExceededException}, work that is already
+     * running stops at its next {@link Deadline#check()}.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Callable<T> task, ExecutionLane lane, TaskPriority priority) {
+        return supplyAsync(task, lane, priority, false);
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(Callable<T> task, ExecutionLane lane, TaskPriority priority,
+                                                 boolean partial) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (!asyncEnabled) {
+            complete(result, task);
+            return result;
+        }
+        AtomicBoolean started = new AtomicBoolean();
+        Future<Object> queued = schedulers.get(lane).submit(RmiCallStats.propagate(Deadline.propagate(() -> {
+            started.set(true);
+            try {
+                complete(result, task);
+            } finally {
+                pool.releaseConnection();
             }
-        } catch (Exception e) {
+            return null;
+        })), priority);
+
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            AtomicReference<ScheduledFuture<?>> timeout = new AtomicReference<>();
+            Runnable expire = new Runnable() {
+                @Override
+                public void run() {
+                    // the deadline of coalesced work moves when a caller with a later one joins
+                    if (!deadline.isExpired()) {
+                        timeout.set(deadlines.schedule(this, deadline.remainingMs(), TimeUnit.MILLISECONDS));
+                        return;
+                    }
+                    if (partial && started.get())
+                        return;
+                    if (result.completeExceptionally(new DeadlineExceededException(deadline.getBudgetMs())))
+                        queued.cancel(false);
+                }
+            };
+            timeout.set(deadlines.schedule(expire, deadline.remainingMs(), TimeUnit.MILLISECONDS));
+            result.whenComplete((value, e) -> timeout.get().cancel(false));
+        }
+        return result;
+    }
+
+    private static <T> void complete(CompletableFuture<T> result, Callable<T> task) {
+        try {
+            result.complete(task.call());
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    public int getQueueDepth(ExecutionLane lane, TaskPriority priority) {
+        return schedulers.get(lane).getQueueDepth(priority);
+    }
+
+    public void cleanup() {
+        deadlines.shutdownNow();
+        for (PriorityTaskScheduler scheduler : schedulers.values()) {
+            scheduler.shutdown();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package org.mskcc.limsrest;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Time budget of the current request. {@link DeadlineFilter} starts one per request, queued and async LIMS work
+ * inherits the deadline of the request that submitted it, and long LIMS traversals call {@link #check()} so they stop
+ * once the caller is no longer waiting for the answer.
+ */
+public final class Deadline {
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+    private static final long MAX_RESERVE_MS = 5000;
+
+    private final long budgetMs;
+    private volatile long expiresAt;
+
+    private Deadline(long budgetMs, long expiresAt) {
+        this.budgetMs = budgetMs;
+        this.expiresAt = expiresAt;
+    }
+
+    public static Deadline after(long budgetMs) {
+        return new Deadline(budgetMs, System.currentTimeMillis() + budgetMs);
+    }
+
+    /**
+     * @return a deadline expiring at the same time, which can be extended without extending this one
+     */
+    public Deadline copy() {
+        return new Deadline(budgetMs, expiresAt);
+    }
+
+    /**
+     * Moves this deadline to the other one if that expires later, e.g. when another request joins shared work.
+     */
+    public synchronized void extendTo(Deadline other) {
+        if (other.expiresAt > expiresAt)
+            expiresAt = other.expiresAt;
+    }
+
+    /**
+     * @return deadline of the work running on this thread or null if there is none
+     */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    public static void set(Deadline deadline) {
+        if (deadline == null)
+            current.remove();
+        else
+            current.set(deadline);
+    }
+
+    /**
+     * Throws {@link DeadlineExceededException} if the deadline of this thread has passed.
+     */
+    public static void check() {
+        Deadline deadline = current.get();
+        if (deadline != null && deadline.isExpired())
+            throw new DeadlineExceededException(deadline.budgetMs);
+    }
+
+    /**
+     * Partial-result traversals stop taking on new samples here, leaving a tenth of the budget (at most 5s) to
+     * assemble and return what they have before the deadline fails the request.
+     */
+    public static boolean nearlyExpired() {
+        Deadline deadline = current.get();
+        return deadline != null && deadline.remainingMs() <= Math.min(deadline.budgetMs / 10, MAX_RESERVE_MS);
+    }
+
+    /**
+     * Wraps the task so it runs under the deadline of the submitting thread and never starts once it has passed.
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        Deadline deadline = current.get();
+        if (deadline == null)
+            return task;
+        return () -> {
+            Deadline previous = current.get();
+            current.set(deadline);
+            try {
+                check();
+                return task.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * Waits for the result of queued work until this thread's deadline, cancelling the work if the deadline passes
+     * before it starts.
+     */
+    public static <T> T await(Future<T> future) throws InterruptedException, ExecutionException {
+        Deadline deadline = current.get();
+        if (deadline == null)
+            return future.get();
+        try {
+            return future.get(deadline.remainingMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new DeadlineExceededException(deadline.budgetMs);
+        }
+    }
+
+    public long getBudgetMs() {
+        return budgetMs;
+    }
+
+    public long remainingMs() {
+        return Math.max(0, expiresAt - System.currentTimeMillis());
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expiresAt;
+    }
+}
@@ -0,0 +1,14 @@
+package org.mskcc.limsrest;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * LIMS work ran past the time budget of the request, returned to the client as a 504.
+ */
+@ResponseStatus(value = HttpStatus.GATEWAY_TIMEOUT, reason = "LIMS request exceeded its time budget")
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(long budgetMs) {
+        super("LIMS request exceeded its time budget of " + budgetMs + "ms");
+    }
+}
@@ -0,0 +1,53 @@
+package org.mskcc.limsrest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Starts the {@link Deadline} of each request. Clients may ask for a shorter or longer budget with the
+ * {@value #TIMEOUT_HEADER} header, capped at the configured maximum.
+ */
+public class DeadlineFilter extends OncePerRequestFilter {
+    private static Log log = LogFactory.getLog(DeadlineFilter.class);
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    private final long defaultMs;
+    private final long maxMs;
+
+    public DeadlineFilter(long defaultMs, long maxMs) {
+        this.defaultMs = defaultMs;
+        this.maxMs = maxMs;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Deadline.set(Deadline.after(budgetMs(request.getHeader(TIMEOUT_HEADER))));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Deadline.set(null);
+        }
+    }
+
+    long budgetMs(String header) {
+        if (header == null || header.trim().isEmpty())
+            return defaultMs;
+        try {
+            long requested = Long.parseLong(header.trim());
+            if (requested > 0)
+                return Math.min(requested, maxMs);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid " + TIMEOUT_HEADER + " header: " + header);
+        }
+        return defaultMs;
+    }
+}
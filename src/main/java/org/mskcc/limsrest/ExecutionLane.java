@@ -0,0 +1,10 @@
+package org.mskcc.limsrest;
+
+/**
+ * LIMS work is split into a read lane and a write lane, each with its own connection budget and task queue, so short
+ * writes (QC status changes, promotes) never wait behind long read-only traversals. Long bulk writes such as the
+ * iLabs sync run on the batch lane so they never hold the connection interactive writes are waiting for.
+ */
+public enum ExecutionLane {
+    READ, WRITE, BATCH
+}
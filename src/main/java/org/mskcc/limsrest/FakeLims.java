@@ -0,0 +1,459 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.AuditLog;
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.datarecord.DataRecordProxy;
+import com.velox.api.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory stand-in for the LIMS, to run the service locally for benchmarks and load tests. Records are loaded from a
+ * YAML or JSON fixture and every call to the {@link DataRecordManager} or to a DataRecord sleeps for the configured
+ * latency first, so traversals cost roughly what they would against the real server.
+ * <pre>
+ * latencyMs: 20
+ * jitterMs: 10
+ * records:
+ *   - type: Request
+ *     fields: {RequestId: 06302_AB, LaboratoryHead: Jane Doe}
+ *     children:
+ *       - type: Sample
+ *         id: 101
+ *         fields: {SampleId: 06302_AB_1, OtherSampleId: s1}
+ *         children:
+ *           - type: SeqAnalysisSampleQC
+ *             fields: {SeqQCStatus: Passed, SequencerRunFolder: RUN_0001}
+ *   - type: FlowCellLane
+ *     fields: {LaneNum: 1}
+ *     parents: [101]
+ * </pre>
+ * Records are nested under their first parent, {@code parents} adds more by {@code id}, e.g. for pools and lanes.
+ * Records without an id get one assigned, every record has its id in the RecordId field. Whole numbers are stored as
+ * Long.
+ * <p>
+ * Queries are evaluated with {@link FakeLimsCondition}. Writes only change the in-memory records.
+ */
+public class FakeLims {
+    private static Log log = LogFactory.getLog(FakeLims.class);
+
+    private static final long FIRST_GENERATED_ID = 1_000_000_000L;
+
+    private static class FakeRecord {
+        final long id;
+        final String type;
+        final Map<String, Object> fields = Collections.synchronizedMap(new LinkedHashMap<>());
+        final List<Long> children = new ArrayList<>();
+        final List<Long> parents = new ArrayList<>();
+        DataRecord record;
+
+        FakeRecord(long id, String type) {
+            this.id = id;
+            this.type = type;
+        }
+    }
+
+    private final Map<Long, FakeRecord> records = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(FIRST_GENERATED_ID);
+    private final DataRecordManager dataRecordManager;
+    private final DataRecordProxy recordProxy;
+    private volatile long latencyMs;
+    private volatile long jitterMs;
+
+    public FakeLims(long latencyMs, long jitterMs) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.dataRecordManager = (DataRecordManager) Proxy.newProxyInstance(DataRecordManager.class.getClassLoader(),
+                new Class<?>[]{DataRecordManager.class}, (proxy, method, args) -> invokeManager(method, args));
+        // record calls are counted like those of records returned by a wrapped manager, which leaves these as they are
+        this.recordProxy = LimsRmiProxy.counting((DataRecordProxy) Proxy.newProxyInstance(
+                DataRecordProxy.class.getClassLoader(), new Class<?>[]{DataRecordProxy.class},
+                (proxy, method, args) -> invokeRecord(method, args)));
+    }
+
+    /**
+     * @param fixture path of a YAML or JSON fixture, or a classpath resource with the {@code classpath:} prefix
+     */
+    public static FakeLims load(String fixture) throws IOException {
+        InputStream in = fixture.startsWith("classpath:")
+                ? FakeLims.class.getClassLoader().getResourceAsStream(fixture.substring("classpath:".length()))
+                : Files.newInputStream(Paths.get(fixture));
+        if (in == null)
+            throw new IOException("Fake LIMS fixture not found: " + fixture);
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return load(reader);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static FakeLims load(Reader fixture) {
+        // JSON is valid YAML
+        Map<String, Object> root = new Yaml().load(fixture);
+        if (root == null)
+            root = Collections.emptyMap();
+        FakeLims lims = new FakeLims(number(root.get("latencyMs")), number(root.get("jitterMs")));
+        List<Map<String, Object>> roots = (List<Map<String, Object>>) root.getOrDefault("records", Collections.emptyList());
+        Map<FakeRecord, List<Object>> links = new LinkedHashMap<>();
+        for (Map<String, Object> record : roots) {
+            lims.add(record, null, links);
+        }
+        for (Map.Entry<FakeRecord, List<Object>> link : links.entrySet()) {
+            for (Object parentId : link.getValue()) {
+                FakeRecord parent = lims.records.get(number(parentId));
+                if (parent == null)
+                    throw new IllegalArgumentException("Record " + link.getKey().id + " has unknown parent " + parentId);
+                lims.link(parent, link.getKey());
+            }
+        }
+        log.info("Loaded fake LIMS with " + lims.records.size() + " records, " + lims.latencyMs + "ms latency per call");
+        return lims;
+    }
+
+    @SuppressWarnings("unchecked")
+    private FakeRecord add(Map<String, Object> spec, FakeRecord parent, Map<FakeRecord, List<Object>> links) {
+        String type = (String) spec.get("type");
+        if (type == null)
+            throw new IllegalArgumentException("Fake LIMS record without a type: " + spec);
+        Object id = spec.get("id");
+        FakeRecord record = create(type, id == null ? nextId.getAndIncrement() : number(id));
+        Map<String, Object> fields = (Map<String, Object>) spec.get("fields");
+        if (fields != null) {
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                // YAML reads small whole numbers as Integer, the LIMS returns Long for counts and dates
+                Object value = field.getValue() instanceof Integer ? Long.valueOf((Integer) field.getValue()) : field.getValue();
+                record.fields.put(field.getKey(), value);
+            }
+        }
+        if (parent != null)
+            link(parent, record);
+        if (spec.get("parents") != null)
+            links.put(record, (List<Object>) spec.get("parents"));
+        for (Map<String, Object> child : (List<Map<String, Object>>) spec.getOrDefault("children", Collections.emptyList())) {
+            add(child, record, links);
+        }
+        return record;
+    }
+
+    private FakeRecord create(String type, long id) {
+        FakeRecord record = new FakeRecord(id, type);
+        record.fields.put("RecordId", id);
+        record.fields.putIfAbsent("DataRecordName", type);
+        record.record = new DataRecord(id, type, recordProxy);
+        if (records.putIfAbsent(id, record) != null)
+            throw new IllegalArgumentException("Duplicate fake LIMS record id " + id);
+        return record;
+    }
+
+    private void link(FakeRecord parent, FakeRecord child) {
+        synchronized (this) {
+            parent.children.add(child.id);
+            child.parents.add(parent.id);
+        }
+    }
+
+    public DataRecordManager getDataRecordManager() {
+        return dataRecordManager;
+    }
+
+    /**
+     * @return a User with just a name and an empty audit log, null if the LIMS API User is not an interface
+     */
+    public static User user(String name) {
+        if (!User.class.isInterface())
+            return null;
+        AuditLog auditLog = emptyAuditLog();
+        return (User) Proxy.newProxyInstance(User.class.getClassLoader(), new Class<?>[]{User.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAuditLog":
+                            return auditLog;
+                        case "getUsername":
+                        case "toString":
+                            return name;
+                        case "hashCode":
+                            return name.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static AuditLog emptyAuditLog() {
+        if (!AuditLog.class.isInterface())
+            return null;
+        return (AuditLog) Proxy.newProxyInstance(AuditLog.class.getClassLoader(), new Class<?>[]{AuditLog.class},
+                (proxy, method, args) -> List.class.isAssignableFrom(method.getReturnType())
+                        ? new ArrayList<>() : defaultValue(method.getReturnType()));
+    }
+
+    public void setLatency(long latencyMs, long jitterMs) {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    private Object invokeManager(Method method, Object[] args) throws Exception {
+        if (method.getDeclaringClass() == Object.class)
+            return invokeObject(dataRecordManager, method, args);
+        sleep();
+        String name = method.getName();
+        List<String> strings = strings(args);
+        List<FakeRecord> in = args != null && args.length > 0 && args[0] instanceof List ? records((List<?>) args[0]) : null;
+        switch (name) {
+            case "queryDataRecords":
+                if (args.length > 3 && args[2] instanceof List)
+                    return query(strings.get(0), new HashSet<Object>((List<?>) args[2]), strings.get(1));
+                return query(strings.get(0), strings.size() > 1 ? strings.get(1) : null);
+            case "getChildrenOfType":
+                return perRecord(in, r -> dataRecords(related(r.children, strings.get(0))));
+            case "getParentsOfType":
+                return perRecord(in, r -> dataRecords(related(r.parents, strings.get(0))));
+            case "getDescendantsOfType":
+                return perRecord(in, r -> dataRecords(reachable(r, true, strings.get(0))));
+            case "getAncestorsOfType":
+                return perRecord(in, r -> dataRecords(reachable(r, false, strings.get(0))));
+            case "getFieldsForRecords":
+                return perRecord(in, FakeLims::fields);
+            case "getFieldsForChildrenOfType":
+                return perRecord(in, r -> {
+                    List<Map<String, Object>> fields = new ArrayList<>();
+                    for (FakeRecord child : related(r.children, strings.get(0))) {
+                        fields.add(fields(child));
+                    }
+                    return fields;
+                });
+            case "addDataRecord":
+                return create(strings.get(0), nextId.getAndIncrement()).record;
+            case "storeAndCommit":
+            case "commitChanges":
+                return null;
+            default:
+                throw new UnsupportedOperationException("Fake LIMS does not implement DataRecordManager." + name);
+        }
+    }
+
+    /**
+     * DataRecord delegates to its proxy with the record id and data type first. Calls are told apart by name and
+     * return type so the fake keeps working whatever proxy method a DataRecord method maps to.
+     */
+    @SuppressWarnings("unchecked")
+    private Object invokeRecord(Method method, Object[] args) throws Exception {
+        if (method.getDeclaringClass() == Object.class)
+            return invokeObject(recordProxy, method, args);
+        sleep();
+        String name = method.getName();
+        FakeRecord record = records.get((Long) args[0]);
+        if (record == null)
+            throw new IllegalArgumentException("Unknown fake LIMS record " + args[0]);
+        List<String> strings = strings(args);
+        String argument = strings.size() > 1 ? strings.get(1) : null;
+        Class<?> returns = method.getReturnType();
+
+        if (name.startsWith("set")) {
+            if (args[args.length - 2] instanceof Map)
+                record.fields.putAll((Map<String, Object>) args[args.length - 2]);
+            else if (argument != null)
+                record.fields.put(argument, args[3]);
+            return null;
+        }
+        if (Map.class.isAssignableFrom(returns))
+            return fields(record);
+        if (returns.isArray() || List.class.isAssignableFrom(returns)) {
+            List<FakeRecord> related;
+            if (name.contains("Descendant"))
+                related = reachable(record, true, argument);
+            else if (name.contains("Ancestor"))
+                related = reachable(record, false, argument);
+            else if (name.contains("Parent"))
+                related = related(record.parents, argument);
+            else if (name.contains("Child"))
+                related = related(record.children, argument);
+            else
+                throw new UnsupportedOperationException("Fake LIMS does not implement DataRecord." + name);
+            List<DataRecord> dataRecords = dataRecords(related);
+            return returns.isArray() ? dataRecords.toArray(new DataRecord[0]) : dataRecords;
+        }
+        if (name.startsWith("get") && argument != null)
+            return convert(record.fields.get(argument), returns);
+        throw new UnsupportedOperationException("Fake LIMS does not implement DataRecord." + name);
+    }
+
+    private List<DataRecord> query(String type, String where) {
+        FakeLimsCondition condition = new FakeLimsCondition(where);
+        return query(type, record -> condition.matches(record.fields));
+    }
+
+    private List<DataRecord> query(String type, Set<Object> values, String field) {
+        return query(type, record -> values.contains(record.fields.get(field)));
+    }
+
+    private List<DataRecord> query(String type, Predicate<FakeRecord> filter) {
+        List<FakeRecord> matching = new ArrayList<>();
+        for (FakeRecord record : records.values()) {
+            if (record.type.equalsIgnoreCase(type) && filter.test(record))
+                matching.add(record);
+        }
+        matching.sort(Comparator.comparingLong(r -> r.id));
+        return dataRecords(matching);
+    }
+
+    private List<FakeRecord> related(List<Long> ids, String type) {
+        List<FakeRecord> related = new ArrayList<>();
+        synchronized (this) {
+            for (Long id : ids) {
+                FakeRecord record = records.get(id);
+                if (type == null || record.type.equalsIgnoreCase(type))
+                    related.add(record);
+            }
+        }
+        return related;
+    }
+
+    /**
+     * @return records of the type below (or above) the record, breadth first and without duplicates
+     */
+    private List<FakeRecord> reachable(FakeRecord from, boolean down, String type) {
+        List<FakeRecord> found = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        Deque<FakeRecord> queue = new ArrayDeque<>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            FakeRecord record = queue.poll();
+            for (FakeRecord next : related(down ? record.children : record.parents, null)) {
+                if (!seen.add(next.id))
+                    continue;
+                if (type == null || next.type.equalsIgnoreCase(type))
+                    found.add(next);
+                queue.add(next);
+            }
+        }
+        return found;
+    }
+
+    private List<FakeRecord> records(List<?> dataRecords) {
+        List<FakeRecord> fakes = new ArrayList<>(dataRecords.size());
+        for (Object dataRecord : dataRecords) {
+            FakeRecord fake = records.get(((DataRecord) dataRecord).getRecordId());
+            if (fake == null)
+                throw new IllegalArgumentException("Unknown fake LIMS record " + ((DataRecord) dataRecord).getRecordId());
+            fakes.add(fake);
+        }
+        return fakes;
+    }
+
+    private static <T> List<T> perRecord(List<FakeRecord> records, Function<FakeRecord, T> each) {
+        List<T> result = new ArrayList<>(records.size());
+        for (FakeRecord record : records) {
+            result.add(each.apply(record));
+        }
+        return result;
+    }
+
+    private static List<DataRecord> dataRecords(List<FakeRecord> records) {
+        List<DataRecord> dataRecords = new ArrayList<>(records.size());
+        for (FakeRecord record : records) {
+            dataRecords.add(record.record);
+        }
+        return dataRecords;
+    }
+
+    private static Map<String, Object> fields(FakeRecord record) {
+        synchronized (record.fields) {
+            return new HashMap<>(record.fields);
+        }
+    }
+
+    private void sleep() throws InterruptedException {
+        long latency = latencyMs;
+        if (jitterMs > 0)
+            latency += ThreadLocalRandom.current().nextLong(jitterMs + 1);
+        if (latency > 0)
+            Thread.sleep(latency);
+    }
+
+    private static List<String> strings(Object[] args) {
+        List<String> strings = new ArrayList<>();
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg instanceof String)
+                    strings.add((String) arg);
+            }
+        }
+        return strings;
+    }
+
+    private static Object invokeObject(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "FakeLims";
+        }
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (value == null)
+            return type.isPrimitive() ? defaultValue(type) : null;
+        if (type == String.class)
+            return value.toString();
+        if (value instanceof Number) {
+            Number number = (Number) value;
+            if (type == long.class || type == Long.class)
+                return number.longValue();
+            if (type == int.class || type == Integer.class)
+                return number.intValue();
+            if (type == short.class || type == Short.class)
+                return number.shortValue();
+            if (type == double.class || type == Double.class)
+                return number.doubleValue();
+        }
+        return value;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class)
+            return false;
+        if (type == long.class)
+            return 0L;
+        if (type == int.class)
+            return 0;
+        if (type == short.class)
+            return (short) 0;
+        if (type == double.class)
+            return 0.0;
+        return null;
+    }
+
+    private static long number(Object value) {
+        if (value == null)
+            return 0;
+        if (value instanceof Number)
+            return ((Number) value).longValue();
+        return Long.parseLong(value.toString().trim());
+    }
+}
@@ -0,0 +1,224 @@
+package org.mskcc.limsrest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Where clause of a {@link FakeLims} query. Understands the comparisons this service sends to the LIMS,
+ * {@code =, !=, <>, <, <=, >, >=, [NOT] IN (...), [NOT] LIKE, IS [NOT] NULL}, with quoted or numeric values and field
+ * names in any case, joined with AND and OR (AND binding first) and grouped with parentheses. An ORDER BY is ignored.
+ * Anything else throws, like the LIMS calls {@link FakeLims} does not implement, so a fixture never answers with the
+ * wrong records.
+ */
+class FakeLimsCondition {
+    private static final Pattern OR = Pattern.compile("\\s+or\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern AND = Pattern.compile("\\s+and\\s+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ORDER_BY = Pattern.compile("\\s+order\\s+by\\s+.*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NULL_CHECK = Pattern.compile("(\\w+)\\s+is\\s+(not\\s+)?null", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IN = Pattern.compile("(\\w+)\\s+(not\\s+)?in\\s*\\((.*)\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIKE = Pattern.compile("(\\w+)\\s+(not\\s+)?like\\s+(.+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMPARISON = Pattern.compile("(\\w+)\\s*(=|!=|<>|<=|>=|<|>)\\s*(.+)");
+    private static final Pattern VALUE = Pattern.compile("'((?:[^']|'')*)'|\"([^\"]*)\"|([^,\\s]+)");
+
+    private interface Term {
+        boolean matches(Map<String, Object> fields);
+    }
+
+    private final String where;
+    private final Term term;
+
+    FakeLimsCondition(String where) {
+        this.where = where;
+        if (where == null || where.trim().isEmpty())
+            this.term = fields -> true;
+        else
+            this.term = parseExpression(ORDER_BY.matcher(where.trim()).replaceFirst(""), where);
+    }
+
+    boolean matches(Map<String, Object> fields) {
+        return term.matches(fields);
+    }
+
+    @Override
+    public String toString() {
+        return where;
+    }
+
+    private static Term parseExpression(String expression, String where) {
+        List<Term> alternatives = new ArrayList<>();
+        for (String alternative : split(expression, OR)) {
+            List<Term> conditions = new ArrayList<>();
+            for (String condition : split(alternative, AND)) {
+                conditions.add(parseCondition(condition.trim(), where));
+            }
+            alternatives.add(conditions.size() == 1 ? conditions.get(0)
+                    : fields -> conditions.stream().allMatch(t -> t.matches(fields)));
+        }
+        return alternatives.size() == 1 ? alternatives.get(0)
+                : fields -> alternatives.stream().anyMatch(t -> t.matches(fields));
+    }
+
+    private static Term parseCondition(String condition, String where) {
+        if (isGrouped(condition))
+            return parseExpression(condition.substring(1, condition.length() - 1), where);
+        Term term = parse(condition);
+        if (term == null)
+            throw new UnsupportedOperationException("Fake LIMS can not evaluate '" + condition + "' of '" + where + "'");
+        return term;
+    }
+
+    /**
+     * Splits on the keyword outside of quotes and parentheses, so values containing " and " and grouped or IN (...)
+     * conditions stay intact.
+     */
+    private static List<String> split(String conditions, Pattern keyword) {
+        List<String> parts = new ArrayList<>();
+        Matcher m = keyword.matcher(mask(conditions));
+        int start = 0;
+        while (m.find()) {
+            parts.add(conditions.substring(start, m.start()));
+            start = m.end();
+        }
+        parts.add(conditions.substring(start));
+        return parts;
+    }
+
+    /**
+     * @return true if the whole condition is one parenthesized group, e.g. "(a = 1 OR b = 2)" but not "(a = 1) OR (b = 2)"
+     */
+    private static boolean isGrouped(String condition) {
+        if (!condition.startsWith("(") || !condition.endsWith(")"))
+            return false;
+        String masked = mask(condition);
+        return masked.indexOf(')') == masked.length() - 1;
+    }
+
+    /**
+     * Replaces quoted text and anything nested inside parentheses, keeping the outermost parentheses.
+     */
+    private static String mask(String conditions) {
+        StringBuilder masked = new StringBuilder(conditions);
+        boolean quoted = false;
+        int depth = 0;
+        for (int i = 0; i < masked.length(); i++) {
+            char c = masked.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+                if (depth > 0)
+                    masked.setCharAt(i, 'x');
+            } else if (quoted) {
+                masked.setCharAt(i, 'x');
+            } else if (c == '(') {
+                if (depth++ > 0)
+                    masked.setCharAt(i, 'x');
+            } else if (c == ')') {
+                if (--depth > 0)
+                    masked.setCharAt(i, 'x');
+            } else if (depth > 0) {
+                masked.setCharAt(i, 'x');
+            }
+        }
+        return masked.toString();
+    }
+
+    private static Term parse(String condition) {
+        if (condition.matches("1\\s*=\\s*1"))
+            return fields -> true;
+        Matcher m = NULL_CHECK.matcher(condition);
+        if (m.matches()) {
+            String field = m.group(1);
+            boolean not = m.group(2) != null;
+            return fields -> (value(fields, field) == null) != not;
+        }
+        m = IN.matcher(condition);
+        if (m.matches()) {
+            String field = m.group(1);
+            boolean not = m.group(2) != null;
+            List<String> values = values(m.group(3));
+            return fields -> {
+                Object value = value(fields, field);
+                return value != null && values.stream().anyMatch(v -> compare(value, v) == 0) != not;
+            };
+        }
+        m = LIKE.matcher(condition);
+        if (m.matches()) {
+            String field = m.group(1);
+            boolean not = m.group(2) != null;
+            List<String> pattern = values(m.group(3));
+            if (pattern.size() != 1)
+                return null;
+            String regex = ("\\Q" + pattern.get(0) + "\\E").replace("%", "\\E.*\\Q").replace("_", "\\E.\\Q");
+            Pattern like = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+            return fields -> {
+                Object value = value(fields, field);
+                return value != null && like.matcher(value.toString()).matches() != not;
+            };
+        }
+        m = COMPARISON.matcher(condition);
+        if (m.matches()) {
+            String field = m.group(1);
+            String op = m.group(2);
+            List<String> operand = values(m.group(3));
+            if (operand.size() != 1)
+                return null;
+            String expected = operand.get(0);
+            return fields -> {
+                Object value = value(fields, field);
+                if (value == null)
+                    return false;
+                int c = compare(value, expected);
+                switch (op) {
+                    case "=": return c == 0;
+                    case "!=":
+                    case "<>": return c != 0;
+                    case "<": return c < 0;
+                    case "<=": return c <= 0;
+                    case ">": return c > 0;
+                    default: return c >= 0;
+                }
+            };
+        }
+        return null;
+    }
+
+    private static List<String> values(String list) {
+        List<String> values = new ArrayList<>();
+        Matcher m = VALUE.matcher(list);
+        while (m.find()) {
+            if (m.group(1) != null)
+                values.add(m.group(1).replace("''", "'"));
+            else if (m.group(2) != null)
+                values.add(m.group(2));
+            else
+                values.add(m.group(3));
+        }
+        return values;
+    }
+
+    private static Object value(Map<String, Object> fields, String field) {
+        Object value = fields.get(field);
+        if (value != null || fields.containsKey(field))
+            return value;
+        for (Map.Entry<String, Object> entry : fields.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(field))
+                return entry.getValue();
+        }
+        return null;
+    }
+
+    private static int compare(Object value, String expected) {
+        if (value instanceof Number) {
+            try {
+                return Double.compare(((Number) value).doubleValue(), Double.parseDouble(expected));
+            } catch (NumberFormatException e) {
+                return value.toString().compareTo(expected);
+            }
+        }
+        if (value instanceof Boolean)
+            return value.equals(expected.equals("1") || expected.equalsIgnoreCase("true")) ? 0 : 1;
+        return value.toString().compareTo(expected);
+    }
+}
@@ -0,0 +1,48 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+
+import java.util.function.Supplier;
+
+/**
+ * Pooled connection to a {@link FakeLims} instead of the LIMS server. Calls are still counted and limited like RMI
+ * calls. There is no DataMgmtServer, so endpoints reading pick lists or workflows fail against the fake.
+ */
+class FakeVeloxConnection extends LimsVeloxConnection {
+    private final FakeLims lims;
+    private final User user;
+    private volatile boolean connected = false;
+
+    FakeVeloxConnection(FakeLims lims, String user, Supplier<AdaptiveLimiter> limiter) {
+        super("fake", 0, "", user, "", limiter);
+        this.lims = lims;
+        this.user = FakeLims.user(user);
+    }
+
+    @Override
+    public boolean open() {
+        connected = true;
+        return true;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void close() {
+        connected = false;
+    }
+
+    @Override
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    protected DataRecordManager openDataRecordManager() {
+        return connected ? lims.getDataRecordManager() : null;
+    }
+}
@@ -0,0 +1,195 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.datarecord.IoError;
+import com.velox.api.datarecord.NotFound;
+import com.velox.api.user.User;
+import com.velox.api.util.ServerException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * The LIMS IndexAssignment records (except IDT_TRIM) shared by /getBarcodeList and promotes of index material, read in
+ * two RMI calls and replaced as a whole when reloaded. Reloads run on a schedule, and when a promote asks for an index
+ * id that is not known yet, at most once per {@link #MIN_RELOAD_INTERVAL_MS}.
+ */
+public class IndexBarcodeReference implements AutoCloseable {
+    private static Log log = LogFactory.getLog(IndexBarcodeReference.class);
+
+    static final long MIN_RELOAD_INTERVAL_MS = 60000;
+
+    public static class IndexBarcode {
+        private final String indexId;
+        private final String indexType;
+        private final String indexTag;
+
+        IndexBarcode(String indexId, String indexType, String indexTag) {
+            this.indexId = indexId;
+            this.indexType = indexType;
+            this.indexTag = indexTag;
+        }
+
+        public String getIndexId() {
+            return indexId;
+        }
+
+        public String getIndexType() {
+            return indexType;
+        }
+
+        public String getIndexTag() {
+            return indexTag;
+        }
+    }
+
+    /**
+     * Barcodes ordered by IndexType and IndexId, version 0 until loaded.
+     */
+    public static class Barcodes {
+        static final Barcodes EMPTY = new Barcodes(0, 0, Collections.emptyList());
+
+        private final long version;
+        private final long loadedAt;
+        private final List<IndexBarcode> barcodes;
+        private final Map<String, IndexBarcode> byIndexId = new HashMap<>();
+
+        Barcodes(long version, long loadedAt, List<IndexBarcode> barcodes) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.barcodes = Collections.unmodifiableList(barcodes);
+            for (IndexBarcode barcode : barcodes) {
+                byIndexId.put(barcode.indexId, barcode);
+            }
+        }
+
+        public List<IndexBarcode> getBarcodes() {
+            return barcodes;
+        }
+
+        public IndexBarcode get(String indexId) {
+            return byIndexId.get(indexId);
+        }
+
+        /**
+         * @return IndexId -> IndexTag
+         */
+        public Map<String, String> getIndexTags() {
+            Map<String, String> tags = new HashMap<>();
+            for (IndexBarcode barcode : barcodes) {
+                tags.put(barcode.indexId, barcode.indexTag);
+            }
+            return tags;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+    }
+
+    private final AtomicReference<Barcodes> current = new AtomicReference<>(Barcodes.EMPTY);
+    private final LongSupplier clock;
+    private final ScheduledReload reload;
+
+    /**
+     * Loads the barcodes on first use only.
+     */
+    public IndexBarcodeReference() {
+        this(System::currentTimeMillis);
+    }
+
+    IndexBarcodeReference(LongSupplier clock) {
+        this.clock = clock;
+        this.reload = null;
+    }
+
+    /**
+     * Loads the barcodes in the background right away and then every refreshMs, if greater than 0.
+     */
+    public IndexBarcodeReference(ConnectionLIMS conn, long refreshMs) {
+        this.clock = System::currentTimeMillis;
+        this.reload = new ScheduledReload("index barcodes", refreshMs, () -> {
+            try (ConnectionLIMS.Lease lease = conn.checkout()) {
+                refresh(lease.getConnection().getDataRecordManager(), lease.getConnection().getUser());
+            }
+        });
+    }
+
+    /**
+     * @return the loaded barcodes, loading them with the caller's connection if that did not happen yet
+     */
+    public Barcodes get(DataRecordManager drm, User user) throws NotFound, IoError, RemoteException, ServerException {
+        Barcodes barcodes = current.get();
+        if (barcodes.version > 0)
+            return barcodes;
+        synchronized (current) {
+            barcodes = current.get();
+            return barcodes.version > 0 ? barcodes : refresh(drm, user);
+        }
+    }
+
+    /**
+     * Looks up an index id, reloading the barcodes first when it is not known, e.g. just added to the LIMS.
+     *
+     * @return null if the LIMS does not know the index id
+     */
+    public IndexBarcode get(String indexId, DataRecordManager drm, User user)
+            throws NotFound, IoError, RemoteException, ServerException {
+        Barcodes barcodes = get(drm, user);
+        IndexBarcode barcode = barcodes.get(indexId);
+        if (barcode != null)
+            return barcode;
+        synchronized (current) {
+            barcodes = current.get();
+            if (barcodes.get(indexId) == null && clock.getAsLong() - barcodes.loadedAt >= MIN_RELOAD_INTERVAL_MS) {
+                log.info("Index id " + indexId + " not known, reloading index barcodes");
+                barcodes = refresh(drm, user);
+            }
+        }
+        return barcodes.get(indexId);
+    }
+
+    public Barcodes getLoaded() {
+        return current.get();
+    }
+
+    /**
+     * Loads under the same lock as the on-demand reloads, so a slow scheduled load never replaces a newer one.
+     */
+    public Barcodes refresh(DataRecordManager drm, User user) throws NotFound, IoError, RemoteException, ServerException {
+        synchronized (current) {
+            List<DataRecord> records = drm.queryDataRecords("IndexAssignment", "IndexType != 'IDT_TRIM'", user);
+            List<Map<String, Object>> fields = records.isEmpty()
+                    ? Collections.emptyList() : drm.getFieldsForRecords(records, user);
+            List<IndexBarcode> barcodes = new ArrayList<>(fields.size());
+            for (Map<String, Object> f : fields) {
+                barcodes.add(new IndexBarcode(string(f.get("IndexId")), string(f.get("IndexType")), string(f.get("IndexTag"))));
+            }
+            barcodes.sort(Comparator.comparing(IndexBarcode::getIndexType, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(IndexBarcode::getIndexId, Comparator.nullsFirst(Comparator.naturalOrder())));
+            Barcodes loaded = new Barcodes(current.get().version + 1, clock.getAsLong(), barcodes);
+            current.set(loaded);
+            log.info("Loaded " + barcodes.size() + " index barcodes, version " + loaded.version);
+            return loaded;
+        }
+    }
+
+    private static String string(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public void close() {
+        if (reload != null)
+            reload.close();
+    }
+}
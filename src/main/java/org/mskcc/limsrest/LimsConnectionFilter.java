@@ -0,0 +1,30 @@
+package org.mskcc.limsrest;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Returns the LIMS connection leased by the request thread to the pool once the request completes.
+ */
+public class LimsConnectionFilter extends OncePerRequestFilter {
+    private final ConnectionLIMS conn;
+
+    public LimsConnectionFilter(ConnectionLIMS conn) {
+        this.conn = conn;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            conn.releaseConnection();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package org.mskcc.limsrest;
+
+/**
+ * Thrown when no pooled LIMS connection becomes available within the configured max wait.
+ */
+public class LimsConnectionTimeoutException extends RuntimeException {
+    public LimsConnectionTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,175 @@
+package org.mskcc.limsrest;
+
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs independent pieces of LIMS work in parallel, each worker on its own pooled read connection. The calling thread
+ * works through the items too, with the connection it already holds, and extra workers are only started for
+ * connections that are free right now, so a fan-out never waits on the pool and never starves other requests.
+ * <p>
+ * Outcomes come back in input order. An item that throws is reported on its own without affecting the others, except
+ * for {@link DeadlineExceededException} which is rethrown once all workers have stopped, or in partial mode reported as
+ * skipped for the items in progress and all items not started yet.
+ */
+public class LimsFanOut {
+    private static Log log = LogFactory.getLog(LimsFanOut.class);
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private static final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "lims-fanout-" + threadNumber.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    @FunctionalInterface
+    public interface Work<I, R> {
+        R apply(I item, VeloxConnection connection) throws Exception;
+    }
+
+    public static class Outcome<R> {
+        private final R value;
+        private final Exception error;
+        private final boolean skipped;
+
+        private Outcome(R value, Exception error, boolean skipped) {
+            this.value = value;
+            this.error = error;
+            this.skipped = skipped;
+        }
+
+        public R getValue() {
+            return value;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+
+        /**
+         * @return true if the item was never started
+         */
+        public boolean isSkipped() {
+            return skipped;
+        }
+    }
+
+    private final ConnectionLIMS conn;
+    private final int maxParallelism;
+
+    /**
+     * @param maxParallelism most items in progress at once, including the calling thread
+     */
+    public LimsFanOut(ConnectionLIMS conn, int maxParallelism) {
+        this.conn = conn;
+        this.maxParallelism = Math.max(1, maxParallelism);
+    }
+
+    /**
+     * Sized to the read connections of the pool.
+     */
+    public LimsFanOut(ConnectionLIMS conn) {
+        this(conn, conn.getBudget(ExecutionLane.READ));
+    }
+
+    public <I, R> List<Outcome<R>> map(List<I> items, Work<I, R> work) throws InterruptedException {
+        return map(items, work, () -> false);
+    }
+
+    /**
+     * @param skip checked before each item is started, items are skipped while it returns true
+     */
+    public <I, R> List<Outcome<R>> map(List<I> items, Work<I, R> work, BooleanSupplier skip)
+            throws InterruptedException {
+        return map(items, work, skip, false);
+    }
+
+    /**
+     * @param partial once the deadline passes, report the unfinished items as skipped instead of failing
+     */
+    public <I, R> List<Outcome<R>> map(List<I> items, Work<I, R> work, BooleanSupplier skip, boolean partial)
+            throws InterruptedException {
+        AtomicReferenceArray<Outcome<R>> outcomes = new AtomicReferenceArray<>(items.size());
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<DeadlineExceededException> expired = new AtomicReference<>();
+        Consumer<VeloxConnection> drain = connection -> {
+            int i;
+            while (expired.get() == null && (i = next.getAndIncrement()) < items.size()) {
+                if (skip.getAsBoolean()) {
+                    outcomes.set(i, new Outcome<>(null, null, true));
+                    continue;
+                }
+                try {
+                    Deadline.check();
+                    outcomes.set(i, new Outcome<>(work.apply(items.get(i), connection), null, false));
+                } catch (DeadlineExceededException e) {
+                    expired.compareAndSet(null, e);
+                    if (partial)
+                        outcomes.set(i, new Outcome<>(null, null, true));
+                } catch (Exception e) {
+                    log.error("Fan-out item " + items.get(i) + " failed: " + e.getMessage(), e);
+                    outcomes.set(i, new Outcome<>(null, e, false));
+                }
+            }
+        };
+
+        List<Future<Void>> started = new ArrayList<>();
+        int extra = Math.min(items.size(), maxParallelism) - 1;
+        for (int w = 0; w < extra; w++) {
+            ConnectionLIMS.Lease lease = conn.tryCheckout(ExecutionLane.READ);
+            if (lease == null)
+                break;
+            Callable<Void> worker = RmiCallStats.propagate(Deadline.propagate(() -> {
+                drain.accept(lease.getConnection());
+                return null;
+            }));
+            started.add(workers.submit(() -> {
+                try {
+                    return worker.call();
+                } finally {
+                    lease.close();
+                }
+            }));
+        }
+        log.info(String.format("Fanning out %d items over %d threads", items.size(), started.size() + 1));
+
+        try {
+            drain.accept(conn.getConnection());
+        } finally {
+            for (Future<Void> worker : started) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof DeadlineExceededException)
+                        expired.compareAndSet(null, (DeadlineExceededException) e.getCause());
+                    else
+                        log.error("Fan-out worker failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        }
+        if (expired.get() != null && !partial)
+            throw expired.get();
+
+        List<Outcome<R>> result = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Outcome<R> outcome = outcomes.get(i);
+            // left empty when a worker died outside of an item or stopped at the deadline
+            result.add(outcome != null ? outcome : new Outcome<>(null, null, true));
+        }
+        return result;
+    }
+}
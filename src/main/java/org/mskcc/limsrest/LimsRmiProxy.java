@@ -0,0 +1,165 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.datarecord.DataRecordProxy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.*;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wraps the RMI stub of a {@link DataRecordManager} so every call goes through the {@link AdaptiveLimiter}, when one is
+ * configured, and is counted in {@link RmiCallStats}. The DataRecords it returns are copies whose
+ * {@link DataRecordProxy} is wrapped the same way, so per-record calls like getStringVal and getChildrenOfType are
+ * limited and counted too, as are the records those calls return.
+ */
+final class LimsRmiProxy implements InvocationHandler {
+    private static Log log = LogFactory.getLog(LimsRmiProxy.class);
+    private static final Field RECORD_PROXY = recordProxyField();
+
+    private final Object target;
+    private final AdaptiveLimiter limiter;
+    // records of one connection share the server's proxy, so the last one wrapped is nearly always the one needed
+    private DataRecordProxy recordProxyFrom;
+    private DataRecordProxy recordProxy;
+
+    private LimsRmiProxy(Object target, AdaptiveLimiter limiter) {
+        this.target = target;
+        this.limiter = limiter;
+    }
+
+    /**
+     * @param limiter may be null to only count calls
+     */
+    static DataRecordManager wrap(DataRecordManager target, AdaptiveLimiter limiter) {
+        if (!DataRecordManager.class.isInterface()) {
+            log.warn("DataRecordManager is not an interface, RMI calls will not be limited or counted.");
+            return target;
+        }
+        return (DataRecordManager) Proxy.newProxyInstance(DataRecordManager.class.getClassLoader(),
+                new Class<?>[]{DataRecordManager.class}, new LimsRmiProxy(target, limiter));
+    }
+
+    static DataRecordProxy counting(DataRecordProxy target) {
+        return wrap(target, null);
+    }
+
+    private static DataRecordProxy wrap(DataRecordProxy target, AdaptiveLimiter limiter) {
+        return (DataRecordProxy) Proxy.newProxyInstance(DataRecordProxy.class.getClassLoader(),
+                new Class<?>[]{DataRecordProxy.class}, new LimsRmiProxy(target, limiter));
+    }
+
+    private static Field recordProxyField() {
+        for (Field field : DataRecord.class.getDeclaredFields()) {
+            if (DataRecordProxy.class.isAssignableFrom(field.getType()) && !Modifier.isStatic(field.getModifiers())) {
+                try {
+                    field.setAccessible(true);
+                    return field;
+                } catch (RuntimeException e) {
+                    break;
+                }
+            }
+        }
+        log.warn("DataRecord proxy not accessible, calls made on DataRecords will not be limited or counted.");
+        return null;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class)
+            return method.invoke(target, args);
+
+        if (limiter != null)
+            limiter.acquire();
+        String dataType = dataType(method, args);
+        long start = System.nanoTime();
+        boolean failed = false;
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            failed = e.getCause() instanceof RemoteException;
+            throw e.getCause();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (limiter != null)
+                limiter.release(RmiCallStats.key(method.getName(), dataType), elapsed, failed);
+            RmiCallStats.record(method.getName(), dataType, elapsed);
+        }
+        return wrapRecords(result);
+    }
+
+    /**
+     * @return the DataRecords in the result (alone, in an array or in nested lists) replaced by wrapped copies
+     */
+    private Object wrapRecords(Object result) {
+        if (result instanceof DataRecord)
+            return wrapRecord((DataRecord) result);
+        if (result instanceof DataRecord[]) {
+            DataRecord[] records = (DataRecord[]) result;
+            DataRecord[] wrapped = new DataRecord[records.length];
+            for (int i = 0; i < records.length; i++) {
+                wrapped[i] = wrapRecord(records[i]);
+            }
+            return wrapped;
+        }
+        if (result instanceof List) {
+            List<?> values = (List<?>) result;
+            List<Object> wrapped = new ArrayList<>(values.size());
+            boolean changed = false;
+            for (Object value : values) {
+                Object w = value instanceof DataRecord || value instanceof List ? wrapRecords(value) : value;
+                changed |= w != value;
+                wrapped.add(w);
+            }
+            return changed ? wrapped : result;
+        }
+        return result;
+    }
+
+    private DataRecord wrapRecord(DataRecord record) {
+        if (record == null || RECORD_PROXY == null)
+            return record;
+        DataRecordProxy proxy;
+        try {
+            proxy = (DataRecordProxy) RECORD_PROXY.get(record);
+        } catch (IllegalAccessException e) {
+            return record;
+        }
+        // records of the fake LIMS are built on a wrapped proxy already
+        if (proxy == null || (Proxy.isProxyClass(proxy.getClass()) && Proxy.getInvocationHandler(proxy) instanceof LimsRmiProxy))
+            return record;
+        return new DataRecord(record.getRecordId(), record.getDataTypeName(), wrappedRecordProxy(proxy));
+    }
+
+    private synchronized DataRecordProxy wrappedRecordProxy(DataRecordProxy proxy) {
+        if (proxy != recordProxyFrom) {
+            recordProxyFrom = proxy;
+            recordProxy = wrap(proxy, limiter);
+        }
+        return recordProxy;
+    }
+
+    /**
+     * The first String argument is the data type of a manager call or of the record a record call is made on. For
+     * the *OfType calls of a record the second one, the related type, says more.
+     */
+    static String dataType(Method method, Object[] args) {
+        if (args == null)
+            return null;
+        String first = null;
+        for (Object arg : args) {
+            if (!(arg instanceof String))
+                continue;
+            if (first == null)
+                first = (String) arg;
+            else
+                return method.getName().endsWith("OfType") ? (String) arg : first;
+        }
+        return first;
+    }
+}
@@ -0,0 +1,45 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+
+import java.util.function.Supplier;
+
+/**
+ * Pooled LIMS connection whose DataRecordManager calls, and the calls made on the DataRecords it returns, are counted and
+ * go through the pool's RMI limiter when one is configured.
+ */
+class LimsVeloxConnection extends VeloxConnection {
+    private final Supplier<AdaptiveLimiter> limiter;
+    private DataRecordManager wrappedFrom;
+    private AdaptiveLimiter wrappedWith;
+    private DataRecordManager wrapped;
+
+    LimsVeloxConnection(String host, int port, String guid, String user, String password,
+                        Supplier<AdaptiveLimiter> limiter) {
+        super(host, port, guid, user, password);
+        this.limiter = limiter;
+    }
+
+    /**
+     * @return the manager of the open connection, before it is wrapped
+     */
+    protected DataRecordManager openDataRecordManager() {
+        return super.getDataRecordManager();
+    }
+
+    @Override
+    public synchronized DataRecordManager getDataRecordManager() {
+        DataRecordManager drm = openDataRecordManager();
+        AdaptiveLimiter rmiLimiter = limiter.get();
+        if (drm == null)
+            return null;
+        // the manager changes when the connection is re-opened, the limiter when it is configured after startup
+        if (drm != wrappedFrom || rmiLimiter != wrappedWith) {
+            wrappedFrom = drm;
+            wrappedWith = rmiLimiter;
+            wrapped = LimsRmiProxy.wrap(drm, rmiLimiter);
+        }
+        return wrapped;
+    }
+}
@@ -0,0 +1,27 @@
+package org.mskcc.limsrest;
+
+import org.mskcc.limsrest.util.OncotreeIndex;
+
+import java.nio.file.Path;
+
+/**
+ * Loads the oncotree tumor types saved by the previous run, then fetches them from oncotree in the background right
+ * away and again every refreshMs.
+ */
+public class OncotreeIndexRefresher implements AutoCloseable {
+    private final ScheduledReload reload;
+
+    /**
+     * @param file      tumor types of the last fetch, null to always start without them
+     * @param refreshMs time between fetches, 0 to only fetch once
+     */
+    public OncotreeIndexRefresher(String apiUrl, Path file, long refreshMs) {
+        OncotreeIndex.loadFile(file);
+        this.reload = new ScheduledReload("oncotree tumor types", refreshMs, () -> OncotreeIndex.refresh(apiUrl, file));
+    }
+
+    @Override
+    public void close() {
+        reload.close();
+    }
+}
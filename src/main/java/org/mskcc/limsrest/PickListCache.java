@@ -0,0 +1,225 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.servermanager.PickListConfig;
+import com.velox.api.util.ServerException;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Pick list values shared by all requests. Pick lists rarely change, so a list is read from the PickListManager once
+ * and served from memory until the TTL expires or it is invalidated, e.g. by /invalidatePickListCache after editing it
+ * in the LIMS. If reloading an expired list fails the previous values are served, and the list is not read again for
+ * {@link #RETRY_AFTER_FAILURE_MS}.
+ * <p>
+ * Lists are loaded with the connection leased to the calling thread, one caller at a time per list and outside of any
+ * lock of the map. While a list is reloaded other callers are served its previous values, and only callers that have
+ * none wait for the load.
+ */
+public class PickListCache {
+    private static Log log = LogFactory.getLog(PickListCache.class);
+
+    static final long RETRY_AFTER_FAILURE_MS = 30000;
+
+    @FunctionalInterface
+    interface Loader {
+        /**
+         * @return the entries of the pick list, null if there is no such list
+         */
+        List<String> load(String pickList) throws RemoteException, ServerException;
+    }
+
+    private static class Entry {
+        final List<String> values;
+        final long loadedAt;
+        // after a failed reload, the list is not read again before then
+        final long retryAt;
+
+        Entry(List<String> values, long loadedAt, long retryAt) {
+            this.values = values;
+            this.loadedAt = loadedAt;
+            this.retryAt = retryAt;
+        }
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // the load in progress per list, completed with null if there is no such list
+    private final ConcurrentMap<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    // a load started before an invalidation does not replace the list
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Loader loader;
+    private final long ttlMs;
+    private final LongSupplier clock;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+
+    /**
+     * @param ttlMs how long a list is served before it is read again, 0 to read it on every call
+     */
+    public PickListCache(ConnectionLIMS conn, long ttlMs) {
+        this(pickList -> load(conn.getConnection(), pickList), ttlMs, System::currentTimeMillis);
+    }
+
+    PickListCache(Loader loader, long ttlMs, LongSupplier clock) {
+        this.loader = loader;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+    }
+
+    private static List<String> load(VeloxConnection vConn, String pickList) throws RemoteException, ServerException {
+        PickListConfig config = vConn.getDataMgmtServer().getPickListManager(vConn.getUser()).getPickListConfig(pickList);
+        return config == null ? null : config.getEntryList();
+    }
+
+    /**
+     * @return a copy of the pick list values the caller may modify, null if there is no such list
+     * @throws RemoteException when the list was never loaded and can not be read now
+     * @throws ServerException  when the list was never loaded and can not be read now
+     */
+    public List<String> get(String pickList) throws RemoteException, ServerException {
+        Entry entry = entries.get(pickList);
+        if (entry != null && isServable(entry, clock.getAsLong())) {
+            hits.incrementAndGet();
+            return copy(entry.values);
+        }
+        CompletableFuture<Entry> load = new CompletableFuture<>();
+        CompletableFuture<Entry> inProgress = loading.putIfAbsent(pickList, load);
+        if (inProgress != null) {
+            if (entry != null) {
+                hits.incrementAndGet();
+                return copy(entry.values);
+            }
+            // concurrent misses of the same list wait here for the one caller loading it
+            Entry loaded = await(inProgress);
+            return loaded == null ? null : copy(loaded.values);
+        }
+        try {
+            Entry loaded = load(pickList);
+            load.complete(loaded);
+            return loaded == null ? null : copy(loaded.values);
+        } catch (RemoteException | ServerException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(pickList, load);
+        }
+    }
+
+    private Entry load(String pickList) throws RemoteException, ServerException {
+        long invalidated = invalidations.get();
+        long now = clock.getAsLong();
+        Entry previous = entries.get(pickList);
+        if (previous != null && isServable(previous, now)) {
+            hits.incrementAndGet();
+            return previous;
+        }
+        misses.incrementAndGet();
+        Entry loaded;
+        try {
+            List<String> values = loader.load(pickList);
+            loaded = values == null ? null : new Entry(new ArrayList<>(values), now, 0);
+        } catch (RemoteException | ServerException e) {
+            loadFailures.incrementAndGet();
+            if (previous == null)
+                throw e;
+            log.warn("Failed to reload pick list " + pickList + ", serving values loaded " + (now - previous.loadedAt) +
+                    "ms ago: " + e.getMessage());
+            loaded = new Entry(previous.values, previous.loadedAt, now + RETRY_AFTER_FAILURE_MS);
+        }
+        if (invalidations.get() == invalidated) {
+            if (loaded == null)
+                entries.remove(pickList);
+            else
+                entries.put(pickList, loaded);
+        }
+        return loaded;
+    }
+
+    private static Entry await(CompletableFuture<Entry> load) throws RemoteException, ServerException {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RemoteException)
+                throw (RemoteException) e.getCause();
+            if (e.getCause() instanceof ServerException)
+                throw (ServerException) e.getCause();
+            throw e;
+        }
+    }
+
+    private boolean isServable(Entry entry, long now) {
+        return now - entry.loadedAt < ttlMs || now < entry.retryAt;
+    }
+
+    /**
+     * Loads the pick lists on a background thread so the first requests find them cached.
+     */
+    public void warmUp(ConnectionLIMS conn, Collection<String> pickLists) {
+        if (pickLists.isEmpty())
+            return;
+        Thread warmUp = new Thread(() -> {
+            try {
+                for (String pickList : pickLists) {
+                    try {
+                        get(pickList);
+                    } catch (Exception e) {
+                        log.warn("Failed to load pick list " + pickList + " at startup: " + e.getMessage());
+                    }
+                }
+                log.info("Loaded pick lists " + pickLists);
+            } finally {
+                conn.releaseConnection();
+            }
+        }, "lims-picklist-warmup");
+        warmUp.setDaemon(true);
+        warmUp.start();
+    }
+
+    public void invalidate(String pickList) {
+        invalidations.incrementAndGet();
+        if (entries.remove(pickList) != null)
+            log.info("Invalidated cached pick list " + pickList);
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        entries.clear();
+        log.info("Invalidated all cached pick lists");
+    }
+
+    private static List<String> copy(List<String> values) {
+        return new ArrayList<>(values);
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.get();
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+}
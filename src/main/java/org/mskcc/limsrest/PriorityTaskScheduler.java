@@ -0,0 +1,152 @@
+package org.mskcc.limsrest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed size worker pool that runs the most urgent queued task first.
+ * <p>
+ * Every {@link TaskPriority} has its own FIFO queue. When a worker is free it compares the oldest task of each class
+ * and takes the one with the lowest effective rank, where the rank is the priority ordinal minus one for every
+ * {@code agingMs} the task has been waiting. Batch and maintenance work therefore moves up over time and cannot be
+ * starved by a steady stream of interactive calls.
+ */
+public class PriorityTaskScheduler {
+    private static Log log = LogFactory.getLog(PriorityTaskScheduler.class);
+
+    public static final long DEFAULT_AGING_MS = 30000;
+
+    private final Map<TaskPriority, Deque<QueuedTask>> queues = new EnumMap<>(TaskPriority.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final List<Thread> workers = new ArrayList<>();
+    private final long agingMs;
+    private volatile boolean shutdown = false;
+
+    public PriorityTaskScheduler(String name, int threads, long agingMs) {
+        this.agingMs = agingMs;
+        for (TaskPriority priority : TaskPriority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+        }
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, name + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public <T> Future<T> submit(Callable<T> task, TaskPriority priority) {
+        FutureTask<T> future = new FutureTask<>(task);
+        lock.lock();
+        try {
+            if (shutdown)
+                throw new RejectedExecutionException("Scheduler is shut down.");
+            queues.get(priority).addLast(new QueuedTask(future, priority, System.currentTimeMillis()));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    public int getQueueDepth(TaskPriority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting tasks, workers exit once the queued tasks are done.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Runnable task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == null)
+                return;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Scheduled task failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private Runnable take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                QueuedTask next = selectNext(System.currentTimeMillis());
+                if (next != null) {
+                    queues.get(next.priority).pollFirst();
+                    return next.task;
+                }
+                if (shutdown)
+                    return null;
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // only the head of each queue is a candidate since it is the oldest of its class
+    private QueuedTask selectNext(long now) {
+        QueuedTask best = null;
+        double bestRank = 0;
+        for (Deque<QueuedTask> queue : queues.values()) {
+            QueuedTask head = queue.peekFirst();
+            if (head == null)
+                continue;
+            double rank = head.priority.ordinal() - (double) (now - head.enqueuedAt) / agingMs;
+            if (best == null || rank < bestRank || (rank == bestRank && head.enqueuedAt < best.enqueuedAt)) {
+                best = head;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    private static class QueuedTask {
+        private final FutureTask<?> task;
+        private final TaskPriority priority;
+        private final long enqueuedAt;
+
+        QueuedTask(FutureTask<?> task, TaskPriority priority, long enqueuedAt) {
+            this.task = task;
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
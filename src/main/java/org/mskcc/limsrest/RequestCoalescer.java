@@ -0,0 +1,158 @@
+package org.mskcc.limsrest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical GET requests share one in-flight LIMS computation. The first caller for a key starts the
+ * work, callers arriving before it completes get the same result. Nothing is cached once the work is done.
+ * <p>
+ * The shared work runs until the latest {@link Deadline} of its callers, so a caller that allows more time than the
+ * first one never gets a 504 at the first caller's deadline. Each caller still gets its 504 at its own deadline.
+ */
+public class RequestCoalescer {
+    private static Log log = LogFactory.getLog(RequestCoalescer.class);
+    private static final ScheduledThreadPoolExecutor deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "coalescer-deadlines");
+        t.setDaemon(true);
+        return t;
+    });
+    static {
+        deadlines.setRemoveOnCancelPolicy(true);
+    }
+
+    private static class Call {
+        final CompletableFuture<?> result;
+        // deadline the shared work runs under, null if it has none
+        final Deadline deadline;
+
+        Call(CompletableFuture<?> result, Deadline deadline) {
+            this.result = result;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Extends the shared work to the caller's deadline, unless the work stops at the deadline it already has.
+         */
+        boolean join(Deadline caller) {
+            if (deadline == null)
+                return true;
+            if (caller == null || deadline.isExpired())
+                return false;
+            deadline.extendTo(caller);
+            return true;
+        }
+    }
+
+    private final ConcurrentMap<String, Call> inFlight = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public RequestCoalescer(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Builds the key from the endpoint and its parameters sorted by name. The order of the values of a repeated
+     * parameter is kept since it determines the order of the response.
+     */
+    public static String key(String endpoint, Map<String, String[]> parameters) {
+        StringBuilder key = new StringBuilder(endpoint);
+        char separator = '?';
+        for (Map.Entry<String, String[]> e : new TreeMap<>(parameters).entrySet()) {
+            List<String> values = new ArrayList<>();
+            for (String value : e.getValue()) {
+                values.add(value == null ? "" : value.trim());
+            }
+            key.append(separator).append(e.getKey()).append('=').append(String.join(",", values));
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    /**
+     * @param work started under a copy of the caller's deadline, which later callers may extend
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> coalesce(String key, Supplier<CompletableFuture<T>> work) {
+        if (!enabled)
+            return work.get();
+
+        Deadline caller = Deadline.current();
+        CompletableFuture<T> shared = new CompletableFuture<>();
+        Call call = new Call(shared, caller == null ? null : caller.copy());
+        while (true) {
+            Call existing = inFlight.putIfAbsent(key, call);
+            if (existing == null)
+                break;
+            if (existing.join(caller)) {
+                coalesced.incrementAndGet();
+                log.info("Joining in-flight request " + key);
+                return forCaller((CompletableFuture<T>) existing.result, caller);
+            }
+            // the in-flight work would stop before this caller's deadline, later callers join this one instead
+            if (inFlight.replace(key, existing, call))
+                break;
+        }
+
+        started.incrementAndGet();
+        Deadline.set(call.deadline);
+        try {
+            work.get().whenComplete((result, e) -> {
+                inFlight.remove(key, call);
+                if (e != null)
+                    shared.completeExceptionally(e);
+                else
+                    shared.complete(result);
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, call);
+            shared.completeExceptionally(e);
+        } finally {
+            Deadline.set(caller);
+        }
+        return forCaller(shared, caller);
+    }
+
+    /**
+     * Callers get their own dependent future so cancelling one does not affect the others, failing with
+     * {@link DeadlineExceededException} at the caller's deadline while the shared work goes on for later callers.
+     */
+    private static <T> CompletableFuture<T> forCaller(CompletableFuture<T> shared, Deadline caller) {
+        CompletableFuture<T> result = shared.thenApply(Function.identity());
+        if (caller == null || result.isDone())
+            return result;
+        ScheduledFuture<?> timeout = deadlines.schedule(
+                () -> result.completeExceptionally(new DeadlineExceededException(caller.getBudgetMs())),
+                caller.remainingMs(), TimeUnit.MILLISECONDS);
+        result.whenComplete((value, e) -> timeout.cancel(false));
+        return result;
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getStarted() {
+        return started.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+}
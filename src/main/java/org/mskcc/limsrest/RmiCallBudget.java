@@ -0,0 +1,66 @@
+package org.mskcc.limsrest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Most LIMS RMI calls one request to an endpoint should need, either flat or per block of items the request reported
+ * with {@link RmiCallStats#addItems(long)}. A request over its budget usually means a new per-sample or per-field call
+ * inside a loop.
+ * <p>
+ * Budgets are configured as a comma separated list of {@code path:calls} or {@code path:calls/items}, e.g.
+ * {@code /getRequestTracking:200/100} allows 200 calls for every started 100 samples.
+ */
+public class RmiCallBudget {
+    private final String name;
+    private final long calls;
+    private final long perItems;
+
+    /**
+     * @param perItems 0 for a flat budget
+     */
+    public RmiCallBudget(String name, long calls, long perItems) {
+        this.name = name;
+        this.calls = calls;
+        this.perItems = perItems;
+    }
+
+    public static Map<String, RmiCallBudget> parse(String endpoints) {
+        Map<String, RmiCallBudget> budgets = new LinkedHashMap<>();
+        if (endpoints == null || endpoints.trim().isEmpty())
+            return budgets;
+        for (String endpoint : endpoints.split(",")) {
+            String[] parts = endpoint.trim().split(":");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Invalid RMI call budget '" + endpoint + "', expected path:calls[/items]");
+            String path = parts[0].trim();
+            String[] budget = parts[1].trim().split("/");
+            long perItems = budget.length > 1 ? Long.parseLong(budget[1].trim()) : 0;
+            budgets.put(path, new RmiCallBudget(path, Long.parseLong(budget[0].trim()), perItems));
+        }
+        return budgets;
+    }
+
+    public long getAllowedCalls(long items) {
+        if (perItems <= 0)
+            return calls;
+        long blocks = Math.max(1, (items + perItems - 1) / perItems);
+        return calls * blocks;
+    }
+
+    public boolean isExceeded(RmiCallStats stats) {
+        return stats.getCalls() > getAllowedCalls(stats.getItems());
+    }
+
+    /**
+     * @return e.g. {@code /getRequestTracking made 412 LIMS RMI calls for 120 items, budget 400}
+     */
+    public String describe(RmiCallStats stats) {
+        return name + " made " + stats.getCalls() + " LIMS RMI calls for " + stats.getItems() + " items, budget " +
+                getAllowedCalls(stats.getItems());
+    }
+
+    public String getName() {
+        return name;
+    }
+}
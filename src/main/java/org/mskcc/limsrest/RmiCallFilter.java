@@ -0,0 +1,130 @@
+package org.mskcc.limsrest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Counts the LIMS RMI calls made for each request and logs them once the response is written. With the header enabled
+ * the count is also returned in {@value #CALLS_HEADER}, set just before the body is written when all LIMS work of the
+ * request is done. Requests over the {@link RmiCallBudget} of their endpoint log a warning with the call sites that
+ * made the most calls.
+ * <p>
+ * Also runs on the async dispatch of endpoints returning a future, so the count covers the queued work as well.
+ */
+public class RmiCallFilter extends OncePerRequestFilter {
+    private static Log log = LogFactory.getLog(RmiCallFilter.class);
+
+    public static final String CALLS_HEADER = "X-Lims-Rmi-Calls";
+    private static final String STATS_ATTRIBUTE = RmiCallFilter.class.getName() + ".stats";
+    private static final int HEADER_METHODS = 10;
+    private static final int REPORTED_CALL_SITES = 10;
+
+    private final boolean header;
+    private final Map<String, RmiCallBudget> budgets;
+
+    public RmiCallFilter(boolean header, Map<String, RmiCallBudget> budgets) {
+        this.header = header;
+        this.budgets = budgets;
+    }
+
+    public Collection<RmiCallBudget> getBudgets() {
+        return Collections.unmodifiableCollection(budgets.values());
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RmiCallBudget budget = budgets.get(request.getServletPath());
+        RmiCallStats stats = (RmiCallStats) request.getAttribute(STATS_ATTRIBUTE);
+        if (stats == null) {
+            stats = new RmiCallStats();
+            if (budget != null)
+                stats.trackCallSites();
+            request.setAttribute(STATS_ATTRIBUTE, stats);
+        }
+        RmiCallStats.set(stats);
+        try {
+            chain.doFilter(request, header ? new CallsHeaderResponse(response, stats) : response);
+        } finally {
+            RmiCallStats.set(null);
+        }
+        if (isAsyncStarted(request) || stats.getCalls() == 0)
+            return;
+        log.info(request.getMethod() + " " + request.getServletPath() + " LIMS RMI " + stats.summary(HEADER_METHODS));
+        if (budget != null && budget.isExceeded(stats))
+            log.warn(budget.describe(stats) + ", top call sites: " + top(stats.getCallsBySite(), REPORTED_CALL_SITES));
+    }
+
+    private static String top(Map<String, Long> calls, int count) {
+        StringBuilder top = new StringBuilder();
+        int listed = 0;
+        for (Map.Entry<String, Long> entry : calls.entrySet()) {
+            if (listed++ == count)
+                break;
+            top.append(listed == 1 ? "" : ", ").append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return top.toString();
+    }
+
+    private static class CallsHeaderResponse extends HttpServletResponseWrapper {
+        private final RmiCallStats stats;
+
+        CallsHeaderResponse(HttpServletResponse response, RmiCallStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        private void setCallsHeader() {
+            if (!isCommitted())
+                setHeader(CALLS_HEADER, stats.summary(HEADER_METHODS));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            setCallsHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            setCallsHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            setCallsHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            setCallsHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            setCallsHeader();
+            super.sendError(sc);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.mskcc.limsrest;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts LIMS RMI calls by method and data type, for the current HTTP request and since startup. {@link RmiCallFilter}
+ * starts the count of each request, queued and fanned out LIMS work adds to the count of the request that submitted
+ * it. Tasks report how many items (samples, requests) they worked on with {@link #addItems(long)} so
+ * {@link RmiCallBudget}s can scale with the size of the answer, and requests with a budget also count calls by the
+ * line of code that made them.
+ */
+public final class RmiCallStats {
+    private static final ThreadLocal<RmiCallStats> current = new ThreadLocal<>();
+    private static final RmiCallStats totals = new RmiCallStats();
+
+    // "method(dataType)" -> calls
+    private final Map<String, AtomicLong> callsByMethod = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong items = new AtomicLong();
+    // "Class.method:line method(dataType)" -> calls, only while tracking call sites
+    private final Map<String, AtomicLong> callsBySite = new ConcurrentHashMap<>();
+    private volatile boolean trackCallSites;
+
+    /**
+     * @return count of the work running on this thread or null if there is none
+     */
+    public static RmiCallStats current() {
+        return current.get();
+    }
+
+    public static void set(RmiCallStats stats) {
+        if (stats == null)
+            current.remove();
+        else
+            current.set(stats);
+    }
+
+    /**
+     * @return all calls since startup
+     */
+    public static RmiCallStats totals() {
+        return totals;
+    }
+
+    /**
+     * Wraps the task so its calls count towards the request that submitted it.
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        RmiCallStats stats = current.get();
+        if (stats == null)
+            return task;
+        return () -> {
+            RmiCallStats previous = current.get();
+            current.set(stats);
+            try {
+                return task.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    /**
+     * Adds to the number of items the current request worked on.
+     */
+    public static void addItems(long count) {
+        RmiCallStats stats = current.get();
+        if (stats != null)
+            stats.items.addAndGet(count);
+    }
+
+    /**
+     * @return e.g. {@code queryDataRecords(Sample)}
+     */
+    static String key(String method, String dataType) {
+        return dataType == null ? method : method + "(" + dataType + ")";
+    }
+
+    static void record(String method, String dataType, long elapsedNanos) {
+        String key = key(method, dataType);
+        totals.add(key, elapsedNanos);
+        RmiCallStats stats = current.get();
+        if (stats != null) {
+            stats.add(key, elapsedNanos);
+            if (stats.trackCallSites)
+                stats.callsBySite.computeIfAbsent(callSite() + " " + key, k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * @return first frame of this application outside of the RMI wrappers and the util package, whose record helpers
+     * are rarely the place to fix a loop
+     */
+    private static String callSite() {
+        StackTraceElement fallback = null;
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (!className.startsWith("org.mskcc.limsrest.") || className.equals(RmiCallStats.class.getName())
+                    || className.equals(LimsRmiProxy.class.getName()))
+                continue;
+            if (fallback == null)
+                fallback = frame;
+            if (!className.startsWith("org.mskcc.limsrest.util."))
+                return format(frame);
+        }
+        return fallback == null ? "unknown" : format(fallback);
+    }
+
+    private static String format(StackTraceElement frame) {
+        String className = frame.getClassName();
+        return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" +
+                frame.getLineNumber();
+    }
+
+    /**
+     * Also counts calls by the line that made them from now on, at the cost of a stack trace per call.
+     */
+    public void trackCallSites() {
+        trackCallSites = true;
+    }
+
+    private void add(String key, long elapsedNanos) {
+        callsByMethod.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+        calls.incrementAndGet();
+        nanos.addAndGet(elapsedNanos);
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+    }
+
+    public long getItems() {
+        return items.get();
+    }
+
+    /**
+     * @return calls by method and data type, most called first
+     */
+    public Map<String, Long> getCallsByMethod() {
+        return sortedByCalls(callsByMethod);
+    }
+
+    /**
+     * @return calls by call site, method and data type, most called first. Empty unless call sites are tracked
+     */
+    public Map<String, Long> getCallsBySite() {
+        return sortedByCalls(callsBySite);
+    }
+
+    private static Map<String, Long> sortedByCalls(Map<String, AtomicLong> calls) {
+        List<Map.Entry<String, AtomicLong>> entries = new ArrayList<>(calls.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()));
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue().get());
+        }
+        return sorted;
+    }
+
+    /**
+     * @return e.g. {@code calls=14, ms=230, getChildrenOfType(Sample)=9, queryDataRecords(Request)=1} with the top
+     * methods only
+     */
+    public String summary(int topMethods) {
+        StringBuilder summary = new StringBuilder("calls=" + getCalls() + ", ms=" + getTimeMs());
+        int listed = 0;
+        for (Map.Entry<String, Long> method : getCallsByMethod().entrySet()) {
+            if (listed++ == topMethods)
+                break;
+            summary.append(", ").append(method.getKey()).append('=').append(method.getValue());
+        }
+        return summary.toString();
+    }
+}
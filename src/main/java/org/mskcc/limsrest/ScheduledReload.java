@@ -0,0 +1,51 @@
+package org.mskcc.limsrest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads reference data on its own daemon thread, right away and then every refreshMs. A failed reload is logged and
+ * the previous data keeps being served, the next run tries again.
+ */
+public class ScheduledReload implements AutoCloseable {
+    private static Log log = LogFactory.getLog(ScheduledReload.class);
+
+    @FunctionalInterface
+    public interface Reload {
+        void run() throws Exception;
+    }
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param name      what is reloaded, e.g. "index barcodes", also names the thread
+     * @param refreshMs time between reloads, 0 to only load once
+     */
+    public ScheduledReload(String name, long refreshMs, Reload reload) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reload-" + name.replace(' ', '-'));
+            t.setDaemon(true);
+            return t;
+        });
+        Runnable run = () -> {
+            try {
+                reload.run();
+            } catch (Exception e) {
+                log.error("Failed to reload " + name + ": " + e.getMessage(), e);
+            }
+        };
+        if (refreshMs > 0)
+            scheduler.scheduleWithFixedDelay(run, 0, refreshMs, TimeUnit.MILLISECONDS);
+        else
+            scheduler.execute(run);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,19 @@
+package org.mskcc.limsrest;
+
+/**
+ * Scheduling class of queued LIMS work, most urgent first.
+ */
+public enum TaskPriority {
+    /**
+     * A user is waiting on the result, e.g. promote or setBankedSample calls from REX.
+     */
+    INTERACTIVE,
+    /**
+     * Bulk jobs such as iLabs updates and request status recalculation.
+     */
+    BATCH,
+    /**
+     * Housekeeping work that can wait the longest.
+     */
+    MAINTENANCE
+}
@@ -0,0 +1,23 @@
+package org.mskcc.limsrest;
+
+import org.mskcc.limsrest.util.StatusTrackerConfig;
+
+/**
+ * Loads the LIMS workflow to stage map in the background right after startup, so the first request tracking call
+ * does not pay for it, and reloads it periodically to pick up new or renamed workflows.
+ */
+public class WorkflowStageRefresher implements AutoCloseable {
+    private final ScheduledReload reload;
+
+    /**
+     * @param refreshMs time between reloads, 0 to only load once
+     */
+    public WorkflowStageRefresher(ConnectionLIMS conn, long refreshMs) {
+        this.reload = new ScheduledReload("workflow stages", refreshMs, () -> StatusTrackerConfig.refreshWorkflowMap(conn));
+    }
+
+    @Override
+    public void close() {
+        reload.close();
+    }
+}
@@ -3,6 +3,7 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.IndexBarcodeReference;
 import org.mskcc.limsrest.service.BarcodeSummary;
 import org.mskcc.limsrest.service.GetBarcodeInfo;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,15 +20,17 @@ import java.util.List;
 public class GetBarcodeList {
     private static Log log = LogFactory.getLog(GetBarcodeList.class);
     private final ConnectionLIMS conn;
+    private final IndexBarcodeReference indexBarcodes;
 
-    public GetBarcodeList(ConnectionLIMS conn) {
+    public GetBarcodeList(ConnectionLIMS conn, IndexBarcodeReference indexBarcodes) {
         this.conn = conn;
+        this.indexBarcodes = indexBarcodes;
     }
 
     @GetMapping("/getBarcodeList")
     public List<BarcodeSummary> getContent(@RequestParam(value = "user", required=false) String user, HttpServletRequest request) {
         log.info("/getBarcodeList for user:" + user + ", client IP:" + request.getRemoteAddr());
-        GetBarcodeInfo task = new GetBarcodeInfo(conn);
+        GetBarcodeInfo task = new GetBarcodeInfo(conn, indexBarcodes);
         return task.execute();
     }
 }
\ No newline at end of file
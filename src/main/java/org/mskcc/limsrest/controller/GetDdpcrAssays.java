@@ -4,6 +4,7 @@ import io.swagger.annotations.ApiOperation;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.PickListCache;
 import org.mskcc.limsrest.service.GetDdpcrAssaysTask;
 import org.mskcc.limsrest.util.DdpcrAssay;
 import org.springframework.http.HttpStatus;
@@ -25,9 +26,11 @@ import static org.mskcc.limsrest.util.Utils.getResponseEntity;
 public class GetDdpcrAssays {
     private static Log log = LogFactory.getLog(GetDdpcrAssays.class);
     private final ConnectionLIMS conn;
+    private final PickListCache pickLists;
 
-    public GetDdpcrAssays(ConnectionLIMS conn) {
+    public GetDdpcrAssays(ConnectionLIMS conn, PickListCache pickLists) {
         this.conn = conn;
+        this.pickLists = pickLists;
     }
 
     @GetMapping("/getDdpcrAssays")
@@ -36,7 +39,7 @@ public class GetDdpcrAssays {
         log.info("Starting get /getDdpcrAssays");
         Map<String, Object> resp = new HashMap<>();
 
-        GetDdpcrAssaysTask task = new GetDdpcrAssaysTask(conn);
+        GetDdpcrAssaysTask task = new GetDdpcrAssaysTask(conn, pickLists);
         List<DdpcrAssay> assays = task.execute();
 
         try {
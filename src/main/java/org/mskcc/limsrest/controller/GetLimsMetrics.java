@@ -0,0 +1,129 @@
+package org.mskcc.limsrest.controller;
+
+import org.mskcc.limsrest.AdaptiveLimiter;
+import org.mskcc.limsrest.Bulkhead;
+import org.mskcc.limsrest.BulkheadFilter;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.ExecutionLane;
+import org.mskcc.limsrest.IndexBarcodeReference;
+import org.mskcc.limsrest.PickListCache;
+import org.mskcc.limsrest.RequestCoalescer;
+import org.mskcc.limsrest.RmiCallStats;
+import org.mskcc.limsrest.TaskPriority;
+import org.mskcc.limsrest.util.StatusTrackerConfig;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Current LIMS connection pool, RMI limiter, task queue, endpoint bulkhead and request coalescing usage, the RMI
+ * calls made since startup, the loaded workflow stages, pick lists and index barcodes, for monitoring.
+ */
+@RestController
+@RequestMapping("/")
+public class GetLimsMetrics {
+    private final ConnectionLIMS conn;
+    private final ConnectionPoolLIMS queue;
+    private final BulkheadFilter bulkheadFilter;
+    private final RequestCoalescer coalescer;
+    private final PickListCache pickLists;
+    private final IndexBarcodeReference indexBarcodes;
+
+    public GetLimsMetrics(ConnectionLIMS conn, ConnectionPoolLIMS queue, BulkheadFilter bulkheadFilter,
+                          RequestCoalescer coalescer, PickListCache pickLists, IndexBarcodeReference indexBarcodes) {
+        this.conn = conn;
+        this.queue = queue;
+        this.bulkheadFilter = bulkheadFilter;
+        this.coalescer = coalescer;
+        this.pickLists = pickLists;
+        this.indexBarcodes = indexBarcodes;
+    }
+
+    @GetMapping("/getLimsMetrics")
+    public Map<String, Object> getContent() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+
+        Map<String, Object> pool = new LinkedHashMap<>();
+        pool.put("size", conn.getPoolSize());
+        pool.put("idle", conn.getIdleCount());
+        for (ExecutionLane lane : ExecutionLane.values()) {
+            pool.put(lane.name().toLowerCase() + "Budget", conn.getBudget(lane));
+        }
+        pool.put("inUseByCredential", conn.getInUseByCredential());
+        metrics.put("connectionPool", pool);
+
+        AdaptiveLimiter limiter = conn.getRmiLimiter();
+        if (limiter != null) {
+            Map<String, Object> rmi = new LinkedHashMap<>();
+            rmi.put("limit", limiter.getLimit());
+            rmi.put("inFlight", limiter.getInFlight());
+            rmi.put("latencyMs", limiter.getLatencyMs());
+            rmi.put("baselineLatencyMs", limiter.getBaselineLatencyMs());
+            rmi.put("calls", limiter.getCalls());
+            rmi.put("rejected", limiter.getRejected());
+            metrics.put("rmiLimiter", rmi);
+        }
+
+        RmiCallStats totals = RmiCallStats.totals();
+        Map<String, Object> rmiCalls = new LinkedHashMap<>();
+        rmiCalls.put("calls", totals.getCalls());
+        rmiCalls.put("timeMs", totals.getTimeMs());
+        rmiCalls.put("byMethod", totals.getCallsByMethod());
+        metrics.put("rmiCalls", rmiCalls);
+
+        Map<String, Object> queues = new LinkedHashMap<>();
+        for (ExecutionLane lane : ExecutionLane.values()) {
+            Map<String, Integer> depths = new LinkedHashMap<>();
+            for (TaskPriority priority : TaskPriority.values()) {
+                depths.put(priority.name(), queue.getQueueDepth(lane, priority));
+            }
+            queues.put(lane.name(), depths);
+        }
+        metrics.put("taskQueues", queues);
+
+        Map<String, Object> bulkheads = new LinkedHashMap<>();
+        for (Bulkhead bulkhead : bulkheadFilter.getBulkheads()) {
+            Map<String, Object> b = new LinkedHashMap<>();
+            b.put("limit", bulkhead.getLimit());
+            b.put("maxQueue", bulkhead.getMaxQueue());
+            b.put("active", bulkhead.getActive());
+            b.put("waiting", bulkhead.getWaiting());
+            b.put("rejected", bulkhead.getRejected());
+            bulkheads.put(bulkhead.getName(), b);
+        }
+        metrics.put("bulkheads", bulkheads);
+
+        Map<String, Object> coalescing = new LinkedHashMap<>();
+        coalescing.put("inFlight", coalescer.getInFlight());
+        coalescing.put("started", coalescer.getStarted());
+        coalescing.put("coalesced", coalescer.getCoalesced());
+        metrics.put("coalescing", coalescing);
+
+        StatusTrackerConfig.WorkflowStageMap stageMap = StatusTrackerConfig.getWorkflowStageMap();
+        Map<String, Object> workflowStages = new LinkedHashMap<>();
+        workflowStages.put("version", stageMap.getVersion());
+        workflowStages.put("loadedAt", stageMap.getLoadedAt());
+        workflowStages.put("workflows", stageMap.getStages().size());
+        metrics.put("workflowStages", workflowStages);
+
+        Map<String, Object> pickListCache = new LinkedHashMap<>();
+        pickListCache.put("cached", pickLists.getSize());
+        pickListCache.put("ttlMs", pickLists.getTtlMs());
+        pickListCache.put("hits", pickLists.getHits());
+        pickListCache.put("misses", pickLists.getMisses());
+        pickListCache.put("loadFailures", pickLists.getLoadFailures());
+        metrics.put("pickListCache", pickListCache);
+
+        IndexBarcodeReference.Barcodes barcodes = indexBarcodes.getLoaded();
+        Map<String, Object> barcodeReference = new LinkedHashMap<>();
+        barcodeReference.put("version", barcodes.getVersion());
+        barcodeReference.put("loadedAt", barcodes.getLoadedAt());
+        barcodeReference.put("barcodes", barcodes.getBarcodes().size());
+        metrics.put("indexBarcodes", barcodeReference);
+        return metrics;
+    }
+}
@@ -3,7 +3,7 @@ package org.mskcc.limsrest.controller;
 import java.util.List;
 import java.util.LinkedList;
 
-import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.PickListCache;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -18,10 +18,10 @@ import org.apache.commons.logging.LogFactory;
 @RequestMapping("/")
 public class GetPickListValues {
     private static Log log = LogFactory.getLog(GetPickListValues.class);
-    private final ConnectionLIMS conn;
+    private final PickListCache pickLists;
 
-    public GetPickListValues(ConnectionLIMS conn){
-        this.conn = conn;
+    public GetPickListValues(PickListCache pickLists){
+        this.pickLists = pickLists;
     }
 
     @GetMapping("/getPickListValues")
@@ -32,7 +32,7 @@ public class GetPickListValues {
             values.add("FAILURE: list is not using a valid format");
             return values;
         }
-        GetPickListTask task = new GetPickListTask(list, conn);
+        GetPickListTask task = new GetPickListTask(list, pickLists);
         log.info("Starting /getPickListValues query for " + list);
         List<String> result = task.execute();
         return result;
@@ -3,6 +3,9 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.DeadlineExceededException;
+import org.mskcc.limsrest.RequestCoalescer;
 import org.mskcc.limsrest.service.GetSampleQcTask;
 import org.mskcc.limsrest.service.RequestSummary;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,46 +13,58 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/")
 public class GetProjectQc {
     private static Log log = LogFactory.getLog(GetProjectQc.class);
     private final ConnectionLIMS conn;
+    private final ConnectionPoolLIMS queue;
+    private final RequestCoalescer coalescer;
 
-    public GetProjectQc(ConnectionLIMS conn){
+    public GetProjectQc(ConnectionLIMS conn, ConnectionPoolLIMS queue, RequestCoalescer coalescer){
         this.conn = conn;
+        this.queue = queue;
+        this.coalescer = coalescer;
     }
 
     @GetMapping("/getProjectQc")  // Called by Run-QC application
-    public List<RequestSummary> getProjectSummary(@RequestParam(value="project", required = true) String[] project) {
+    public CompletableFuture<List<RequestSummary>> getProjectSummary(@RequestParam(value="project", required = true) String[] project,
+                                                                  HttpServletRequest request) {
         log.info("Starting /getProjectQc for projects: " + Arrays.toString(project));
 
         if (project == null)
-            return new LinkedList<>();
+            return CompletableFuture.completedFuture(new LinkedList<>());
 
         for (int i = 0; i < project.length; i++) {
             if (!Whitelists.requestMatches(project[i])) {
                 log.info("FAILURE: project is not using a valid format");
-                return new LinkedList<>();
+                return CompletableFuture.completedFuture(new LinkedList<>());
             }
         }
-        long start = System.currentTimeMillis();
-        GetSampleQcTask task = new GetSampleQcTask(project, conn);
-
-        List<RequestSummary> rss = new LinkedList<>();
-        try {
-            rss = task.execute();
-            long end = System.currentTimeMillis();
-            log.info("Elapsed time to run get project Qc is (ms): " + (end - start));
-        } catch (Exception e) {
-            RequestSummary rs = new RequestSummary();
-            rs.setInvestigator(e.getMessage());
-            rss.add(rs);
-        }
-        return rss;
+        String key = RequestCoalescer.key("/getProjectQc", request.getParameterMap());
+        return coalescer.coalesce(key, () -> queue.supplyAsync(() -> {
+            long start = System.currentTimeMillis();
+            GetSampleQcTask task = new GetSampleQcTask(project, conn);
+
+            List<RequestSummary> rss = new LinkedList<>();
+            try {
+                rss = task.execute();
+                long end = System.currentTimeMillis();
+                log.info("Elapsed time to run get project Qc is (ms): " + (end - start));
+            } catch (DeadlineExceededException e) {
+                throw e;
+            } catch (Exception e) {
+                RequestSummary rs = new RequestSummary();
+                rs.setInvestigator(e.getMessage());
+                rss.add(rs);
+            }
+            return rss;
+        }));
     }
 }
\ No newline at end of file
@@ -5,6 +5,8 @@ import com.velox.api.datarecord.NotFound;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.RequestCoalescer;
 import org.mskcc.limsrest.service.GetRequestTrackingTask;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +19,7 @@ import org.springframework.web.server.ResponseStatusException;
 import javax.servlet.http.HttpServletRequest;
 import java.rmi.RemoteException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.mskcc.limsrest.util.Utils.getResponseEntity;
 
@@ -26,14 +29,19 @@ public class GetRequestTracking {
     private final static Log log = LogFactory.getLog(GetRequestTracking.class);
 
     private final ConnectionLIMS conn;
+    private final ConnectionPoolLIMS queue;
+    private final RequestCoalescer coalescer;
 
-    public GetRequestTracking(ConnectionLIMS conn) {
+    public GetRequestTracking(ConnectionLIMS conn, ConnectionPoolLIMS queue, RequestCoalescer coalescer) {
         this.conn = conn;
+        this.queue = queue;
+        this.coalescer = coalescer;
     }
 
     @GetMapping("/getRequestTracking")
-    public ResponseEntity<Map<String, Object>> getContent(@RequestParam(value = "request") String requestId,
-                                                          HttpServletRequest request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getContent(@RequestParam(value = "request") String requestId,
+                                                                             @RequestParam(value = "partial", defaultValue = "false") boolean partial,
+                                                                             HttpServletRequest request) {
         log.info("/getRequestTracking for request:" + requestId + " " + request.getRemoteAddr());
 
         if (!Whitelists.requestMatches(requestId)) {
@@ -41,13 +49,16 @@ public class GetRequestTracking {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "FAILURE: requestId is not using a valid format.");
         }
 
-        try {
-            GetRequestTrackingTask t = new GetRequestTrackingTask(requestId, conn);
-            Map<String, Object> requestTracker = t.execute();
-            return getResponseEntity(requestTracker, HttpStatus.OK);
-        } catch (IoError | RemoteException | NotFound e) {
-            log.error(e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
-        }
+        String key = RequestCoalescer.key("/getRequestTracking", request.getParameterMap());
+        return coalescer.coalesce(key, () -> queue.supplyAsync(() -> {
+            try {
+                GetRequestTrackingTask t = new GetRequestTrackingTask(requestId, conn, partial);
+                Map<String, Object> requestTracker = t.execute();
+                return getResponseEntity(requestTracker, HttpStatus.OK);
+            } catch (IoError | RemoteException | NotFound e) {
+                log.error(e);
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+            }
+        }, partial));
     }
 }
@@ -2,14 +2,18 @@ package org.mskcc.limsrest.controller;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.servlet.http.HttpServletRequest;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.RequestCoalescer;
 import org.mskcc.limsrest.model.SampleManifest;
 import org.mskcc.limsrest.service.GetSampleManifestTask;
 import org.mskcc.limsrest.util.IGOTools;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -20,14 +24,26 @@ import org.springframework.web.server.ResponseStatusException;
 @RequestMapping("/")
 public class GetSampleManifest {
     private static Log log = LogFactory.getLog(GetSampleManifest.class);
+    // set on partial=true responses, the body then only has the manifests that were generated before the deadline
+    public static final String INCOMPLETE_HEADER = "X-Incomplete";
+    public static final String UNPROCESSED_HEADER = "X-Unprocessed-Samples";
+    // set on skipFailed=true responses when the manifest of some samples failed, they are left out of the body
+    public static final String FAILED_HEADER = "X-Failed-Samples";
     private final ConnectionLIMS conn;
+    private final ConnectionPoolLIMS queue;
+    private final RequestCoalescer coalescer;
 
-    public GetSampleManifest(ConnectionLIMS conn) {
+    public GetSampleManifest(ConnectionLIMS conn, ConnectionPoolLIMS queue, RequestCoalescer coalescer) {
         this.conn = conn;
+        this.queue = queue;
+        this.coalescer = coalescer;
     }
 
     @GetMapping("/api/getSampleManifest")
-    public List<SampleManifest> getContent(@RequestParam(value="igoSampleId") String[] igoIds, HttpServletRequest request) {
+    public CompletableFuture<ResponseEntity<List<SampleManifest>>> getContent(@RequestParam(value="igoSampleId") String[] igoIds,
+                                                                            @RequestParam(value="partial", defaultValue="false") boolean partial,
+                                                                            @RequestParam(value="skipFailed", defaultValue="false") boolean skipFailed,
+                                                                            HttpServletRequest request) {
         log.info("/api/getSampleManifest:" + Arrays.toString(igoIds) + " IP:" + request.getRemoteAddr());
 
         if (igoIds.length > 10) {
@@ -38,17 +54,33 @@ public class GetSampleManifest {
                 throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid IGO Sample ID: " + igoId);
         }
 
-        GetSampleManifestTask sampleManifest = new GetSampleManifestTask(igoIds, conn);
-        GetSampleManifestTask.SampleManifestResult result = sampleManifest.execute();
-        if (result == null) {
-            log.error("Sample Manifest generation failed for: " + Arrays.toString(igoIds));
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
-        } else if (result.error == null) {
-            log.info("Returning n rows: " + result.smList.size());
-            return result.smList;
-        } else {
-            log.error("Sample Manifest generation failed with error: " + result.error);
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, result.error);
-        }
+        String key = RequestCoalescer.key("/api/getSampleManifest", request.getParameterMap());
+        return coalescer.coalesce(key, () -> queue.supplyAsync(() -> {
+            GetSampleManifestTask sampleManifest = new GetSampleManifestTask(igoIds, conn, partial, true);
+            GetSampleManifestTask.SampleManifestResult result = sampleManifest.execute();
+            if (result == null) {
+                log.error("Sample Manifest generation failed for: " + Arrays.toString(igoIds));
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+            } else if (result.error == null) {
+                log.info("Returning n rows: " + result.smList.size());
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (partial) {
+                    response.header(INCOMPLETE_HEADER, String.valueOf(!result.unprocessedIgoIds.isEmpty()));
+                    response.header(UNPROCESSED_HEADER, String.join(",", result.unprocessedIgoIds));
+                }
+                if (!result.failedIgoIds.isEmpty()) {
+                    log.error("Sample Manifest generation failed for: " + result.failedIgoIds);
+                    // a manifest missing samples is only returned to clients that asked for it
+                    if (!skipFailed)
+                        throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                                "Sample Manifest generation failed for: " + String.join(",", result.failedIgoIds.keySet()));
+                    response.header(FAILED_HEADER, String.join(",", result.failedIgoIds.keySet()));
+                }
+                return response.body(result.smList);
+            } else {
+                log.error("Sample Manifest generation failed with error: " + result.error);
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, result.error);
+            }
+        }, partial));
     }
 }
\ No newline at end of file
@@ -3,6 +3,8 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.DeadlineExceededException;
+import org.mskcc.limsrest.PickListCache;
 import org.mskcc.limsrest.service.GetWESSampleDataTask;
 import org.mskcc.limsrest.service.sampletracker.WESSampleData;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,17 +18,22 @@ import java.util.List;
 public class GetWESSampleData {
     private Log log = LogFactory.getLog(GetWESSampleData.class);
     private ConnectionLIMS conn;
+    private PickListCache pickLists;
 
-    public GetWESSampleData(ConnectionLIMS conn) {
+    public GetWESSampleData(ConnectionLIMS conn, PickListCache pickLists) {
         this.conn = conn;
+        this.pickLists = pickLists;
     }
 
     @RequestMapping("/getWESSampleData")
     public List<WESSampleData> getContent(@RequestParam(value="timestamp") String timestamp) {
         log.info("Starting /getWESSampleData using timestamp " + timestamp);
-        GetWESSampleDataTask task = new GetWESSampleDataTask(timestamp, conn);
+        GetWESSampleDataTask task = new GetWESSampleDataTask(timestamp, conn, pickLists);
         try {
             return task.execute();
+        } catch (DeadlineExceededException e) {
+            log.error(e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return null;
@@ -177,11 +177,16 @@ public class IgoNewRequestMetaDbPublisher {
 
         // fetch list of sample manifests for request sample (igo)ids
         List<SampleManifest> sampleManifestList = null;
-        GetSampleManifestTask sampleManifest = new GetSampleManifestTask(igoIds, conn);
+        GetSampleManifestTask sampleManifest = new GetSampleManifestTask(igoIds, conn, false, true);
         GetSampleManifestTask.SampleManifestResult result = sampleManifest.execute();
         if (result == null) {
             log.error("Sample Manifest generation failed for: " + StringUtils.join(igoIds, ", "));
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+        } else if (!result.failedIgoIds.isEmpty()) {
+            // never publish a request with samples missing
+            log.error("Sample Manifest generation failed for: " + result.failedIgoIds);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Sample Manifest generation failed for: " + String.join(", ", result.failedIgoIds.keySet()));
         } else if (result.error == null) {
             log.info("Returning n rows: " + result.smList.size());
             sampleManifestList = result.smList;
@@ -0,0 +1,47 @@
+package org.mskcc.limsrest.controller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.PickListCache;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drops cached pick list values after a pick list was edited in the LIMS, the next request reads it again.
+ */
+@RestController
+@RequestMapping("/")
+public class InvalidatePickListCache {
+    private static Log log = LogFactory.getLog(InvalidatePickListCache.class);
+    private final PickListCache pickLists;
+
+    public InvalidatePickListCache(PickListCache pickLists) {
+        this.pickLists = pickLists;
+    }
+
+    /**
+     * @param list pick list to drop, all of them if not given
+     */
+    @PostMapping("/invalidatePickListCache")
+    public Map<String, Object> getContent(@RequestParam(value = "list", required = false) String list,
+                                          HttpServletRequest request) {
+        log.info("Starting /invalidatePickListCache?list=" + list + " client IP:" + request.getRemoteAddr());
+        if (list == null || list.trim().isEmpty())
+            pickLists.invalidateAll();
+        else
+            pickLists.invalidate(list.trim());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cached", pickLists.getSize());
+        stats.put("hits", pickLists.getHits());
+        stats.put("misses", pickLists.getMisses());
+        stats.put("loadFailures", pickLists.getLoadFailures());
+        return stats;
+    }
+}
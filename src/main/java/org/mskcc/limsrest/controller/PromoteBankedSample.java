@@ -4,6 +4,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.DeadlineExceededException;
+import org.mskcc.limsrest.IndexBarcodeReference;
 import org.mskcc.limsrest.service.LimsException;
 import org.mskcc.limsrest.service.PromoteBanked;
 import org.mskcc.limsrest.util.Constants;
@@ -23,9 +26,11 @@ import java.util.concurrent.Future;
 public class PromoteBankedSample {
     private final static Log log = LogFactory.getLog(PromoteBankedSample.class);
     private final ConnectionPoolLIMS conn;
+    private final IndexBarcodeReference indexBarcodes;
 
-    public PromoteBankedSample(ConnectionPoolLIMS conn) {
+    public PromoteBankedSample(ConnectionPoolLIMS conn, IndexBarcodeReference indexBarcodes) {
         this.conn = conn;
+        this.indexBarcodes = indexBarcodes;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -64,10 +69,11 @@ public class PromoteBankedSample {
 
         PromoteBanked task = new PromoteBanked();
         task.init(bankedId, project, request, service, igoUser, materials, dryrun);
+        task.setIndexBarcodes(indexBarcodes);
         log.info("Starting promote");
         Future<Object> result = conn.submitTask(task);
         try {
-            ResponseEntity<String> returnCode = (ResponseEntity<String>) result.get();
+            ResponseEntity<String> returnCode = (ResponseEntity<String>) Deadline.await(result);
 
             if (returnCode.getHeaders().containsKey(Constants.ERRORS)) {
                 String errors = StringUtils.join(returnCode.getHeaders().get(Constants.ERRORS), ",");
@@ -75,6 +81,9 @@ public class PromoteBankedSample {
                 throw new LimsException(errors);
             }
             return returnCode;
+        } catch (DeadlineExceededException e) {
+            log.error("Promote timed out: " + e.getMessage());
+            throw e;
         } catch (Exception e) {
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
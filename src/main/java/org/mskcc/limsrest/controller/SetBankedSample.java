@@ -3,6 +3,8 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.DeadlineExceededException;
 import org.mskcc.limsrest.service.LimsException;
 import org.mskcc.limsrest.service.SetOrCreateBanked;
 import org.mskcc.limsrest.util.Messages;
@@ -150,11 +152,14 @@ public class SetBankedSample {
         String returnCode;
 
         try {
-            returnCode = (String) result.get();
+            returnCode = (String) Deadline.await(result);
             if (returnCode.startsWith(Messages.ERROR_IN)) {
                 throw new LimsException(returnCode);
             }
             returnCode = "Record Id:" + returnCode;
+        } catch (DeadlineExceededException e) {
+            log.error(e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error(e);
             returnCode = e.getMessage();
@@ -3,10 +3,16 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.ExecutionLane;
+import org.mskcc.limsrest.TaskPriority;
 import org.mskcc.limsrest.service.SetRequestStatus;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 
@@ -15,15 +21,26 @@ import java.util.List;
 public class SetStatuses {
     private final static Log log = LogFactory.getLog(SetStatuses.class);
     private final ConnectionLIMS conn;
+    private final ConnectionPoolLIMS queue;
 
-    public SetStatuses(ConnectionLIMS conn) {
+    public SetStatuses(ConnectionLIMS conn, ConnectionPoolLIMS queue) {
         this.conn = conn;
+        this.queue = queue;
     }
 
     @GetMapping("/setRequestStatuses")
     public List<String> getContent() {
         log.info("Starting /setRequestStatuses");
-        SetRequestStatus task = new SetRequestStatus();
-        return task.execute();
+        SetRequestStatus task = new SetRequestStatus(conn);
+        try {
+            // bulk recalculation, on its own lane so interactive writes never wait for it
+            // bulk write that commits once started, exempt from the request deadline so the client never gets a
+            // timeout for a write that still completes, or retries it while the first one runs
+            Deadline.set(null);
+            return queue.submit(task::execute, ExecutionLane.BATCH, TaskPriority.BATCH).get();
+        } catch (Exception e) {
+            log.error(e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
     }
 }
\ No newline at end of file
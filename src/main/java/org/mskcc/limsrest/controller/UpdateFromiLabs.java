@@ -3,6 +3,10 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.ExecutionLane;
+import org.mskcc.limsrest.TaskPriority;
 import org.mskcc.limsrest.service.UpdateFromILabsTask;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -19,6 +23,7 @@ public class UpdateFromiLabs {
     private final static Log log = LogFactory.getLog(UpdateFromiLabs.class);
 
     private final ConnectionLIMS conn;
+    private final ConnectionPoolLIMS queue;
 
     @Value("${token_igo}")
     private String tokenIGO;
@@ -26,8 +31,9 @@ public class UpdateFromiLabs {
     @Value("${token_cmo}")
     private String tokenCMO;
 
-    public UpdateFromiLabs(ConnectionLIMS conn) {
+    public UpdateFromiLabs(ConnectionLIMS conn, ConnectionPoolLIMS queue) {
         this.conn = conn;
+        this.queue = queue;
     }
 
     @GetMapping("/UpdateLIMSfromILabs")
@@ -36,7 +42,10 @@ public class UpdateFromiLabs {
 
         try {
             UpdateFromILabsTask t = new UpdateFromILabsTask(conn, tokenIGO, tokenCMO);
-            String result = (String) t.execute();
+            // bulk write that commits once started, exempt from the request deadline so the client never gets a
+            // timeout for a write that still completes, or retries it while the first one runs
+            Deadline.set(null);
+            String result = (String) queue.submit(t::execute, ExecutionLane.BATCH, TaskPriority.BATCH).get();
             log.info("UpdateLIMSfromILabs result: " + result);
             return result;
         } catch (Exception e) {
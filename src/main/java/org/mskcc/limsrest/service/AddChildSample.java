@@ -5,6 +5,7 @@ import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.user.User;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.io.PrintWriter;
@@ -38,7 +39,7 @@ public class AddChildSample {
 
     @PreAuthorize("hasRole('ADMIN')")
     public String execute() {
-        VeloxConnection vConn = conn.getConnection();
+        VeloxConnection vConn = conn.getConnection(ExecutionLane.WRITE);
         User user = vConn.getUser();
         DataRecordManager drm = vConn.getDataRecordManager();
 
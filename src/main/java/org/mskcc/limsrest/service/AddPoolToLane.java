@@ -6,6 +6,7 @@ import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.user.User;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.io.PrintWriter;
@@ -40,7 +41,7 @@ public class AddPoolToLane {
 
 @PreAuthorize("hasRole('ADMIN')")
  public String execute(){
-    VeloxConnection vConn = conn.getConnection();
+    VeloxConnection vConn = conn.getConnection(ExecutionLane.WRITE);
     User user = vConn.getUser();
     DataRecordManager dataRecordManager = vConn.getDataRecordManager();
   try { 
@@ -10,6 +10,7 @@ import com.velox.sapioutils.shared.managers.DataRecordUtilManager;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.security.access.prepost.PreAuthorize;
 
@@ -39,7 +40,7 @@ public class DeleteBankedTask {
 
     @PreAuthorize("hasRole('ADMIN')")
     public String execute() throws ServerException, RemoteException {
-        VeloxConnection vConn = conn.getConnection();
+        VeloxConnection vConn = conn.getConnection(ExecutionLane.WRITE);
         User user = vConn.getUser();
         DataRecordManager drm = vConn.getDataRecordManager();
         VeloxStandaloneManagerContext managerContext = new VeloxStandaloneManagerContext(user, vConn.getDataMgmtServer());
@@ -1,28 +1,30 @@
 package org.mskcc.limsrest.service;
 
-import com.velox.api.datarecord.DataRecord;
 import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.user.User;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.IndexBarcodeReference;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.util.LinkedList;
 import java.util.List;
 
 /**
- * Returns the list of all LIMS barcodes.
+ * Returns the list of all LIMS barcodes, from the shared index barcode reference.
  * 
  * @author Aaron Gabow
  */
 public class GetBarcodeInfo {
     private static Log log = LogFactory.getLog(GetBarcodeInfo.class);
     private ConnectionLIMS conn;
+    private IndexBarcodeReference indexBarcodes;
 
-    public GetBarcodeInfo(ConnectionLIMS conn) {
+    public GetBarcodeInfo(ConnectionLIMS conn, IndexBarcodeReference indexBarcodes) {
         this.conn = conn;
+        this.indexBarcodes = indexBarcodes;
     }
 
     @PreAuthorize("hasRole('READ')")
@@ -33,12 +35,8 @@ public class GetBarcodeInfo {
 
         try {
             List<BarcodeSummary> barcodes = new LinkedList<>();
-            List<DataRecord> indexList = dataRecordManager.queryDataRecords("IndexAssignment", "IndexType != 'IDT_TRIM' ORDER BY IndexType, IndexId", user);
-            for (DataRecord i : indexList) {
-                try {
-                    barcodes.add(new BarcodeSummary(i.getStringVal("IndexType", user), i.getStringVal("IndexId", user), i.getStringVal("IndexTag", user)));
-                } catch (NullPointerException npe) {
-                }
+            for (IndexBarcodeReference.IndexBarcode i : indexBarcodes.get(dataRecordManager, user).getBarcodes()) {
+                barcodes.add(new BarcodeSummary(i.getIndexType(), i.getIndexId(), i.getIndexTag()));
             }
             return barcodes;
         } catch (Throwable e) {
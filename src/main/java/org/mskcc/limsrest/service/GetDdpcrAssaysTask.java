@@ -10,6 +10,7 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.PickListCache;
 import org.mskcc.limsrest.util.DdpcrAssay;
 import org.springframework.security.access.prepost.PreAuthorize;
 
@@ -23,9 +24,11 @@ public class GetDdpcrAssaysTask {
     private static final String assayDataType = "ddPCRAssayDatabase";
 
     private ConnectionLIMS conn;
+    private PickListCache pickLists;
 
-    public GetDdpcrAssaysTask(ConnectionLIMS conn) {
+    public GetDdpcrAssaysTask(ConnectionLIMS conn, PickListCache pickLists) {
         this.conn = conn;
+        this.pickLists = pickLists;
     }
 
     @PreAuthorize("hasRole('READ')")
@@ -67,6 +70,7 @@ public class GetDdpcrAssaysTask {
             PickListConfig pickConfig = picklister.getPickListConfig("ddPCR Assay");
             pickConfig.setEntryList(assayNames);
             picklister.storePickListConfig(user, pickConfig);
+            pickLists.invalidate("ddPCR Assay");
 
         } catch (Exception e) {
             e.printStackTrace();
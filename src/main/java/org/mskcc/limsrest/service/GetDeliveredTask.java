@@ -5,13 +5,18 @@ import com.velox.api.datarecord.AuditLogEntry;
 import com.velox.api.datarecord.DataRecord;
 import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.user.User;
+import com.velox.api.util.ServerException;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.RequestModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.RmiCallStats;
+import org.mskcc.limsrest.util.RecordSnapshot;
 import org.springframework.security.access.prepost.PreAuthorize;
 
+import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -117,18 +122,18 @@ public class GetDeliveredTask {
             List<List<DataRecord>> childPlates = dataRecordManager.getChildrenOfType(recentDeliveries, "Plate", user);
             for (int i = 0; i < recentDeliveries.size(); i++) {
                 DataRecord request = recentDeliveries.get(i);
-                Map<String, Object> requestFields = request.getFields(user);
-                String requestId = (String) requestFields.get("RequestId");
+                RecordSnapshot requestFields = RecordSnapshot.of(request, user);
+                String requestId = requestFields.getString("RequestId");
                 RequestSummary rs = new RequestSummary(requestId);
 
-                rs.setInvestigator(getRecordStringValue(request, RequestModel.INVESTIGATOR, user));
-                rs.setPi(getRecordStringValue(request, RequestModel.LABORATORY_HEAD, user));
-                rs.setAnalysisRequested(getRecordBooleanValue(request, RequestModel.BICANALYSIS, user));
-                rs.setAnalysisType(getRecordStringValue(request, "AnalysisType", user));
-                rs.setRequestType(getRecordStringValue(request, RequestModel.REQUEST_NAME, user));
-                rs.setProjectManager(getRecordStringValue(request, RequestModel.PROJECT_MANAGER, user));
-                rs.setSampleNumber(getRecordShortValue(request, RequestModel.SAMPLE_NUMBER, user));
-                rs.setReceivedDate(getRecordLongValue(request, RequestModel.RECEIVED_DATE, user));
+                rs.setInvestigator(getRecordStringValue(requestFields, RequestModel.INVESTIGATOR));
+                rs.setPi(getRecordStringValue(requestFields, RequestModel.LABORATORY_HEAD));
+                rs.setAnalysisRequested(getRecordBooleanValue(requestFields, RequestModel.BICANALYSIS));
+                rs.setAnalysisType(getRecordStringValue(requestFields, "AnalysisType"));
+                rs.setRequestType(getRecordStringValue(requestFields, RequestModel.REQUEST_NAME));
+                rs.setProjectManager(getRecordStringValue(requestFields, RequestModel.PROJECT_MANAGER));
+                rs.setSampleNumber(getRecordShortValue(requestFields, RequestModel.SAMPLE_NUMBER));
+                rs.setReceivedDate(getRecordLongValue(requestFields, RequestModel.RECEIVED_DATE));
 
                 List<DataRecord> childrenOfRequest = childSamples.get(i);
                 List<DataRecord> childrenPlatesOfRequest = childPlates.get(i);
@@ -144,8 +149,17 @@ public class GetDeliveredTask {
                     }
                 }
 
+                RmiCallStats.addItems(childrenOfRequest.size());
                 List<List<DataRecord>> sampleQcs = dataRecordManager.getDescendantsOfType(childrenOfRequest, "SeqAnalysisSampleQC", user);
                 List<List<Map<String, Object>>> allCorrectedFields = dataRecordManager.getFieldsForChildrenOfType(childrenOfRequest, "SampleCMOInfoRecords", user);
+                // fields of all samples and of all their QC records in one call each, QC fields in sampleQcs order
+                List<Map<String, Object>> allSampleFields = getFields(dataRecordManager, childrenOfRequest, user);
+                List<DataRecord> allQcs = new ArrayList<>();
+                for (List<DataRecord> qcs : sampleQcs) {
+                    allQcs.addAll(qcs);
+                }
+                List<Map<String, Object>> allQcFields = getFields(dataRecordManager, allQcs, user);
+                int qcIndex = 0;
                 List<AuditLogEntry> reqHistory = auditlog.getAuditLogHistory(request, false, user);
                 for (AuditLogEntry logline : reqHistory) {
                     if (logline.dataFieldName.equals("RecentDeliveryDate")) {
@@ -154,8 +168,7 @@ public class GetDeliveredTask {
                 }
 
                 for (int j = 0; j < childrenOfRequest.size(); j++) {
-                    DataRecord sample = childrenOfRequest.get(j);
-                    Map<String, Object> sampleFields = sample.getFields(user);
+                    Map<String, Object> sampleFields = allSampleFields.get(j);
                     Map<String, Object> correctedFields = null;
                     if (allCorrectedFields != null && allCorrectedFields.size() > 0 && allCorrectedFields.get(j).size() > 0) {
                         correctedFields = allCorrectedFields.get(j).get(0);
@@ -193,7 +206,7 @@ public class GetDeliveredTask {
                     for (int k = 0; k < sampleQcsForSample.size(); k++) {
                         DataRecord qc = sampleQcsForSample.get(k);
 
-                        Map<String, Object> qcFields = qc.getFields(user);
+                        Map<String, Object> qcFields = allQcFields.get(qcIndex++);
                         String qcRequestId = "";
                         try {
                             qcRequestId = (String) qcFields.get("Request");
@@ -247,4 +260,11 @@ public class GetDeliveredTask {
         log.info("GetDelivered completed.");
         return delivered;
     }
+
+    private static List<Map<String, Object>> getFields(DataRecordManager dataRecordManager, List<DataRecord> records,
+                                                       User user) throws ServerException, RemoteException {
+        if (records.isEmpty())
+            return new ArrayList<>();
+        return dataRecordManager.getFieldsForRecords(records, user);
+    }
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.util.RecordMemo;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.io.PrintWriter;
@@ -51,7 +52,8 @@ public class GetHiseq {
 // 151028_MOMO_0100_BC7MG0ANXX 6255 shLUC-DMSO_1 TS2 1,2 S Armstrong Chun-Wei Chen 10.28.2015 RNASeq 51/7/51 Mouse 40-50M Done 
         List<RunSummary> runResults = new LinkedList<>();
 
-        try {
+        // lanes of a run share their pools, libraries and requests, so the same lineage is climbed for every lane
+        try (RecordMemo memo = RecordMemo.open(user)) {
             if (run == null && projects == null) {
                 throw new Exception("Unable to get hiseq run information with no hisq run or projects specified");
             }
@@ -66,10 +68,10 @@ public class GetHiseq {
                         List<DataRecord> reqLanes = req.getDescendantsOfType("FlowCellLane", user);
                         for (DataRecord lane : reqLanes) {
                             log.info("Getting a flow cell lane");
-                            List<DataRecord> flowcell = lane.getParentsOfType("FlowCell", user);
+                            List<DataRecord> flowcell = memo.getParentsOfType(lane, "FlowCell");
                             if (flowcell.size() > 0) {
                                 log.info("Getting a flow cell");
-                                List<DataRecord> possibleRun = flowcell.get(0).getParentsOfType("IlluminaSeqExperiment", user);
+                                List<DataRecord> possibleRun = memo.getParentsOfType(flowcell.get(0), "IlluminaSeqExperiment");
                                 if (possibleRun.size() > 0) {
                                     log.info("Getting a run");
                                     if (!runList.contains(possibleRun.get(0))) {
@@ -118,7 +120,7 @@ public class GetHiseq {
 
                         //dfs of all samples to in lane to find sample name, barcode, number of requested reads, and request info
                         LinkedList<DataRecord> fringe = new LinkedList<>();
-                        for (DataRecord sample : lanes[i].getParentsOfType("Sample", user)) {
+                        for (DataRecord sample : memo.getParentsOfType(lanes[i], "Sample")) {
                             fringe.push(sample);
                         }
                         DataRecord current = null;
@@ -138,23 +140,23 @@ public class GetHiseq {
                         double numberRequestedReads = 0.0;
                         while (fringe.size() > 0) {
                             current = fringe.pop();
-                            Map<String, Object> currentFields = current.getFields(user);
-                            DataRecord[] barcode = current.getChildrenOfType("IndexBarcode", user);
+                            Map<String, Object> currentFields = memo.getFields(current);
+                            DataRecord[] barcode = memo.getChildrenOfType(current, "IndexBarcode");
                             if (barcode.length > 0) {
                                 try {
                                     sampleId = currentFields.get("OtherSampleId") + "_IGO_" + currentFields.get("SampleId");
                                     species = (String) currentFields.get("Species");
-                                    barcodeId = barcode[0].getStringVal("IndexId", user);
-                                    barcodeSeq = barcode[0].getStringVal("IndexTag", user);
+                                    barcodeId = (String) memo.getValue(barcode[0], "IndexId");
+                                    barcodeSeq = (String) memo.getValue(barcode[0], "IndexTag");
                                 } catch (NullPointerException npe) {
                                 }
                             }
                             if (requestId.equals("")) {
                                 recipe = (String) currentFields.get("Recipe");
-                                List<DataRecord> requestParents = current.getParentsOfType("Request", user);
+                                List<DataRecord> requestParents = memo.getParentsOfType(current, "Request");
                                 if (requestParents.size() > 0) {
                                     try {
-                                        Map<String, Object> requestFields = requestParents.get(0).getFields(user);
+                                        Map<String, Object> requestFields = memo.getFields(requestParents.get(0));
                                         requestId = (String) requestFields.get("RequestId");
                                         labHead = (String) requestFields.get("LaboratoryHead");
                                         investigator = (String) requestFields.get("Investigator");
@@ -185,24 +187,21 @@ public class GetHiseq {
                                     }
                                 }
                             }
-                            DataRecord[] seqRequirement = current.getChildrenOfType("SeqRequirement", user);
+                            DataRecord[] seqRequirement = memo.getChildrenOfType(current, "SeqRequirement");
                             if (seqRequirement.length > 0) {
-                                try {
-                                    numberRequestedReads = seqRequirement[0].getDoubleVal("RequestedReads", user);
-                                } catch (NullPointerException npe) {
-                                } catch (ClassCastException e) {
-                                    numberRequestedReads = (double) seqRequirement[0].getIntegerVal("RequestedReads", user);
-
+                                Object requestedReads = memo.getValue(seqRequirement[0], "RequestedReads");
+                                if (requestedReads instanceof Number) {
+                                    numberRequestedReads = ((Number) requestedReads).doubleValue();
                                 }
                             }
-                            List<DataRecord> parentSamples = current.getParentsOfType("Sample", user);
+                            List<DataRecord> parentSamples = memo.getParentsOfType(current, "Sample");
                             if (requestId.equals("")) {
-                                List<DataRecord> parentPlates = current.getParentsOfType("Plate", user);
+                                List<DataRecord> parentPlates = memo.getParentsOfType(current, "Plate");
                                 if (parentPlates.size() > 0) {
-                                    List<DataRecord> requestParents = parentPlates.get(0).getParentsOfType("Request", user);
+                                    List<DataRecord> requestParents = memo.getParentsOfType(parentPlates.get(0), "Request");
                                     if (requestParents.size() > 0) {
                                         try {
-                                            Map<String, Object> requestFields = requestParents.get(0).getFields(user);
+                                            Map<String, Object> requestFields = memo.getFields(requestParents.get(0));
                                             requestId = (String) requestFields.get("RequestId");
                                             labHead = (String) requestFields.get("LaboratoryHead");
                                             investigator = (String) requestFields.get("Investigator");
@@ -4,10 +4,12 @@ import com.velox.api.datarecord.DataRecord;
 import com.velox.api.datarecord.IoError;
 import com.velox.api.datarecord.NotFound;
 import com.velox.api.user.User;
+import com.velox.api.util.ServerException;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.RequestModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.util.RecordSnapshot;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.rmi.RemoteException;
@@ -69,10 +71,12 @@ public class GetIgoRequestsTask extends LimsTask {
     public List<RequestSummary> execute(VeloxConnection conn) {
         User user = conn.getUser();
         String query = getQuery();
-        List<DataRecord> records = new ArrayList<>();
+        List<RecordSnapshot> records;
         try {
-            records = conn.getDataRecordManager().queryDataRecords(RequestModel.DATA_TYPE_NAME, query, user);
-        } catch (IoError | RemoteException | NotFound e) {
+            List<DataRecord> found = conn.getDataRecordManager().queryDataRecords(RequestModel.DATA_TYPE_NAME, query, user);
+            // all fields of all requests in one round trip instead of one per field
+            records = RecordSnapshot.of(found, conn.getDataRecordManager(), user);
+        } catch (IoError | RemoteException | NotFound | ServerException e) {
             log.error(String.format("Failed to query DataRecords w/ query: %s", query));
             return new ArrayList<>();
         }
@@ -80,23 +84,22 @@ public class GetIgoRequestsTask extends LimsTask {
         // Transform requests into a redacted API response
         List<RequestSummary> requests = new ArrayList<>();
 
-        for (DataRecord request : records) {
-            String requestId = getRecordStringValue(request, RequestModel.REQUEST_ID, user);
+        for (RecordSnapshot request : records) {
+            String requestId = getRecordStringValue(request, RequestModel.REQUEST_ID);
             RequestSummary rs = new RequestSummary(requestId);
-            rs.setIsCmoRequest(getRecordBooleanValue(request, "IsCmoRequest", user));
-            rs.setInvestigator(getRecordStringValue(request, RequestModel.INVESTIGATOR, user));
-            rs.setPi(getRecordStringValue(request, RequestModel.LABORATORY_HEAD, user));
-            rs.setPiEmail(getRecordStringValue(request, "PIemail", user));
-            System.out.println("PIemail is: " + getRecordStringValue(request, "PIemail", user));
-            rs.setInvestigatorEmail(getRecordStringValue(request, "Investigatoremail", user));
-            rs.setRequestType(getRecordStringValue(request, RequestModel.REQUEST_NAME, user));
-            rs.setReceivedDate(getRecordLongValue(request, RequestModel.RECEIVED_DATE, user));
-            rs.setRecentDeliveryDate(getRecordLongValue(request, RequestModel.RECENT_DELIVERY_DATE, user));
-            rs.setCompletedDate(getRecordLongValue(request, RequestModel.COMPLETED_DATE, user));
-            rs.setIsIgoComplete(isIgoComplete(request, user));
-            rs.setQcAccessEmail(getRecordStringValue(request, "QcAccessEmails", user));
-            rs.setDataAccessEmails(getRecordStringValue(request, "DataAccessEmails", user));
-            rs.setDueDate(getRecordLongValue(request, "DueDate", user));
+            rs.setIsCmoRequest(getRecordBooleanValue(request, "IsCmoRequest"));
+            rs.setInvestigator(getRecordStringValue(request, RequestModel.INVESTIGATOR));
+            rs.setPi(getRecordStringValue(request, RequestModel.LABORATORY_HEAD));
+            rs.setPiEmail(getRecordStringValue(request, "PIemail"));
+            rs.setInvestigatorEmail(getRecordStringValue(request, "Investigatoremail"));
+            rs.setRequestType(getRecordStringValue(request, RequestModel.REQUEST_NAME));
+            rs.setReceivedDate(getRecordLongValue(request, RequestModel.RECEIVED_DATE));
+            rs.setRecentDeliveryDate(getRecordLongValue(request, RequestModel.RECENT_DELIVERY_DATE));
+            rs.setCompletedDate(getRecordLongValue(request, RequestModel.COMPLETED_DATE));
+            rs.setIsIgoComplete(isIgoComplete(request));
+            rs.setQcAccessEmail(getRecordStringValue(request, "QcAccessEmails"));
+            rs.setDataAccessEmails(getRecordStringValue(request, "DataAccessEmails"));
+            rs.setDueDate(getRecordLongValue(request, "DueDate"));
             requests.add(rs);
         }
 
@@ -1,12 +1,7 @@
 package org.mskcc.limsrest.service;
 
-import com.velox.api.datarecord.DataRecordManager;
-import com.velox.api.servermanager.PickListConfig;
-import com.velox.api.servermanager.PickListManager;
-import com.velox.api.user.User;
-import com.velox.sapioutils.client.standalone.VeloxConnection;
 import lombok.Setter;
-import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.PickListCache;
 
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -20,24 +15,19 @@ import java.util.List;
 @Setter
 public class GetPickListTask {
     private String picklist;
-    private ConnectionLIMS conn;
+    private PickListCache pickLists;
 
-    public GetPickListTask(String picklist, ConnectionLIMS conn) {
+    public GetPickListTask(String picklist, PickListCache pickLists) {
         this.picklist = picklist;
-        this.conn = conn;
+        this.pickLists = pickLists;
     }
 
     public List<String> execute() {
         List<String> values = new LinkedList<String>();
         try {
-            VeloxConnection vConn = conn.getConnection();
-            User user = vConn.getUser();
-            DataRecordManager drm = vConn.getDataRecordManager();
-
-            PickListManager picklister = vConn.getDataMgmtServer().getPickListManager(user);
-            PickListConfig pickConfig = picklister.getPickListConfig(picklist);
-            if (pickConfig != null) {
-                values = pickConfig.getEntryList();
+            List<String> entries = pickLists.get(picklist);
+            if (entries != null) {
+                values = entries;
             }
         } catch (Throwable e) {
         }
@@ -8,6 +8,7 @@ import com.velox.sloan.cmo.recmodels.SeqRequirementModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.util.RecordMemo;
 
 import org.springframework.security.access.prepost.PreAuthorize;
 
@@ -35,9 +36,10 @@ public class GetReadyForIllumina {
         List<RunSummary> results = new LinkedList<>();
         // this query has had performance issues when the number of samples is high, track execution time
         long startTime = System.currentTimeMillis();
-        try {
-            VeloxConnection vConn = conn.getConnection();
-            User user = vConn.getUser();
+        VeloxConnection vConn = conn.getConnection();
+        User user = vConn.getUser();
+        // libraries of a pool and pools of a request share most of their lineage, read each record once
+        try (RecordMemo memo = RecordMemo.open(user)) {
             DataRecordManager dataRecordManager = vConn.getDataRecordManager();
             log.info("Finding all samples with ExemplarSampleStatus = 'Ready for - Pooling of Sample Libraries for Sequencing'");
             List<DataRecord> samplesToPool = dataRecordManager.queryDataRecords("Sample", "ExemplarSampleStatus = 'Ready for - Pooling of Sample Libraries for Sequencing'", user);
@@ -45,11 +47,12 @@ public class GetReadyForIllumina {
 
             if (samplesToPool.size() > 0){
                 for (DataRecord sample: samplesToPool){
-                    String sampleId = sample.getStringVal("SampleId", user);
-                    List<DataRecord> requestRecords = sample.getAncestorsOfType("Request", user);
+                    Map<String, Object> sampleFields = memo.getFields(sample);
+                    String sampleId = (String) sampleFields.get("SampleId");
+                    List<DataRecord> requestRecords = memo.getAncestorsOfType(sample, "Request");
                     String requestName = "";
                     if (!requestRecords.isEmpty()) {
-                        requestName = requestRecords.get(0).getStringVal("RequestName", user);
+                        requestName = memo.getString(requestRecords.get(0), "RequestName");
                     }
                     if (sampleId.toLowerCase().startsWith("pool-")) {
                         // if sample is pool then get all the Library samples in the pool which live as parents of the pool.
@@ -58,13 +61,13 @@ public class GetReadyForIllumina {
                             RunSummary summary = new RunSummary("DEFAULT", "DEFAULT");
                             //set some of the pool level fields on the summary object like pool
                             summary.setPool(sampleId); //preset poolID
-                            summary.setConcentration(sample.getDoubleVal("Concentration", user)); //preset Pool Concentration
-                            summary.setStatus(sample.getStringVal("ExemplarSampleStatus", user)); //preset Pool Status
+                            summary.setConcentration((Double) sampleFields.get("Concentration")); //preset Pool Concentration
+                            summary.setStatus((String) sampleFields.get("ExemplarSampleStatus")); //preset Pool Status
                             summary.setRequestName(requestName);
-                            if (sample.getValue("Volume", user) == null) //preset pool volume in this if else block
+                            if (sampleFields.get("Volume") == null) //preset pool volume in this if else block
                                 summary.setVolume("null");
                             else
-                                summary.setVolume(sample.getValue("Volume", user).toString());
+                                summary.setVolume(sampleFields.get("Volume").toString());
                             results.add(createRunSummaryForSampleInPool(librarySample, summary, user)); //pass the summary Object with preset pool level information "createRunSummaryForSampleInPool" method to add sample level information
                         }
                     } else {
@@ -94,14 +97,15 @@ public class GetReadyForIllumina {
      * @throws NotFound
      */
     private List<DataRecord> getNearestParentLibrarySamplesForPool(DataRecord pooledSample, User user) throws IoError, RemoteException, NotFound {
+        RecordMemo memo = RecordMemo.forThread(user);
         List<DataRecord> parentLibrarySamplesForPool = new ArrayList<>();
         Stack<DataRecord> sampleTrackingStack = new Stack<>();
         sampleTrackingStack.add(pooledSample);
         while (!sampleTrackingStack.isEmpty()) {
-            List<DataRecord> parentSamples = sampleTrackingStack.pop().getParentsOfType("Sample", user);
+            List<DataRecord> parentSamples = memo.getParentsOfType(sampleTrackingStack.pop(), "Sample");
             if (!parentSamples.isEmpty()) {
                 for (DataRecord sample : parentSamples) {
-                    String sampleId = sample.getStringVal("SampleId", user);
+                    String sampleId = memo.getString(sample, "SampleId");
                     log.info("Processing: " + sampleId);
                     if (sampleId.toLowerCase().startsWith("pool-")) {
                         sampleTrackingStack.push(sample);
@@ -125,7 +129,8 @@ public class GetReadyForIllumina {
      * @throws RemoteException
      */
     private DataRecord getParentSampleWithDesiredChildTypeRecord(DataRecord sample, String childDataType, User user) throws IoError, RemoteException, NotFound {
-        if (sample.getChildrenOfType(childDataType, user).length>0){
+        RecordMemo memo = RecordMemo.forThread(user);
+        if (memo.getChildrenOfType(sample, childDataType).length>0){
             return sample;
         }
         DataRecord record = null;
@@ -133,8 +138,8 @@ public class GetReadyForIllumina {
         sampleTrackingPile.push(sample);
         do {
             DataRecord startSample = sampleTrackingPile.pop();
-            List<DataRecord> parentRecords = startSample.getParentsOfType("Sample", user);
-            if (!parentRecords.isEmpty() && parentRecords.get(0).getChildrenOfType(childDataType, user).length>0) {
+            List<DataRecord> parentRecords = memo.getParentsOfType(startSample, "Sample");
+            if (!parentRecords.isEmpty() && memo.getChildrenOfType(parentRecords.get(0), childDataType).length>0) {
                 record = parentRecords.get(0);
             }
             if (!parentRecords.isEmpty() && record == null) {
@@ -154,14 +159,16 @@ public class GetReadyForIllumina {
      * @throws IoError
      */
     private String getSampleLibraryIndexIdAndBarcode(DataRecord sample, User user) throws NotFound, RemoteException, IoError {
+        RecordMemo memo = RecordMemo.forThread(user);
         DataRecord parentSample = getParentSampleWithDesiredChildTypeRecord(sample, "IndexBarcode", user);
-        if (parentSample != null && parentSample.getChildrenOfType("IndexBarcode", user)[0].getValue("IndexId", user) != null) {
-            DataRecord recordWithIndexBarcodeInfo = parentSample.getChildrenOfType("IndexBarcode", user)[0];
-            String indexId = recordWithIndexBarcodeInfo.getStringVal("IndexId", user);
-            String indexBarcode = recordWithIndexBarcodeInfo.getStringVal("IndexTag", user);
+        Map<String, Object> indexBarcodeFields = parentSample == null ? null :
+                memo.getFields(memo.getChildrenOfType(parentSample, "IndexBarcode")[0]);
+        if (indexBarcodeFields != null && indexBarcodeFields.get("IndexId") != null) {
+            String indexId = (String) indexBarcodeFields.get("IndexId");
+            String indexBarcode = (String) indexBarcodeFields.get("IndexTag");
             return indexId + "," + indexBarcode;
         } else {
-            log.info(String.format("IndexId not found for sample '%s'. Please double check.", sample.getStringVal("SampleId", user)));
+            log.info(String.format("IndexId not found for sample '%s'. Please double check.", memo.getString(sample, "SampleId")));
             return "";
         }
     }
@@ -178,12 +185,11 @@ public class GetReadyForIllumina {
      * @throws InvalidValue
      */
     private Double getRequestedReadsForSample(DataRecord sample, User user) throws IoError, RemoteException, NotFound, ServerException, InvalidValue {
-        DataRecord sampleWithSeqRequirementAsChild = getParentSampleWithDesiredChildTypeRecord(sample, "SeqRequirement", user);
-        if (sampleWithSeqRequirementAsChild !=null && sampleWithSeqRequirementAsChild.getChildrenOfType("SeqRequirement", user)[0].getValue("RequestedReads", user) != null) {
-            DataRecord seqRequirements = sampleWithSeqRequirementAsChild.getChildrenOfType("SeqRequirement", user)[0];
-            return seqRequirements.getDoubleVal("RequestedReads", user);
+        Object requestedReads = getSeqRequirementValue(sample, "RequestedReads", user);
+        if (requestedReads != null) {
+            return ((Number) requestedReads).doubleValue();
         } else {
-            log.error(String.format("Invalid Sequencing Requirements '%s' for sample '%s'. Please double check.", null, sample.getStringVal("SampleId", user)));
+            log.error(String.format("Invalid Sequencing Requirements '%s' for sample '%s'. Please double check.", null, RecordMemo.forThread(user).getString(sample, "SampleId")));
             return 0.0;
         }
     }
@@ -197,23 +203,40 @@ public class GetReadyForIllumina {
      * @throws NotFound
      */
     private String getSequencingRunTypeForSample(DataRecord sample, User user) throws IoError, RemoteException, NotFound {
-        DataRecord sampleWithSeqRequirementAsChild = getParentSampleWithDesiredChildTypeRecord(sample, "SeqRequirement", user);
-        if (sampleWithSeqRequirementAsChild != null && sampleWithSeqRequirementAsChild.getChildrenOfType("SeqRequirement", user)[0].getValue("SequencingRunType", user) != null){
-            DataRecord sequencingRunTypeRecord = sampleWithSeqRequirementAsChild.getChildrenOfType("SeqRequirement", user)[0]; //continue here
-            return sequencingRunTypeRecord.getStringVal("SequencingRunType", user);
+        Object sequencingRunType = getSeqRequirementValue(sample, "SequencingRunType", user);
+        if (sequencingRunType != null){
+            return sequencingRunType.toString();
         } else {
-            log.error(String.format("Invalid Sequencing RunType '%s' for sample '%s'. Please double check.", null, sample.getStringVal("SampleId", user)));
+            log.error(String.format("Invalid Sequencing RunType '%s' for sample '%s'. Please double check.", null, RecordMemo.forThread(user).getString(sample, "SampleId")));
             return "";
         }
     }
 
+    /**
+     * @return value of the field on the SeqRequirement of the nearest sample in the hierarchy that has one, null if
+     * there is none
+     */
+    private Object getSeqRequirementValue(DataRecord sample, String field, User user) throws IoError, RemoteException, NotFound {
+        RecordMemo memo = RecordMemo.forThread(user);
+        DataRecord sampleWithSeqRequirementAsChild = getParentSampleWithDesiredChildTypeRecord(sample, "SeqRequirement", user);
+        if (sampleWithSeqRequirementAsChild == null)
+            return null;
+        return memo.getValue(memo.getChildrenOfType(sampleWithSeqRequirementAsChild, "SeqRequirement")[0], field);
+    }
+
     private String getRecipeForSample(DataRecord sample, User user) throws NotFound, RemoteException {
-        if (sample.getValue("Recipe", user) !=null){
-            return sample.getValue("Recipe",user).toString();
+        Object recipe = RecordMemo.forThread(user).getValue(sample, "Recipe");
+        if (recipe !=null){
+            return recipe.toString();
         }
         return "";
     }
 
+    private static long getLongOrZero(Map<String, Object> fields, String field) {
+        Object value = fields.get(field);
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+
     /**
      * This method will create the Summary Object for the sample not part of a pool.
      * @param unpooledSample
@@ -226,7 +249,7 @@ public class GetReadyForIllumina {
      */
     private RunSummary createRunSummaryForNonPooledSamples(DataRecord unpooledSample, String requestName, User user)
             throws NotFound, RemoteException, IoError, InvalidValue {
-        Map<String, Object> sampleFieldValues = unpooledSample.getFields(user);
+        Map<String, Object> sampleFieldValues = RecordMemo.forThread(user).getFields(unpooledSample);
         String sampleId = (String) sampleFieldValues.get("SampleId");
         log.info("Creating run summary for " + sampleId);
         RunSummary summary = new RunSummary("DEFAULT", "DEFAULT"); // if sample is not pool, then it is Library sample and work with it.
@@ -259,9 +282,9 @@ public class GetReadyForIllumina {
         summary.setReadNum(getRequestedReadsForSample(unpooledSample, user).toString());
         List<DataRecord> seqReqrmts = getRecordsOfTypeFromParents(unpooledSample, SampleModel.DATA_TYPE_NAME, SeqRequirementModel.DATA_TYPE_NAME, user);
         if (seqReqrmts.size()>0){
-            DataRecord seqReq = seqReqrmts.get(0);
-            summary.setReadTotal(seqReq.getValue(SeqRequirementModel.READ_TOTAL, user) != null ? seqReq.getLongVal(SeqRequirementModel.READ_TOTAL, user): 0);
-            summary.setRemainingReads(seqReq.getValue("RemainingReads", user) != null ? seqReq.getLongVal("RemainingReads", user) : 0);
+            Map<String, Object> seqReq = RecordMemo.forThread(user).getFields(seqReqrmts.get(0));
+            summary.setReadTotal(getLongOrZero(seqReq, SeqRequirementModel.READ_TOTAL));
+            summary.setRemainingReads(getLongOrZero(seqReq, "RemainingReads"));
         }
         summary.setRunType(getSequencingRunTypeForSample(unpooledSample, user));
         return summary;
@@ -279,7 +302,7 @@ public class GetReadyForIllumina {
      * @throws InvalidValue
      */
     private RunSummary createRunSummaryForSampleInPool(DataRecord sampleInPool, RunSummary summary, User user) throws RemoteException, NotFound, IoError, InvalidValue {
-        Map<String, Object> sampleFieldValues = sampleInPool.getFields(user);
+        Map<String, Object> sampleFieldValues = RecordMemo.forThread(user).getFields(sampleInPool);
         summary.setSampleId((String) sampleFieldValues.get("SampleId"));
         summary.setOtherSampleId((String) sampleFieldValues.getOrDefault("OtherSampleId", ""));
         summary.setRequestId((String) sampleFieldValues.getOrDefault("RequestId", ""));
@@ -297,9 +320,9 @@ public class GetReadyForIllumina {
             summary.setBarcodeId(indexAndBarcode.split(",")[0]);
         List<DataRecord> seqReqrmts = getRecordsOfTypeFromParents(sampleInPool, SampleModel.DATA_TYPE_NAME, SeqRequirementModel.DATA_TYPE_NAME, user);
         if (seqReqrmts.size()>0){
-            DataRecord seqReq = seqReqrmts.get(0);
-            summary.setReadTotal(seqReq.getValue(SeqRequirementModel.READ_TOTAL, user) != null ? seqReq.getLongVal(SeqRequirementModel.READ_TOTAL, user): 0);
-            summary.setRemainingReads(seqReq.getValue("RemainingReads", user) != null ? seqReq.getLongVal("RemainingReads", user) : 0);
+            Map<String, Object> seqReq = RecordMemo.forThread(user).getFields(seqReqrmts.get(0));
+            summary.setReadTotal(getLongOrZero(seqReq, SeqRequirementModel.READ_TOTAL));
+            summary.setRemainingReads(getLongOrZero(seqReq, "RemainingReads"));
         }
         summary.setBarcodeSeq(indexAndBarcode.split(",")[1]);
         summary.setReadNum(getRequestedReadsForSample(sampleInPool, user).toString());
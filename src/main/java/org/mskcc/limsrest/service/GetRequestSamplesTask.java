@@ -11,12 +11,14 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.model.RequestSample;
 import org.mskcc.limsrest.model.RequestSampleList;
+import org.mskcc.limsrest.util.RecordSnapshot;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 
@@ -51,20 +53,21 @@ public class GetRequestSamplesTask {
             log.info("Samples IGO Complete: " + samplesIGOComplete.size());
 
             DataRecord requestDataRecord = requestList.get(0);
+            RecordSnapshot request = RecordSnapshot.of(requestDataRecord, user);
             DataRecord[] samples = requestDataRecord.getChildrenOfType("Sample", user);
             log.info("Child samples found: " + samples.length);
 
             List<RequestSample> sampleList = new ArrayList<>();
             String recipe = "";
-            for (DataRecord sample : samples) {
-                String igoId = sample.getStringVal("SampleId", user);
-                String sampleRecipe = sample.getStringVal(SampleModel.RECIPE, user);
+            for (RecordSnapshot sample : RecordSnapshot.of(Arrays.asList(samples), drm, user)) {
+                String igoId = sample.getString("SampleId");
+                String sampleRecipe = sample.getString(SampleModel.RECIPE);
                 if ("Fingerprinting".equals(sampleRecipe)) // for example 07951_S_50_1, skip for pipelines for now
                     continue;
                 else
                     recipe = sampleRecipe;
 
-                String othersampleId = sample.getStringVal("OtherSampleId", user);
+                String othersampleId = sample.getString("OtherSampleId");
                 boolean igoComplete = samplesIGOComplete.contains(othersampleId);
                 // same othersampleId as other samples but these failed, could check exemplarSampleStatus too
                 // remove if qc status lookup done by IGO ID
@@ -86,7 +89,7 @@ public class GetRequestSamplesTask {
                 log.info("Adding pooled normals for recipe: " + recipe);
                 rsl.setPooledNormals(findPooledNormals(requestId));
             }
-            String requestName = requestDataRecord.getStringVal(RequestModel.REQUEST_NAME, user);
+            String requestName = request.getString(RequestModel.REQUEST_NAME);
             if (requestName != null && requestName.toUpperCase().contains("RNASEQ")) {
                 setRNASeqLibraryTypeAndStrandedness(rsl, requestName);
             }
@@ -103,35 +106,36 @@ public class GetRequestSamplesTask {
             }
 
             rsl.setRecipe(recipe);
-            rsl.setPiEmail(requestDataRecord.getStringVal("PIemail", user));
-            rsl.setLabHeadName(requestDataRecord.getStringVal("LaboratoryHead", user));
-            rsl.setLabHeadEmail(requestDataRecord.getStringVal("LabHeadEmail", user));
-            rsl.setProjectManagerName(requestDataRecord.getStringVal("ProjectManager", user));
-            rsl.setInvestigatorName(requestDataRecord.getStringVal("Investigator", user));
-            rsl.setInvestigatorEmail(requestDataRecord.getStringVal("Investigatoremail", user));
-            rsl.setDataAnalystName(requestDataRecord.getStringVal("DataAnalyst", user));
-            rsl.setDataAnalystEmail(requestDataRecord.getStringVal("DataAnalystEmail", user));
-            rsl.setOtherContactEmails(requestDataRecord.getStringVal("MailTo", user));
-            rsl.setQcAccessEmails(requestDataRecord.getStringVal("QcAccessEmails", user));
-            rsl.setDataAccessEmails(requestDataRecord.getStringVal("DataAccessEmails", user));
-            Object deliveryDate = requestDataRecord.getValue("RecentDeliveryDate", user);
+            rsl.setPiEmail(request.getString("PIemail"));
+            rsl.setLabHeadName(request.getString("LaboratoryHead"));
+            rsl.setLabHeadEmail(request.getString("LabHeadEmail"));
+            rsl.setProjectManagerName(request.getString("ProjectManager"));
+            rsl.setInvestigatorName(request.getString("Investigator"));
+            rsl.setInvestigatorEmail(request.getString("Investigatoremail"));
+            rsl.setDataAnalystName(request.getString("DataAnalyst"));
+            rsl.setDataAnalystEmail(request.getString("DataAnalystEmail"));
+            rsl.setOtherContactEmails(request.getString("MailTo"));
+            rsl.setQcAccessEmails(request.getString("QcAccessEmails"));
+            rsl.setDataAccessEmails(request.getString("DataAccessEmails"));
+            Long deliveryDate = request.getLong("RecentDeliveryDate");
             if (deliveryDate != null)
-                rsl.setDeliveryDate(requestDataRecord.getLongVal("RecentDeliveryDate", user));
+                rsl.setDeliveryDate(deliveryDate);
 
             // GetRequestPermissionsTask will set fastq.gz permissions based on whether or not BIC or CMO request so
             // return those values here too.
             // alternatively, IGO could tell people to call the GetRequestPermissions endpoint instead of adding
             // the fields here too.
-            Boolean isCmoRequest = Boolean.FALSE;
-            Boolean bicAnalysis = Boolean.FALSE;
-            String analysisType = "";
-            try {
-                isCmoRequest = requestDataRecord.getBooleanVal("IsCmoRequest", user);
-                bicAnalysis = requestDataRecord.getBooleanVal("BICAnalysis", user);
-                analysisType = requestDataRecord.getStringVal("AnalysisType", user);
-            } catch (NullPointerException e) {
+            Boolean isCmoRequest = request.getBoolean("IsCmoRequest");
+            Boolean bicAnalysis = request.getBoolean("BICAnalysis");
+            String analysisType = request.getString("AnalysisType");
+            if (isCmoRequest == null || bicAnalysis == null)
                 log.warn("Correct invalid null valid in database for request: " + requestId);
-            }
+            if (isCmoRequest == null)
+                isCmoRequest = Boolean.FALSE;
+            if (bicAnalysis == null)
+                bicAnalysis = Boolean.FALSE;
+            if (analysisType == null)
+                analysisType = "";
             Boolean isBicRequest = GetRequestPermissionsTask.isBicRequest(analysisType, bicAnalysis);
             rsl.setIsCmoRequest(isCmoRequest);
             rsl.setBicAnalysis(isBicRequest);
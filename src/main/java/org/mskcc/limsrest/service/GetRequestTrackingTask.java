@@ -5,6 +5,7 @@ import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.datarecord.IoError;
 import com.velox.api.datarecord.NotFound;
 import com.velox.api.user.User;
+import com.velox.api.util.ServerException;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.BankedSampleModel;
 import com.velox.sloan.cmo.recmodels.RequestModel;
@@ -16,8 +17,14 @@ import org.junit.platform.commons.util.StringUtils;
 import org.mskcc.domain.sample.CmoSampleInfo;
 import org.mskcc.domain.sample.Sample;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.DeadlineExceededException;
+import org.mskcc.limsrest.RmiCallStats;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
 import org.mskcc.limsrest.service.requesttracker.*;
+import org.mskcc.limsrest.util.RecordSnapshot;
+import org.mskcc.limsrest.util.SampleSubtree;
+import org.mskcc.limsrest.util.SampleSubtreeLoader;
 
 import java.rmi.RemoteException;
 import java.util.*;
@@ -51,6 +58,12 @@ public class GetRequestTrackingTask {
     private ConnectionLIMS conn;
     private String requestId;
     private User user;
+    // partial mode stops evaluating samples shortly before the request deadline, returns the samples evaluated when
+    // it passes and lists the ones left out
+    private boolean partial = false;
+    private List<String> unprocessedSamples = new ArrayList<>();
+    // set when the deadline passed before the samples were known, so they can not be listed
+    private boolean samplesNotLoaded = false;
 
     public GetRequestTrackingTask(String requestId, ConnectionLIMS conn) {
         this.requestId = requestId;
@@ -58,6 +71,11 @@ public class GetRequestTrackingTask {
         this.user = conn.getConnection().getUser();
     }
 
+    public GetRequestTrackingTask(String requestId, ConnectionLIMS conn, boolean partial) {
+        this(requestId, conn);
+        this.partial = partial;
+    }
+
     public Map<String, Object> execute() throws IoError, RemoteException, NotFound {
         VeloxConnection vConn = conn.getConnection();
         User user = vConn.getUser();
@@ -82,11 +100,12 @@ public class GetRequestTrackingTask {
             return request.toApiResponse();
         }
         DataRecord requestRecord = requestRecordList.get(0);
+        RecordSnapshot requestFields = RecordSnapshot.of(requestRecord, user);
 
-        List<ProjectSample> projectSamples = getProjectSamplesFromDataRecord(requestRecord, user);
+        List<ProjectSample> projectSamples = getProjectSamplesFromDataRecord(requestRecord, requestFields, drm, user);
         request.setSamples(projectSamples);
 
-        Map<String, Object> metaData = getMetaDataFromRecord(requestRecord, this.requestId, serviceId, projectSamples, user);
+        Map<String, Object> metaData = getMetaDataFromRecord(requestFields, this.requestId, serviceId, projectSamples);
         request.setMetaData(metaData);
 
         // Aggregate Project-Level stage information. Stages are added one-by-one as previous stages (E.g. "submitted")
@@ -96,10 +115,15 @@ public class GetRequestTrackingTask {
             request.addStage(requestStage.getKey(), requestStage.getValue());
         }
 
-        Map<String, Object> projectSummary = getProjectSummary(requestRecord, request.getStages(), user);
+        Map<String, Object> projectSummary = getProjectSummary(requestFields, request.getStages());
         request.setSummary(projectSummary);
 
-        return request.toApiResponse();
+        Map<String, Object> apiResponse = request.toApiResponse();
+        if (partial) {
+            apiResponse.put("incomplete", samplesNotLoaded || !unprocessedSamples.isEmpty());
+            apiResponse.put("unprocessedSamples", unprocessedSamples);
+        }
+        return apiResponse;
     }
 
     /**
@@ -116,20 +140,19 @@ public class GetRequestTrackingTask {
      *
      * @param requestRecord
      * @param stages
-     * @param user
      * @return
      */
-    private Map<String, Object> getProjectSummary(DataRecord requestRecord, Map<String, StageTracker> stages, User user) {
+    private Map<String, Object> getProjectSummary(RecordSnapshot requestRecord, Map<String, StageTracker> stages) {
         Map<String, Object> projectStatus = new HashMap<>();
 
-        final Long mostRecentDeliveryDate = getRecordLongValue(requestRecord, RequestModel.RECENT_DELIVERY_DATE, user);
-        final Long completedDate = getRecordLongValue(requestRecord, RequestModel.COMPLETED_DATE, user);
+        final Long mostRecentDeliveryDate = getRecordLongValue(requestRecord, RequestModel.RECENT_DELIVERY_DATE);
+        final Long completedDate = getRecordLongValue(requestRecord, RequestModel.COMPLETED_DATE);
         projectStatus.put(RequestModel.RECENT_DELIVERY_DATE, mostRecentDeliveryDate);
         projectStatus.put(RequestModel.COMPLETED_DATE, completedDate);
 
-        boolean isIgoComplete = isIgoComplete(requestRecord, user);
+        boolean isIgoComplete = isIgoComplete(requestRecord);
         projectStatus.put("isIgoComplete", isIgoComplete);
-        if(isExtractionRequest(requestRecord, user)){
+        if(isExtractionRequest(requestRecord)){
             // Extraction requests are considered delivered if they are IGO-Complete
             projectStatus.put("isDelivered", isIgoComplete);
         } else {
@@ -169,22 +192,58 @@ public class GetRequestTrackingTask {
      * Traverse the tree of each "Sample" DataType child of the input @requestRecord. This tree is converted into
      * a ProjectSample data model that represents the tree
      *
+     * The Sample trees of all ProjectSamples are loaded together, one level at a time, before they are evaluated. Only
+     * samples of the request are descended into, children from other projects are only needed for their SampleId.
+     *
      * @param requestRecord - DataRecord of the request being tracked
+     * @param requestFields - fields of @requestRecord
+     * @param drm
      * @param user
      * @return
      * @throws IoError
      * @throws RemoteException
      */
-    private List<ProjectSample> getProjectSamplesFromDataRecord(DataRecord requestRecord, User user) throws IoError, RemoteException {
+    private List<ProjectSample> getProjectSamplesFromDataRecord(DataRecord requestRecord, RecordSnapshot requestFields,
+                                                                DataRecordManager drm, User user)
+            throws IoError, RemoteException {
         // Immediate samples of record represent physical samples. LIMS creates children of these in the workflow
         DataRecord[] samples = requestRecord.getChildrenOfType(SampleModel.DATA_TYPE_NAME, user);
+        RmiCallStats.addItems(samples.length);
+        SampleSubtree subtree;
+        try {
+            subtree = new SampleSubtreeLoader(drm, user)
+                    .withChildrenOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME, CmoSampleInfo.DATA_TYPE_NAME)
+                    .descendWhen(sample -> isWorkflowSampleInProject(sample, this.requestId))
+                    .load(Arrays.asList(samples));
+        } catch (ServerException e) {
+            throw new RemoteException(String.format("Unable to load samples of request %s", this.requestId), e);
+        } catch (DeadlineExceededException e) {
+            if (!partial)
+                throw e;
+            log.warn(String.format("Deadline passed while loading the %d samples of request %s", samples.length,
+                    this.requestId));
+            samplesNotLoaded = true;
+            return new ArrayList<>();
+        }
 
         // Create the tree of each ProjectSample aggregating per-sample status/stage information
         List<ProjectSample> projectSamples = new ArrayList<>();
-        for (DataRecord sampleRecord : samples) {
-            ProjectSampleTree tree = createProjectSampleTree(requestRecord, sampleRecord, user);
-            ProjectSample projectSample = tree.evaluateProjectSample();
-            projectSamples.add(projectSample);
+        for (SampleSubtree.Node sampleNode : subtree.getRoots()) {
+            if (partial && Deadline.nearlyExpired()) {
+                unprocessedSamples.add(getRecordStringValue(sampleNode.getFields(), SampleModel.SAMPLE_ID));
+                continue;
+            }
+            try {
+                Deadline.check();
+                ProjectSampleTree tree = createProjectSampleTree(requestFields, sampleNode, user);
+                ProjectSample projectSample = tree.evaluateProjectSample();
+                projectSamples.add(projectSample);
+            } catch (DeadlineExceededException e) {
+                // the sample in progress is left out, the ones already evaluated are returned
+                if (!partial)
+                    throw e;
+                unprocessedSamples.add(getRecordStringValue(sampleNode.getFields(), SampleModel.SAMPLE_ID));
+            }
         }
 
         return projectSamples;
@@ -228,10 +287,12 @@ public class GetRequestTrackingTask {
      *          not passed Data QC by ProjectSampleTree::isPassedDataQc
      *
      * @param root - Workflow sample root whose subtree will be evaluated and update the @tree
+     * @param rootNode - Loaded Sample DataRecord of @root and its children
      * @param tree - Tree describing the workflow, which is represented in LIMS as a tree descending from the @root
      * @return
      */
-    private ProjectSampleTree createWorkflowTree(WorkflowSample root, ProjectSampleTree tree) {
+    private ProjectSampleTree createWorkflowTree(WorkflowSample root, SampleSubtree.Node rootNode, ProjectSampleTree tree) {
+        Deadline.check();
         tree.addStageToTracked(root);   // Update tree Project Sample stages w/ the input Workflow sample's stage
 
 
@@ -247,12 +308,9 @@ public class GetRequestTrackingTask {
         }
 
         // Search each child of the input
-        DataRecord[] children = new DataRecord[0];
-        try {
-            children = root.getRecord().getChildrenOfType(SampleModel.DATA_TYPE_NAME, tree.getUser());
-        } catch (IoError | RemoteException e) { /* Expected - No more children of the sample */ }
+        List<SampleSubtree.Node> children = rootNode.getChildren();
 
-        if (children.length == 0) {
+        if (children.isEmpty()) {
             tree.updateTreeOnLeafStatus(root);
             return tree;
         } else {
@@ -260,10 +318,10 @@ public class GetRequestTrackingTask {
             root.setComplete(Boolean.TRUE);
 
             // Add all data for the root's children at that level. Allows us to fail only the failed branch
-            List<WorkflowSample> workflowChildren = new ArrayList<>();
-            for (DataRecord record : children) {
-                if (isWorkflowSampleInProject(record, this.requestId, this.user)) {
-                    WorkflowSample sample = new WorkflowSample(record, this.conn);
+            Map<WorkflowSample, SampleSubtree.Node> workflowChildren = new LinkedHashMap<>();
+            for (SampleSubtree.Node child : children) {
+                if (isWorkflowSampleInProject(child.getFields(), this.requestId)) {
+                    WorkflowSample sample = new WorkflowSample(child, this.conn);
 
                     // Children are related to the same Qc Records as their parents.
                     sample.addSeqAnalysisQcRecords(root.getSeqAnalysisQcRecords());
@@ -278,19 +336,20 @@ public class GetRequestTrackingTask {
                     }
                     root.addChild(sample);
                     tree.addSample(sample);
-                    workflowChildren.add(sample);
+                    workflowChildren.put(sample, child);
                 } else {
                     // Child is from a different project - add it as a child Sample Id
-                    String childSampleId = getRecordStringValue(record, SampleModel.SAMPLE_ID, this.user);
+                    String childSampleId = getRecordStringValue(child.getFields(), SampleModel.SAMPLE_ID);
                     root.setChildSampleId(childSampleId);
                 }
             }
 
-            for (WorkflowSample sample : workflowChildren) {
+            for (Map.Entry<WorkflowSample, SampleSubtree.Node> child : workflowChildren.entrySet()) {
+                WorkflowSample sample = child.getKey();
                 // Update tree w/ each sample
                 log.debug(String.format("Searching child, %d, of data record ID: %d", sample.getRecord().getRecordId(),
                         root.getRecordId()));
-                tree = createWorkflowTree(sample, tree);
+                tree = createWorkflowTree(sample, child.getValue(), tree);
             }
         }
         return tree;
@@ -324,26 +383,27 @@ public class GetRequestTrackingTask {
      *      e.g.
      *          SampleId: "09641_U_76", RequestId: "09641_U" -> TRUE
      *          SampleId: "09641_X_76", RequestId: "09641_U" -> FALSE
-     * @param record
+     * @param sample
      * @param requestId
-     * @param user
      * @return
      */
-    private boolean isWorkflowSampleInProject(DataRecord record, String requestId, User user) {
-        String sampleId = getRecordStringValue(record, SampleModel.SAMPLE_ID, user);
+    private boolean isWorkflowSampleInProject(RecordSnapshot sample, String requestId) {
+        String sampleId = getRecordStringValue(sample, SampleModel.SAMPLE_ID);
         return sampleId.contains(requestId);
     }
 
     /**
      * Creates data model of the tree for the DataRecord corresponding to a ProjectSample
      *
-     * @param record
+     * @param requestFields
+     * @param sampleNode
      * @param user
      * @return
      */
-    private ProjectSampleTree createProjectSampleTree(DataRecord requestRecord, DataRecord record, User user) {
+    private ProjectSampleTree createProjectSampleTree(RecordSnapshot requestFields, SampleSubtree.Node sampleNode, User user) {
+        DataRecord record = sampleNode.getRecord();
         // Initialize input
-        WorkflowSample root = new WorkflowSample(record, this.conn);
+        WorkflowSample root = new WorkflowSample(sampleNode, this.conn);
         ProjectSampleTree rootTree = new ProjectSampleTree(root, user);
         rootTree.addSample(root);
 
@@ -361,18 +421,18 @@ public class GetRequestTrackingTask {
         }
 
         // Evaluate overall status of sample as complete or not
-        if(isIgoComplete(requestRecord, user) || rootTree.isQcIgoComplete()){
+        if(isIgoComplete(requestFields) || rootTree.isQcIgoComplete()){
             rootTree.setIgoComplete(true);
         }
 
-        String investigatorSampleName = getRecordStringValue(record, Sample.USER_SAMPLE_ID, user);
-        String sampleName = getRecordStringValue(record, Sample.OTHER_SAMPLE_ID, user);
+        String investigatorSampleName = getRecordStringValue(sampleNode.getFields(), Sample.USER_SAMPLE_ID);
+        String sampleName = getRecordStringValue(sampleNode.getFields(), Sample.OTHER_SAMPLE_ID);
         rootTree.setSampleName(sampleName);
         rootTree.setInvestigatorSampleId(investigatorSampleName);
-        DataRecord[] sampleCmoInfochildren = getChildrenofDataRecord(record, CmoSampleInfo.DATA_TYPE_NAME, user);
-        if(sampleCmoInfochildren.length == 1){
-            DataRecord sampleCmoInfoChild = sampleCmoInfochildren[0];
-            String correctedCmoId = getRecordStringValue(sampleCmoInfoChild, CmoSampleInfo.USER_SAMPLE_ID, user);
+        List<RecordSnapshot> sampleCmoInfochildren = sampleNode.getChildrenOfType(CmoSampleInfo.DATA_TYPE_NAME);
+        if(sampleCmoInfochildren.size() == 1){
+            RecordSnapshot sampleCmoInfoChild = sampleCmoInfochildren.get(0);
+            String correctedCmoId = getRecordStringValue(sampleCmoInfoChild, CmoSampleInfo.USER_SAMPLE_ID);
             rootTree.setCorrectedInvestigatorSampleId(correctedCmoId);
         } else {
             log.info(String.format("There is not a single %s child for Sample DataRecord: %d",
@@ -380,7 +440,7 @@ public class GetRequestTrackingTask {
                     record.getRecordId()));
         }
         // Recursively create the workflowTree from the input tree
-        ProjectSampleTree workflowTree = createWorkflowTree(root, rootTree);
+        ProjectSampleTree workflowTree = createWorkflowTree(root, sampleNode, rootTree);
 
         return workflowTree;
     }
@@ -543,17 +603,16 @@ public class GetRequestTrackingTask {
     /**
      * Populates the metaData for the request using the Record from the Request DataType
      *
-     * @param requestRecord - DataRecord from the Request DataType
-     * @param user
+     * @param requestRecord - fields of the DataRecord from the Request DataType
      * @return
      */
-    private Map<String, Object> getMetaDataFromRecord(DataRecord requestRecord, String requestId, String serviceId, List<ProjectSample> projectSamples, User user) {
+    private Map<String, Object> getMetaDataFromRecord(RecordSnapshot requestRecord, String requestId, String serviceId, List<ProjectSample> projectSamples) {
         Map<String, Object> metaData = new HashMap<>();
         for (String field : requestDataStringFields) {
-            metaData.put(field, getRecordStringValue(requestRecord, field, user));
+            metaData.put(field, getRecordStringValue(requestRecord, field));
         }
         for (String field : requestDataLongFields) {
-            metaData.put(field, getRecordLongValue(requestRecord, field, user));
+            metaData.put(field, getRecordLongValue(requestRecord, field));
         }
 
         metaData.put("requestId", requestId);
@@ -15,8 +15,13 @@ import java.util.*;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.DeadlineExceededException;
+import org.mskcc.limsrest.LimsFanOut;
+import org.mskcc.limsrest.RmiCallStats;
 import org.mskcc.limsrest.model.SampleManifest;
 import org.mskcc.limsrest.util.IGOTools;
+import org.mskcc.limsrest.util.RecordSnapshot;
 import org.mskcc.limsrest.util.Utils;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
@@ -34,15 +39,38 @@ public class GetSampleManifestTask {
     private ConnectionLIMS conn;
 
     protected String [] igoIds;
+    // partial mode stops starting new samples shortly before the request deadline, returns the manifests generated
+    // when it passes and reports the samples left out
+    protected boolean partial = false;
+    // parallel mode builds the manifests of several samples at once, each on its own LIMS connection
+    protected boolean parallel = false;
+    // records of all requested samples, loaded together before the manifests are built
+    protected SampleManifestPrefetch records;
+    // parallel mode, the records of the sample a worker builds, loaded through the worker's own connection since a
+    // DataRecord sends its calls over the connection it was loaded with
+    private final ThreadLocal<SampleManifestPrefetch> workerRecords = new ThreadLocal<>();
 
     public GetSampleManifestTask(String [] igoIds, ConnectionLIMS conn) {
         this.igoIds = igoIds;
         this.conn = conn;
     }
 
+    public GetSampleManifestTask(String [] igoIds, ConnectionLIMS conn, boolean partial) {
+        this(igoIds, conn);
+        this.partial = partial;
+    }
+
+    public GetSampleManifestTask(String [] igoIds, ConnectionLIMS conn, boolean partial, boolean parallel) {
+        this(igoIds, conn, partial);
+        this.parallel = parallel;
+    }
+
     public static class SampleManifestResult {
         public List<SampleManifest> smList;
         public String error = null;
+        public List<String> unprocessedIgoIds = new ArrayList<>();
+        // parallel mode only, samples whose manifest failed mapped to the error, they are left out of smList
+        public Map<String, String> failedIgoIds = new LinkedHashMap<>();
 
         public SampleManifestResult(List<SampleManifest> smList, String error) {
             this.smList = smList;
@@ -69,17 +97,46 @@ public class GetSampleManifestTask {
     public SampleManifestResult execute() {
         long startTime = System.currentTimeMillis();
 
-        VeloxConnection vConn = conn.getConnection();
-        User user = vConn.getUser();
-        DataRecordManager dataRecordManager = vConn.getDataRecordManager();
-
         try {
+            RmiCallStats.addItems(igoIds.length);
+            if (parallel)
+                return executeParallel(startTime);
+            VeloxConnection vConn = conn.getConnection();
+            User user = vConn.getUser();
+            DataRecordManager dataRecordManager = vConn.getDataRecordManager();
+            try {
+                records = new SampleManifestPrefetch(dataRecordManager, user).load(Arrays.asList(igoIds));
+            } catch (DeadlineExceededException e) {
+                if (!partial)
+                    throw e;
+                log.warn("Deadline passed while loading the samples, returning no manifests");
+                SampleManifestResult result = new SampleManifestResult(new ArrayList<>(), null);
+                result.unprocessedIgoIds.addAll(Arrays.asList(igoIds));
+                return result;
+            }
             List<SampleManifest> smList = new ArrayList<>();
+            List<String> unprocessed = new ArrayList<>();
             for (String igoId : igoIds) {
-                smList.add(getSampleManifest(igoId, user, dataRecordManager));
+                if (partial && Deadline.nearlyExpired()) {
+                    unprocessed.add(igoId);
+                    continue;
+                }
+                try {
+                    Deadline.check();
+                    smList.add(getSampleManifest(igoId, user, dataRecordManager));
+                } catch (DeadlineExceededException e) {
+                    // the manifest of a sample in progress is left out, the ones already generated are returned
+                    if (!partial)
+                        throw e;
+                    unprocessed.add(igoId);
+                }
             }
             log.info("Manifest generation time(ms):" + (System.currentTimeMillis() - startTime));
-            return new SampleManifestResult(smList, null);
+            SampleManifestResult result = new SampleManifestResult(smList, null);
+            result.unprocessedIgoIds = unprocessed;
+            return result;
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             e.printStackTrace();
             log.error(e.getMessage());
@@ -87,6 +144,40 @@ public class GetSampleManifestTask {
         }
     }
 
+    private SampleManifestResult executeParallel(long startTime) throws InterruptedException {
+        List<LimsFanOut.Outcome<SampleManifest>> outcomes = new LimsFanOut(conn).map(Arrays.asList(igoIds),
+                (igoId, connection) -> {
+                    workerRecords.set(new SampleManifestPrefetch(connection.getDataRecordManager(), connection.getUser())
+                            .load(Collections.singletonList(igoId)));
+                    try {
+                        return getSampleManifest(igoId, connection.getUser(), connection.getDataRecordManager());
+                    } finally {
+                        workerRecords.remove();
+                    }
+                },
+                () -> partial && Deadline.nearlyExpired(), partial);
+
+        List<SampleManifest> smList = new ArrayList<>();
+        SampleManifestResult result = new SampleManifestResult(smList, null);
+        for (int i = 0; i < igoIds.length; i++) {
+            LimsFanOut.Outcome<SampleManifest> outcome = outcomes.get(i);
+            if (outcome.isSkipped())
+                result.unprocessedIgoIds.add(igoIds[i]);
+            else if (outcome.isFailed())
+                result.failedIgoIds.put(igoIds[i], String.valueOf(outcome.getError().getMessage()));
+            else
+                smList.add(outcome.getValue());
+        }
+        log.info("Manifest generation time(ms):" + (System.currentTimeMillis() - startTime) + ", failed: " +
+                result.failedIgoIds.keySet());
+        return result;
+    }
+
+    private SampleManifestPrefetch records() {
+        SampleManifestPrefetch worker = workerRecords.get();
+        return worker == null ? records : worker;
+    }
+
     /**
      * 06260_G_128 Currently Failing because archive has 06260_G_128_1_1
      * @param igoId
@@ -97,8 +188,10 @@ public class GetSampleManifestTask {
      */
     protected SampleManifest getSampleManifest(String igoId, User user, DataRecordManager dataRecordManager)
             throws Exception {
+        if (records == null && workerRecords.get() == null)
+            records = new SampleManifestPrefetch(dataRecordManager, user);
         log.info("Searching Sample table for SampleId ='" + igoId + "'");
-        List<DataRecord> samples = dataRecordManager.queryDataRecords("Sample", "SampleId = '" + igoId + "'", user);
+        List<DataRecord> samples = records().getSamples(igoId);
         if (samples.size() == 0) { // sample not found in sample table
             // TODO REMOVE this special case for 06302_AO and change the igo lims if it is correct
             // igo made a custom 06302_AO sample sheet with samples that are not in LIMS, they have a 06302_X parent
@@ -131,10 +224,11 @@ public class GetSampleManifestTask {
             return new SampleManifest();
         }
         DataRecord sample = samples.get(0);
+        RecordSnapshot sampleFields = records().getFields(sample);
         // fastq is named by sample level field not cmo record in case of a sample swap such as 07951_I_12
-        String origSampleName = sample.getStringVal("OtherSampleId", user);
+        String origSampleName = sampleFields.getString("OtherSampleId");
 
-        String recipe = sample.getStringVal(SampleModel.RECIPE, user);
+        String recipe = sampleFields.getString(SampleModel.RECIPE);
         // for example 07951_S_50_1 is Fingerprinting sample, skip for pipelines for now
         if ("Fingerprinting".equals(recipe))
             return new SampleManifest();
@@ -152,9 +246,9 @@ public class GetSampleManifestTask {
         SampleManifest sampleManifest = setSampleCMOLevelFields(igoId, sample, samples, dataRecordManager, user);
         // set fields specifically required for generating CMO style sample names they use to run pipelines
         sampleManifest.getCmoSampleIdFields().setRecipe(recipe);
-        String naToExtract = sample.getStringVal("NAtoExtract", user);
+        String naToExtract = sampleFields.getString("NAtoExtract");
         sampleManifest.getCmoSampleIdFields().setNaToExtract(naToExtract);
-        String sampleType = sample.getStringVal("ExemplarSampleType", user);
+        String sampleType = sampleFields.getString("ExemplarSampleType");
         sampleManifest.getCmoSampleIdFields().setSampleType(sampleType);
         sampleManifest.setTubeId(getTubeId(sample, user));
 
@@ -165,21 +259,22 @@ public class GetSampleManifestTask {
         addIGOQcRecommendations(sampleManifest, sample, user);
 
         // query Picard QC records for bait set & "Passed" fastqs.
-        List<DataRecord> qcs = sample.getDescendantsOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
+        List<DataRecord> qcs = records().getDescendantsOfType(sample, SeqAnalysisSampleQCModel.DATA_TYPE_NAME);
         Set<String> runPassedQC = new HashSet<>();
         String baitSet = null;
         Long dateBaitSetCreated = Long.MAX_VALUE;
-        for (DataRecord dr : qcs) {
-            String qcResult = dr.getStringVal(SeqAnalysisSampleQCModel.SEQ_QCSTATUS, user);
+        for (DataRecord qc : qcs) {
+            RecordSnapshot dr = records().getFields(qc);
+            String qcResult = dr.getString(SeqAnalysisSampleQCModel.SEQ_QCSTATUS);
             if ("Passed".equals(qcResult)) {
-                String run = dr.getStringVal(SeqAnalysisSampleQCModel.SEQUENCER_RUN_FOLDER, user);
+                String run = dr.getString(SeqAnalysisSampleQCModel.SEQUENCER_RUN_FOLDER);
                 runPassedQC.add(run);
                 log.info("Passed sample & run: " + run);
                 // make sure to get correct baitset when samples are moved downstream i.e. 09687_N_8 WES has 09687_T_1 Methlyseq child
                 // choose earliest created baitset to avoid later baitsets from other requests
-                Long datecreated = dr.getLongVal(SeqAnalysisSampleQCModel.DATE_CREATED, user);
-                if (datecreated < dateBaitSetCreated) {
-                    baitSet = dr.getStringVal(SeqAnalysisSampleQCModel.BAIT_SET, user);
+                Long datecreated = dr.getLong(SeqAnalysisSampleQCModel.DATE_CREATED);
+                if (datecreated != null && datecreated < dateBaitSetCreated) {
+                    baitSet = dr.getString(SeqAnalysisSampleQCModel.BAIT_SET);
                     log.info("Saving baitSet: " + baitSet);
                     dateBaitSetCreated = datecreated;
                 }
@@ -190,7 +285,7 @@ public class GetSampleManifestTask {
             log.warn("Missing bait set: " + igoId);
         sampleManifest.setBaitSet(baitSet);
 
-        List<DataRecord> aliquots = sample.getDescendantsOfType("Sample", user);
+        List<DataRecord> aliquots = records().getDescendantsOfType(sample, "Sample");
         // 07260 Request the first sample are DNA Libraries like 07260_1 so can't just search descendants to find DNA libraries
         aliquots.add(sample);
         Map<String, LibraryDataRecord> dnaLibraries = findDNALibraries(aliquots, sampleManifest.getIgoId(), user);
@@ -225,16 +320,16 @@ public class GetSampleManifestTask {
                 library = getLibraryFields(user, libraryIgoId, aliquot, dnaInputNg);
 
             if (recipe.contains("ACCESS") || recipe.contains("CMO-CH")) {
-                List<DataRecord> indexBarcodes = aliquot.getDescendantsOfType("IndexBarcode", user);
+                List<DataRecord> indexBarcodes = records().getDescendantsOfType(aliquot, "IndexBarcode");
                 if (indexBarcodes == null || indexBarcodes.size() == 0) {
-                    List<DataRecord> parentList = aliquot.getParentsOfType("Sample", user);
-                    indexBarcodes = parentList.get(parentList.size() - 1).getDescendantsOfType("IndexBarcode", user);
+                    List<DataRecord> parentList = records().getParentsOfType(aliquot, "Sample");
+                    indexBarcodes = records().getDescendantsOfType(parentList.get(parentList.size() - 1), "IndexBarcode");
                     log.info("indexBarcodes == null");
                 }
                 if (indexBarcodes != null && indexBarcodes.size() > 0) {
-                    DataRecord bc = indexBarcodes.get(0);
-                    library.setBarcodeId(bc.getStringVal("IndexId", user));
-                    library.setBarcodeIndex(bc.getStringVal("IndexTag", user));
+                    RecordSnapshot bc = records().getFields(indexBarcodes.get(0));
+                    library.setBarcodeId(bc.getString("IndexId"));
+                    library.setBarcodeIndex(bc.getString("IndexTag"));
                     log.info("indexBarcodes != null");
                 }
             }
@@ -289,29 +384,29 @@ public class GetSampleManifestTask {
             Map<String, SampleManifest.Run> runsMap = new HashMap<>();
             // run Mode, runId, flow Cell & Lane Number
             // Flow Cell Lanes are far down the sample/pool hierarchy in LIMS
-            List<DataRecord> reqLanes = aliquot.getDescendantsOfType("FlowCellLane", user);
+            List<DataRecord> reqLanes = records().getDescendantsOfType(aliquot, "FlowCellLane");
             if (reqLanes.isEmpty()) {
-                log.info("No flow cell lane info found for: " + aliquot.getStringVal("SampleId", user));
+                log.info("No flow cell lane info found for: " + records().getFields(aliquot).getString("SampleId"));
                 if (aliquotParent != null)
-                    reqLanes = aliquotParent.getDescendantsOfType("FlowCellLane", user);
+                    reqLanes = records().getDescendantsOfType(aliquotParent, "FlowCellLane");
             }
             for (DataRecord flowCellLane : reqLanes) {
-                Integer laneNum = ((Long) flowCellLane.getLongVal("LaneNum", user)).intValue();
+                Integer laneNum = records().getFields(flowCellLane).getLong("LaneNum").intValue();
                 log.info("Reviewing flow cell lane: " + laneNum);
-                List<DataRecord> flowcell = flowCellLane.getParentsOfType("FlowCell", user);
+                List<DataRecord> flowcell = records().getParentsOfType(flowCellLane, "FlowCell");
                 if (flowcell.size() > 0) {
                     log.info("Getting a flow cell");
-                    List<DataRecord> possibleRun = flowcell.get(0).getParentsOfType("IlluminaSeqExperiment", user);
+                    List<DataRecord> possibleRun = records().getParentsOfType(flowcell.get(0), "IlluminaSeqExperiment");
                     if (possibleRun.size() > 0) {
-                        DataRecord seqExperiment = possibleRun.get(0);
-                        String runMode = seqExperiment.getStringVal("SequencingRunMode", user);
-                        String flowCellId = seqExperiment.getStringVal("FlowcellId", user);
+                        RecordSnapshot seqExperiment = records().getFields(possibleRun.get(0));
+                        String runMode = seqExperiment.getString("SequencingRunMode");
+                        String flowCellId = seqExperiment.getString("FlowcellId");
                         // TODO NOTE: ReadLength blank in LIMS prior to April 2019
-                        String readLength = seqExperiment.getStringVal("ReadLength", user);
+                        String readLength = seqExperiment.getString("ReadLength");
 
                         // TODO function to convert Illumna yymmdd date as yyyy-MM-dd ?
                         // example: /ifs/pitt/161102_PITT_0089_AHFG3GBBXX/ or /ifs/lola/150814_LOLA_1298_BC7259ACXX/
-                        String run = seqExperiment.getStringVal("SequencerRunFolder", user);
+                        String run = seqExperiment.getString("SequencerRunFolder");
                         if (run == null || "".equals(run)) { // 04553_I_33 has empty SequencerRunFolder
                             log.warn("Skipping run: " + flowCellId);
                             continue;
@@ -329,7 +424,8 @@ public class GetSampleManifestTask {
                         } else { // lookup fastq paths for this run, currently making extra queries for 06260_N_9 KIM & others
                             //06938_J_86 was demuxed by lane on 2017-06-16 16:49:08
                             List<String> fastqs = FastQPathFinder.search(runId, origSampleName, sampleManifest.getIgoId(), true, runPassedQC);
-                            if (fastqs == null && aliquot.getLongVal("DateCreated", user) < 1455132132000L) { // try search again with pre-Jan 2016 naming convention, 06184_4
+                            Long aliquotCreated = records().getFields(aliquot).getLong("DateCreated");
+                            if (fastqs == null && aliquotCreated != null && aliquotCreated < 1455132132000L) { // try search again with pre-Jan 2016 naming convention, 06184_4
                                 log.info("Searching fastq database again for pre-Jan. 2016 sample.");
                                 fastqs = FastQPathFinder.search(runId, origSampleName, null, false, runPassedQC);
                             }
@@ -576,21 +672,22 @@ public class GetSampleManifestTask {
     private Map<String, LibraryDataRecord> findDNALibraries(List<DataRecord> aliquots, String baseIGOId, User user) throws Exception {
         Map<String, DataRecord> dnaLibraries = new HashMap<>();
         for (DataRecord aliquot : aliquots) {
-            String sampleType = aliquot.getStringVal("ExemplarSampleType", user);
+            RecordSnapshot aliquotFields = records().getFields(aliquot);
+            String sampleType = aliquotFields.getString("ExemplarSampleType");
             // VERY IMPORTANT, if no DNA LIBRARY NO RESULT generated
             if ("DNA Library".equals(sampleType)) {
-                String libraryIgoId = aliquot.getStringVal("SampleId", user);
+                String libraryIgoId = aliquotFields.getString("SampleId");
                 if (libraryIgoId.startsWith("Pool"))
                     continue;
 
-                String sampleStatus = aliquot.getStringVal("ExemplarSampleStatus", user);
+                String sampleStatus = aliquotFields.getString("ExemplarSampleStatus");
                 // 05684_M_2 has a returned to user library, ignore it.
                 if (sampleStatus != null && (sampleStatus.contains("Failed") || sampleStatus.contains("Returned"))) {
                     log.info("Skipping failed or returned library: " + libraryIgoId);
                     continue;
                 }
 
-                String recipe = aliquot.getStringVal(SampleModel.RECIPE, user);
+                String recipe = aliquotFields.getString(SampleModel.RECIPE);
                 if ("Fingerprinting".equals(recipe)) // for example 07951_AD_1_1
                     continue;
 
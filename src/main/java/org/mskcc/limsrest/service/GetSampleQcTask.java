@@ -3,12 +3,17 @@ package org.mskcc.limsrest.service;
 import com.velox.api.datarecord.DataRecord;
 import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.user.User;
+import com.velox.api.util.ServerException;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.DeadlineExceededException;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
+import org.mskcc.limsrest.util.LimsQuery;
 import org.mskcc.limsrest.util.Messages;
+import org.mskcc.limsrest.util.RecordSnapshot;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
@@ -18,9 +23,9 @@ import org.springframework.web.client.RestTemplate;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.rmi.RemoteException;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static org.mskcc.limsrest.util.Utils.runAndCatchNpe;
 
@@ -45,18 +50,17 @@ public class GetSampleQcTask {
             User user = vConn.getUser();
             DataRecordManager dataRecordManager = vConn.getDataRecordManager();
 
-            String projects = Stream.of(projectList).collect(Collectors.joining("','", "'", "'"));
-            log.info("Project " + projects);
-            List<DataRecord> requestList = dataRecordManager.queryDataRecords("Request", "RequestId in (" + projects + ")", user);
+            log.info("Project " + Arrays.toString(projectList));
+            List<DataRecord> requestList = LimsQuery.of("Request").whereIn("RequestId", Arrays.asList(projectList)).list(conn);
             HashMap<String, String>  alt2base = new HashMap<>(); // AltId->SampleId
             for (DataRecord r : requestList) {
                 DataRecord[] baseSamples = r.getChildrenOfType("Sample", user);
-                for (DataRecord bs : baseSamples){
-                    try {
-                        alt2base.put(bs.getStringVal("AltId", user), bs.getStringVal("SampleId", user));
-                    } catch (NullPointerException npe){
+                for (RecordSnapshot bs : RecordSnapshot.of(Arrays.asList(baseSamples), dataRecordManager, user)){
+                    if (bs.getString("AltId") == null || bs.getString("SampleId") == null) {
                         log.info("Problem trying to populate base id mapping");
+                        continue;
                     }
+                    alt2base.put(bs.getString("AltId"), bs.getString("SampleId"));
                 }
 
                 String project = r.getStringVal("RequestId", user);
@@ -71,91 +75,80 @@ public class GetSampleQcTask {
                 if (qcRecords.size() == 0){
                     qcRecords = r.getDescendantsOfType("SeqAnalysisSampleQC", user);
                 }
-                for (DataRecord qc : qcRecords) {
+
+                // resolve parents, base samples and sequencing requirements of all QC records together
+                QcAncestorResolver ancestors = new QcAncestorResolver(dataRecordManager, user);
+                List<RecordSnapshot> qcFields = RecordSnapshot.of(qcRecords, dataRecordManager, user);
+                List<RecordSnapshot> parentSamples = ancestors.getParentSamples(qcRecords);
+                Map<Long, RecordSnapshot> samples = new LinkedHashMap<>();
+                for (RecordSnapshot parentSample : parentSamples) {
+                    if (parentSample != null)
+                        samples.putIfAbsent(parentSample.getRecordId(), parentSample);
+                }
+                List<RecordSnapshot> noAltId = samples.values().stream()
+                        .filter(s -> "".equals(s.getString("AltId")))
+                        .collect(Collectors.toList());
+                Map<Long, String> baseSampleIds = ancestors.getBaseSampleIds(noAltId);
+                Map<Long, RecordSnapshot> requirements = ancestors.getSeqRequirements(samples.values());
+                List<DataRecord> sampleRecords = samples.values().stream().map(RecordSnapshot::getRecord).collect(Collectors.toList());
+                Map<Long, List<Map<String, Object>>> childSamples = getFieldsForChildren(dataRecordManager, sampleRecords, "Sample", user);
+                Map<Long, List<Map<String, Object>>> qcData = getFieldsForChildren(dataRecordManager, sampleRecords, "QCDatum", user);
+                Map<Long, List<Map<String, Object>>> protocols = getFieldsForChildren(dataRecordManager, sampleRecords, "DNALibraryPrepProtocol2", user);
+                Map<Long, List<Map<String, Object>>> assignments = getFieldsForChildren(dataRecordManager, sampleRecords, "MolarConcentrationAssignment", user);
+
+                for (int i = 0; i < qcRecords.size(); i++) {
+                    Deadline.check();
                     log.info("Getting QC Site records for sample.");
                     SampleSummary ss = new SampleSummary();
-                    DataRecord parentSample = qc.getParentsOfType("Sample", user).get(0);
-                    SampleQcSummary qcSummary = annotateQcSummary(qc, user);
+                    RecordSnapshot parentSample = parentSamples.get(i);
+                    SampleQcSummary qcSummary = annotateQcSummary(qcFields.get(i).getFields());
                     if (parentSample != null) {
-                        annotateSampleSummary(ss, parentSample, user);
-                        try {
-                            if (!parentSample.getStringVal("AltId", user).equals("")){
-                                ss.addBaseId(alt2base.get(parentSample.getStringVal("AltId", user)));
-                                log.info(parentSample.getStringVal("AltId", user));
-                                log.info(alt2base.get(parentSample.getStringVal("AltId", user)));
-                            } else{
-                                DataRecord searchSample = parentSample;
-                                boolean canSearch = true;
-                                while (searchSample.getParentsOfType("Request", user).size() == 0 && canSearch){
-                                    List<DataRecord> searchParents = searchSample.getParentsOfType("Sample", user);
-                                    if(searchParents.size() == 0){
-                                        canSearch = false;
-                                    } else{
-                                        searchSample = searchParents.get(0);
-                                    }
-                                }
-                                ss.addBaseId(searchSample.getStringVal("SampleId", user));
-                            }
-                        } catch (Exception e){
+                        long sampleRecordId = parentSample.getRecordId();
+                        annotateSampleSummary(ss, parentSample.getFields());
+                        String altId = parentSample.getString("AltId");
+                        if (altId == null) {
                             log.info("Problem trying to access base id mapping");
+                        } else if (!altId.equals("")){
+                            ss.addBaseId(alt2base.get(altId));
+                            log.info(altId);
+                            log.info(alt2base.get(altId));
+                        } else{
+                            ss.addBaseId(baseSampleIds.get(sampleRecordId));
                         }
-                        DataRecord[] childSamples = parentSample.getChildrenOfType("Sample", user);
-                        if (childSamples.length > 0){
-                            ss.setInitialPool(childSamples[0].getStringVal("SampleId", user));
+                        List<Map<String, Object>> children = childSamples.get(sampleRecordId);
+                        if (children.size() > 0){
+                            ss.setInitialPool((String) children.get(0).get("SampleId"));
                         }
-                        DataRecord[] qcData = parentSample.getChildrenOfType("QCDatum", user);
                         long created = -1;
-                        for (DataRecord datum : qcData){
-                            Map<String, Object> qcFields = datum.getFields(user);
-                            if (qcFields.containsKey("MapToSample") && (boolean)qcFields.get("MapToSample") && (long)qcFields.get("DateCreated") > created){
-                                qcSummary.setQcControl((Double)qcFields.get("CalculatedConcentration"));
-                                qcSummary.setQcUnits((String)qcFields.get("ConcentrationUnits"));
-                                created = (Long)qcFields.get("DateCreated");
-                            }
-                            if (qcFields.containsKey("DatumType") && qcFields.get("DatumType").equals("Quant-it")){
-                                qcSummary.setQuantIt((Double)qcFields.get("CalculatedConcentration"));
-                                qcSummary.setQuantUnits((String)qcFields.get("ConcentrationUnits"));
+                        for (Map<String, Object> qcDatumFields : qcData.get(sampleRecordId)){
+                            if (qcDatumFields.containsKey("MapToSample") && (boolean)qcDatumFields.get("MapToSample") && (long)qcDatumFields.get("DateCreated") > created){
+                                qcSummary.setQcControl((Double)qcDatumFields.get("CalculatedConcentration"));
+                                qcSummary.setQcUnits((String)qcDatumFields.get("ConcentrationUnits"));
+                                created = (Long)qcDatumFields.get("DateCreated");
                             }
-                        }
-                        DataRecord[] requirements = parentSample.getChildrenOfType("SeqRequirement", user);
-
-                        Deque<DataRecord> queue = new LinkedList<>();
-                        queue.addLast(parentSample);
-                        Set<DataRecord> visited = new HashSet<>();
-                        while ((requirements.length == 0) &&  !queue.isEmpty()) {
-                            DataRecord current = queue.removeFirst();
-                            requirements = current.getChildrenOfType("SeqRequirement", user);
-                            List<DataRecord> parents = current.getParentsOfType("Sample", user);
-                            for (DataRecord parent : parents){
-                                if (!visited.contains(parent)){
-                                    visited.add(parent);
-                                    queue.addLast(parent);
-                                }
+                            if (qcDatumFields.containsKey("DatumType") && qcDatumFields.get("DatumType").equals("Quant-it")){
+                                qcSummary.setQuantIt((Double)qcDatumFields.get("CalculatedConcentration"));
+                                qcSummary.setQuantUnits((String)qcDatumFields.get("ConcentrationUnits"));
                             }
                         }
-                        if (requirements.length > 0){
-                            try {
-                                ss.setReadNumber((long)requirements[0].getDoubleVal("RequestedReads", user));
-                            } catch(NullPointerException npe){
-                                ss.setReadNumber(Long.valueOf(0));
-                            }
-                            try {
-                                ss.setCoverage(requirements[0].getIntegerVal("CoverageTarget", user));
-                            } catch (NullPointerException npe){
-                                ss.setCoverage(0);
-                            }
+                        RecordSnapshot requirement = requirements.get(sampleRecordId);
+                        if (requirement != null){
+                            Double requestedReads = requirement.getDouble("RequestedReads");
+                            ss.setReadNumber(requestedReads == null ? 0L : requestedReads.longValue());
+                            Long coverageTarget = requirement.getLong("CoverageTarget");
+                            ss.setCoverage(coverageTarget == null ? 0 : coverageTarget.intValue());
                         }
 
                         // calculate yield trying to find a Protocol Record to get elution volume and use corresponding sample's concentration to multiply for yield
                         // Jira IGOWEB-1250 - concentration calculation is not 100% correct for all cases but nobody has explained what needs to change
                         try {
-                            DataRecord[] protocols = parentSample.getChildrenOfType("DNALibraryPrepProtocol2", user);
-                            if (protocols.length > 0){
-                                ss.setYield(protocols[0].getDoubleVal("ElutionVol", user) * parentSample.getDoubleVal("Concentration", user));
+                            List<Map<String, Object>> sampleProtocols = protocols.get(sampleRecordId);
+                            if (sampleProtocols.size() > 0){
+                                ss.setYield((Double) sampleProtocols.get(0).get("ElutionVol") * parentSample.getDouble("Concentration"));
                             } else{
-                                DataRecord[] assignments = parentSample.getChildrenOfType("MolarConcentrationAssignment", user);
-                                if(assignments.length > 0){
-                                    ss.setYield(assignments[0].getDoubleVal("Concentration", user));
+                                List<Map<String, Object>> sampleAssignments = assignments.get(sampleRecordId);
+                                if(sampleAssignments.size() > 0){
+                                    ss.setYield((Double) sampleAssignments.get(0).get("Concentration"));
                                 }
                             }
                         } catch (NullPointerException e){
@@ -176,6 +169,8 @@ public class GetSampleQcTask {
 
                 rss.add(rs);
             }
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Throwable e) {
             log.info(e.getMessage(), e);
             RequestSummary rs = RequestSummary.errorMessage(e.getMessage());
@@ -227,10 +222,19 @@ public class GetSampleQcTask {
     }
 
     public static SampleQcSummary annotateQcSummary(DataRecord qc, User user) {
-        SampleQcSummary qcSummary = new SampleQcSummary();
         try {
-            Map<String, Object> qcFields = qc.getFields(user);
+            return annotateQcSummary(qc.getFields(user));
+        } catch (Throwable e) {
+            log.info(e.getMessage(), e);
+            SampleQcSummary qcSummary = new SampleQcSummary();
+            qcSummary.setSampleName(Messages.ERROR_IN + " Annotation:" + e.getMessage());
+            return qcSummary;
+        }
+    }
 
+    public static SampleQcSummary annotateQcSummary(Map<String, Object> qcFields) {
+        SampleQcSummary qcSummary = new SampleQcSummary();
+        try {
             String qcStatus = (String) qcFields.get("SeqQCStatus");
             log.info("Building QC record with status: " + qcStatus);
             //qcFields.forEach((key, value) -> System.out.println(key + ":" + value));
@@ -282,6 +286,22 @@ public class GetSampleQcTask {
         return qcSummary;
     }
 
+    /**
+     * Fields of the children of the given type of each record with one call to the LIMS, by record id of the parent
+     */
+    private static Map<Long, List<Map<String, Object>>> getFieldsForChildren(DataRecordManager drm, List<DataRecord> records,
+                                                                             String dataType, User user)
+            throws ServerException, RemoteException {
+        Map<Long, List<Map<String, Object>>> childFields = new HashMap<>();
+        if (records.isEmpty())
+            return childFields;
+        List<List<Map<String, Object>>> fields = drm.getFieldsForChildrenOfType(records, dataType, user);
+        for (int i = 0; i < records.size(); i++) {
+            childFields.put(records.get(i).getRecordId(), fields.get(i));
+        }
+        return childFields;
+    }
+
     public static void annotateRequestSummary(RequestSummary rs, DataRecord request, User user) {
         try {
             Map<String, Object> requestFields = request.getFields(user);
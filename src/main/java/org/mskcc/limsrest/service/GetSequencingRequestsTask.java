@@ -13,6 +13,7 @@ import com.velox.sloan.cmo.recmodels.IlluminaSeqProtocolModel;
 import com.velox.sloan.cmo.recmodels.RequestModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.util.LimsQuery;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.rmi.RemoteException;
@@ -51,19 +52,18 @@ public class GetSequencingRequestsTask {
      */
     private List<String> getSequencingFoldersOfRequest(DataRecordManager drm, DataRecord request, User user) {
         List<DataRecord> seqExperiments = getDescendantsOfType(request, IlluminaSeqProtocolModel.DATA_TYPE_NAME, user);
-        List<String> experimentIds = seqExperiments.stream()
-                .map((exp) -> {
-                    Long expId = getRecordLongValue(exp, IlluminaSeqProtocolModel.EXPERIMENT_RECORD_ID, user);
-                    return expId.toString(); })
+        List<Long> experimentIds = seqExperiments.stream()
+                .map((exp) -> getRecordLongValue(exp, IlluminaSeqProtocolModel.EXPERIMENT_RECORD_ID, user))
                 .distinct()
                 .collect(Collectors.toList());
-        String query = String.format("%s in (%s)", IlluminaSeqExperimentModel.RECORD_ID, String.join(",", experimentIds));
         List<DataRecord> illuminaSeqExperiments = new ArrayList<>();
         try {
-            illuminaSeqExperiments = drm.queryDataRecords(IlluminaSeqExperimentModel.DATA_TYPE_NAME, query, user);
+            illuminaSeqExperiments = LimsQuery.of(IlluminaSeqExperimentModel.DATA_TYPE_NAME)
+                    .whereIn(IlluminaSeqExperimentModel.RECORD_ID, experimentIds)
+                    .list(drm, user);
         } catch (IoError | RemoteException | NotFound e) {
-            log.error(String.format("Failed to query DataRecords w/ query: '%s' on %s", query,
-                    IlluminaSeqExperimentModel.DATA_TYPE_NAME));
+            log.error(String.format("Failed to query DataRecords w/ %s in %s on %s", IlluminaSeqExperimentModel.RECORD_ID,
+                    experimentIds, IlluminaSeqExperimentModel.DATA_TYPE_NAME));
             return new ArrayList<>();
         }
         List<String> runFolders = illuminaSeqExperiments.stream()
@@ -103,10 +103,9 @@ public class GetSequencingRequestsTask {
             }
 
             log.info("Found requests that need to be topped up: " + requestIDs.toString());
-            String s = "\"" + String.join("\", \"", requestIDs) + "\"";
-            query = "REQUESTID IN (" + s + ")";
-            log.info("Sending requests query: " + query);
-            List<DataRecord> requestRecords = drm.queryDataRecords(RequestModel.DATA_TYPE_NAME, query, user);
+            List<DataRecord> requestRecords = LimsQuery.of(RequestModel.DATA_TYPE_NAME)
+                    .whereIn("REQUESTID", requestIDs)
+                    .list(drm, user);
             List<RequestSummary> requests = new ArrayList<>();
             for (DataRecord request : requestRecords) {
                 String requestId = getRecordStringValue(request, RequestModel.REQUEST_ID, user);
@@ -4,7 +4,6 @@ import com.velox.api.datarecord.DataRecord;
 import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.datarecord.IoError;
 import com.velox.api.datarecord.NotFound;
-import com.velox.api.servermanager.PickListManager;
 import com.velox.api.user.User;
 import com.velox.api.util.ServerException;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
@@ -16,6 +15,8 @@ import org.apache.commons.logging.LogFactory;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.PickListCache;
 import org.mskcc.limsrest.service.sampletracker.WESSampleData;
 
 import javax.net.ssl.*;
@@ -52,15 +53,17 @@ public class GetWESSampleDataTask {
     private Log log = LogFactory.getLog(GetWESSampleDataTask.class);
     private String timestamp;
     private ConnectionLIMS conn;
+    private PickListCache pickLists;
     private User user;
     DataRecordManager dataRecordManager;
 
     private List<String> VALID_RECIPES;
     private List<String> VALID_REQUEST_TYPES;
 
-    public GetWESSampleDataTask(String timestamp, ConnectionLIMS conn) {
+    public GetWESSampleDataTask(String timestamp, ConnectionLIMS conn, PickListCache pickLists) {
         this.timestamp = timestamp;
         this.conn = conn;
+        this.pickLists = pickLists;
     }
 
     public List<WESSampleData> execute() {
@@ -70,10 +73,9 @@ public class GetWESSampleDataTask {
             VeloxConnection vConn = conn.getConnection();
             user = vConn.getUser();
             dataRecordManager = vConn.getDataRecordManager();
-            PickListManager pickListManager = vConn.getDataMgmtServer().getPickListManager(user);
-            VALID_RECIPES = pickListManager.getPickListConfig("Whole-Exome Recipes for Sample Tracker").getEntryList();
+            VALID_RECIPES = pickLists.get("Whole-Exome Recipes for Sample Tracker");
             log.info(VALID_RECIPES);
-            VALID_REQUEST_TYPES = pickListManager.getPickListConfig("Whole-Exome Request Types").getEntryList();
+            VALID_REQUEST_TYPES = pickLists.get("Whole-Exome Request Types");
             log.info(" Starting GetWesSample task using timestamp " + timestamp);
             List<DataRecord> dmpTrackerRecords = new ArrayList<>();
             try {
@@ -90,6 +92,7 @@ public class GetWESSampleDataTask {
             if (!dmpTrackerRecords.isEmpty()) {
                 int totalProcessed = 0;
                 for (DataRecord dmpTrackRec : dmpTrackerRecords) {
+                    Deadline.check();
                     List<DataRecord> sampleCmoInfoRecs = new ArrayList<>();
                     if (dmpTrackRec.getValue("i_StudySampleIdentifierInvesti", user) != null) {
                         sampleCmoInfoRecs = dataRecordManager.queryDataRecords("SampleCMOInfoRecords", "UserSampleID = '" + dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti", user) + "'", user);
@@ -11,7 +11,10 @@ import com.velox.sapioutils.client.standalone.VeloxStandalone;
 import com.velox.sapioutils.client.standalone.VeloxStandaloneManagerContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.ExecutionLane;
+import org.mskcc.limsrest.TaskPriority;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
 import org.mskcc.limsrest.util.Messages;
 
@@ -46,11 +49,24 @@ public abstract class LimsTask implements VeloxExecutable<Object>, Callable<Obje
         this.p = p;
     }
 
+    /**
+     * Tasks that modify LIMS data must override this to run in the write lane.
+     */
+    public ExecutionLane getExecutionLane() {
+        return ExecutionLane.READ;
+    }
+
+    /**
+     * Tasks a user is actively waiting on override this to run ahead of bulk work.
+     */
+    public TaskPriority getPriority() {
+        return TaskPriority.BATCH;
+    }
+
     @Override
     public Object call() throws Exception {
-        VeloxConnection velox_conn = p.getConnection();
-        velox_conn.open();
-        try {
+        try (ConnectionLIMS.Lease lease = p.checkout(getExecutionLane())) {
+            VeloxConnection velox_conn = lease.getConnection();
             if (velox_conn.isConnected()) {
                 user = velox_conn.getUser();
                 dataRecordManager = velox_conn.getDataRecordManager();
@@ -60,8 +76,6 @@ public abstract class LimsTask implements VeloxExecutable<Object>, Callable<Obje
                 log.error("the lims task has a null connection");
             }
             return VeloxStandalone.run(velox_conn, this);
-        } finally {
-            velox_conn.close();
         }
     }
 
@@ -15,8 +15,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.tomcat.jni.Time;
 import org.mskcc.domain.sample.*;
+import org.mskcc.limsrest.ExecutionLane;
+import org.mskcc.limsrest.IndexBarcodeReference;
+import org.mskcc.limsrest.TaskPriority;
 import org.mskcc.limsrest.service.promote.BankedSampleToSampleConverter;
 import org.mskcc.limsrest.util.Constants;
+import org.mskcc.limsrest.util.LimsQuery;
 import org.mskcc.limsrest.util.Messages;
 import org.mskcc.limsrest.util.Utils;
 import org.springframework.http.HttpHeaders;
@@ -73,6 +77,7 @@ public class PromoteBanked extends LimsTask {
     private static final String ILABS_CONFIG = "/srv/www/sapio/lims/lims-scripts/ilabs/ilabs.yml";
     private static final String OUTBOX = "/pskis34/vialelab/LIMS/AutomatedEmails/teamworkCard/";
     private boolean iLabAbsent = false;
+    private IndexBarcodeReference indexBarcodes = new IndexBarcodeReference();
 
     public PromoteBanked() {
     }
@@ -87,6 +92,23 @@ public class PromoteBanked extends LimsTask {
         this.dryrun = dryrun;
     }
 
+    /**
+     * Uses the shared, already loaded barcodes instead of reading them for this promote.
+     */
+    public void setIndexBarcodes(IndexBarcodeReference indexBarcodes) {
+        this.indexBarcodes = indexBarcodes;
+    }
+
+    @Override
+    public ExecutionLane getExecutionLane() {
+        return ExecutionLane.WRITE;
+    }
+
+    @Override
+    public TaskPriority getPriority() {
+        return TaskPriority.INTERACTIVE;
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @Override
     public ResponseEntity<String> execute(VeloxConnection conn) {
@@ -118,17 +140,12 @@ public class PromoteBanked extends LimsTask {
 
             try {
                 //GET ALL BANKED SAMPLES
-                StringBuffer sb = new StringBuffer();
-                for (int i = 0; i < bankedIds.length - 1; i++) {
-                    sb.append("'");
-                    sb.append(bankedIds[i]);
-                    sb.append("',");
-                }
-                sb.append("'");
-                sb.append(bankedIds[bankedIds.length - 1]);
-                sb.append("'");
-
-                List<DataRecord> bankedList = dataRecordManager.queryDataRecords("BankedSample", "RecordId in (" + sb.toString() + ") order by transactionId, rowIndex", user);
+                List<DataRecord> bankedList = LimsQuery.of("BankedSample")
+                        .whereIn("RecordId", Arrays.asList(bankedIds))
+                        .orderBy("transactionId, rowIndex")
+                        // one query, the promote order is kept across all banked samples
+                        .withChunkSize(Math.max(bankedIds.length, 1))
+                        .list(dataRecordManager, user);
                 SloanCMOUtils util = new SloanCMOUtils(managerContext);
 
                 //GET INDEXES IF MATERIAL IS INDEX MATERIAL
@@ -142,13 +159,7 @@ public class PromoteBanked extends LimsTask {
                 }
                 log.info((indexNeeded ? "" : "No ") + "Index needed.");
                 if (indexNeeded) {
-
-                    List<DataRecord> validBarcodeList = dataRecordManager.queryDataRecords("IndexAssignment", "IndexType != " +
-                            "'IDT_TRIM'", user);
-                    for (DataRecord knownBarcode : validBarcodeList) {
-                        barcodeId2Sequence.put(knownBarcode.getStringVal("IndexId", user), knownBarcode.getStringVal
-                                ("IndexTag", user));
-                    }
+                    barcodeId2Sequence.putAll(indexBarcodes.get(dataRecordManager, user).getIndexTags());
                 }
 
                 DataRecord req = null;
@@ -224,7 +235,7 @@ public class PromoteBanked extends LimsTask {
                 log.info("Using request: " + req.getStringVal(("RequestId"), user));
 
                 if (bankedList.size() == 0) {
-                    throw new LimsException("No banked sample with ids '" + sb.toString() + "'");
+                    throw new LimsException("No banked sample with ids '" + String.join(",", bankedIds) + "'");
                 }
                 DataRecord[] existentSamples = req.getChildrenOfType("Sample", user);
                 HashSet<String> existentIds = new HashSet<>();
@@ -251,8 +262,8 @@ public class PromoteBanked extends LimsTask {
                     bankedSample.setDataField("Promoted", Boolean.TRUE, user);
                     bankedSample.setDataField("RequestId", requestId, user);
                 }
-                log.info(igoUser + "  promoted the banked samples " + sb.toString());
-                dataRecordManager.storeAndCommit(igoUser + "  promoted the banked samples " + sb.toString() + "into " + requestId, null, user);
+                log.info(igoUser + "  promoted the banked samples " + String.join(",", bankedIds));
+                dataRecordManager.storeAndCommit(igoUser + "  promoted the banked samples " + String.join(",", bankedIds) + "into " + requestId, null, user);
 
                 MultiValueMap<String, String> headers = new HttpHeaders();
                 headers.add(Constants.WARNINGS, getErrors());
@@ -393,6 +404,12 @@ public class PromoteBanked extends LimsTask {
                 }
                 plate.addChild(promotedSampleRecord, user);
             }
+            if (barcodeId != null && !barcodeId.equals("") && !barcodeId2Sequence.containsKey(barcodeId)) {
+                // the shared barcodes may predate a barcode just added to the LIMS
+                IndexBarcodeReference.IndexBarcode added = indexBarcodes.get(barcodeId, dataRecordManager, user);
+                if (added != null)
+                    barcodeId2Sequence.put(barcodeId, added.getIndexTag());
+            }
             if (barcodeId != null && !barcodeId.equals("") && !barcodeId2Sequence.containsKey(barcodeId)) {
                 throw new LimsException("The LIMS does not know about the barcode " + barcodeId + ". Please make sure" +
                         " to the list of barcodes is up-to-date");
@@ -0,0 +1,219 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.datarecord.IoError;
+import com.velox.api.user.User;
+import com.velox.api.util.ServerException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.util.RecordSnapshot;
+
+import java.rmi.RemoteException;
+import java.util.*;
+
+/**
+ * Resolves the ancestors {@link GetSampleQcTask} needs for all SeqAnalysisSampleQC records of a project together.
+ * Every lookup walks up the Sample hierarchy one level at a time for all records at once, so the number of calls to
+ * the LIMS grows with the depth of the hierarchy rather than with the number of samples.
+ */
+public class QcAncestorResolver {
+    private static Log log = LogFactory.getLog(QcAncestorResolver.class);
+
+    private final DataRecordManager drm;
+    private final User user;
+    // Sample parents by record id, shared by the base sample and SeqRequirement searches
+    private final Map<Long, List<DataRecord>> sampleParents = new HashMap<>();
+
+    public QcAncestorResolver(DataRecordManager drm, User user) {
+        this.drm = drm;
+        this.user = user;
+    }
+
+    /**
+     * @return first Sample parent of each QC record, null for a record without one
+     */
+    public List<RecordSnapshot> getParentSamples(List<DataRecord> qcRecords)
+            throws IoError, ServerException, RemoteException {
+        List<RecordSnapshot> parentSamples = new ArrayList<>(qcRecords.size());
+        if (qcRecords.isEmpty())
+            return parentSamples;
+        List<List<DataRecord>> parents = drm.getParentsOfType(qcRecords, "Sample", user);
+        List<DataRecord> firstParents = new ArrayList<>();
+        for (List<DataRecord> qcParents : parents) {
+            if (!qcParents.isEmpty())
+                firstParents.add(qcParents.get(0));
+        }
+        Map<Long, RecordSnapshot> snapshots = snapshotsById(firstParents);
+        for (List<DataRecord> qcParents : parents) {
+            parentSamples.add(qcParents.isEmpty() ? null : snapshots.get(qcParents.get(0).getRecordId()));
+        }
+        return parentSamples;
+    }
+
+    /**
+     * Follows the first Sample parent of each sample up to the sample that is a child of a Request.
+     *
+     * @return SampleId of that base sample by record id of the input sample
+     */
+    public Map<Long, String> getBaseSampleIds(Collection<RecordSnapshot> samples)
+            throws IoError, ServerException, RemoteException {
+        Map<Long, DataRecord> baseSamples = new HashMap<>();
+        Map<Long, DataRecord> searching = new LinkedHashMap<>();
+        for (RecordSnapshot sample : samples) {
+            searching.put(sample.getRecordId(), sample.getRecord());
+        }
+        int depth = 0;
+        while (!searching.isEmpty()) {
+            Deadline.check();
+            depth++;
+            List<DataRecord> current = unique(searching.values());
+            List<List<DataRecord>> requests = drm.getParentsOfType(current, "Request", user);
+            List<DataRecord> belowRequest = new ArrayList<>();
+            for (int i = 0; i < current.size(); i++) {
+                if (requests.get(i).isEmpty())
+                    belowRequest.add(current.get(i));
+            }
+            Map<Long, List<DataRecord>> parents = getSampleParents(belowRequest);
+
+            Map<Long, DataRecord> next = new LinkedHashMap<>();
+            for (Map.Entry<Long, DataRecord> search : searching.entrySet()) {
+                List<DataRecord> searchParents = parents.getOrDefault(search.getValue().getRecordId(), Collections.emptyList());
+                if (searchParents.isEmpty())
+                    baseSamples.put(search.getKey(), search.getValue());
+                else
+                    next.put(search.getKey(), searchParents.get(0));
+            }
+            searching = next;
+        }
+        log.info(String.format("Resolved base samples of %d samples in %d levels", samples.size(), depth));
+
+        Map<Long, RecordSnapshot> snapshots = snapshotsById(baseSamples.values());
+        Map<Long, String> baseSampleIds = new HashMap<>();
+        for (Map.Entry<Long, DataRecord> base : baseSamples.entrySet()) {
+            baseSampleIds.put(base.getKey(), snapshots.get(base.getValue().getRecordId()).getString("SampleId"));
+        }
+        return baseSampleIds;
+    }
+
+    /**
+     * Breadth first search from each sample through all of its Sample ancestors for the closest sample with a
+     * SeqRequirement child.
+     *
+     * @return first SeqRequirement child of that sample by record id of the input sample, missing if there is none
+     */
+    public Map<Long, RecordSnapshot> getSeqRequirements(Collection<RecordSnapshot> samples)
+            throws IoError, ServerException, RemoteException {
+        Map<Long, List<DataRecord>> requirements = new HashMap<>();
+        Map<Long, List<DataRecord>> frontiers = new LinkedHashMap<>();
+        Map<Long, Set<Long>> visited = new HashMap<>();
+        for (RecordSnapshot sample : samples) {
+            frontiers.put(sample.getRecordId(), Collections.singletonList(sample.getRecord()));
+            visited.put(sample.getRecordId(), new HashSet<>());
+        }
+
+        Map<Long, DataRecord> found = new HashMap<>();
+        while (!frontiers.isEmpty()) {
+            Deadline.check();
+            List<DataRecord> unqueried = new ArrayList<>();
+            for (DataRecord sample : unique(flatten(frontiers.values()))) {
+                if (!requirements.containsKey(sample.getRecordId()))
+                    unqueried.add(sample);
+            }
+            if (!unqueried.isEmpty()) {
+                List<List<DataRecord>> children = drm.getChildrenOfType(unqueried, "SeqRequirement", user);
+                for (int i = 0; i < unqueried.size(); i++) {
+                    requirements.put(unqueried.get(i).getRecordId(), children.get(i));
+                }
+            }
+
+            Map<Long, List<DataRecord>> searching = new LinkedHashMap<>();
+            for (Map.Entry<Long, List<DataRecord>> frontier : frontiers.entrySet()) {
+                DataRecord requirement = null;
+                for (DataRecord sample : frontier.getValue()) {
+                    List<DataRecord> sampleRequirements = requirements.get(sample.getRecordId());
+                    if (!sampleRequirements.isEmpty()) {
+                        requirement = sampleRequirements.get(0);
+                        break;
+                    }
+                }
+                if (requirement != null)
+                    found.put(frontier.getKey(), requirement);
+                else
+                    searching.put(frontier.getKey(), frontier.getValue());
+            }
+
+            Map<Long, List<DataRecord>> parents = getSampleParents(unique(flatten(searching.values())));
+            Map<Long, List<DataRecord>> next = new LinkedHashMap<>();
+            for (Map.Entry<Long, List<DataRecord>> search : searching.entrySet()) {
+                Set<Long> seen = visited.get(search.getKey());
+                List<DataRecord> level = new ArrayList<>();
+                for (DataRecord sample : search.getValue()) {
+                    for (DataRecord parent : parents.get(sample.getRecordId())) {
+                        if (seen.add(parent.getRecordId()))
+                            level.add(parent);
+                    }
+                }
+                if (!level.isEmpty())
+                    next.put(search.getKey(), level);
+            }
+            frontiers = next;
+        }
+
+        Map<Long, RecordSnapshot> snapshots = snapshotsById(found.values());
+        Map<Long, RecordSnapshot> seqRequirements = new HashMap<>();
+        for (Map.Entry<Long, DataRecord> requirement : found.entrySet()) {
+            seqRequirements.put(requirement.getKey(), snapshots.get(requirement.getValue().getRecordId()));
+        }
+        return seqRequirements;
+    }
+
+    /**
+     * @return Sample parents of the given samples only, so a sample the caller did not ask about is never walked past
+     */
+    private Map<Long, List<DataRecord>> getSampleParents(List<DataRecord> samples)
+            throws IoError, ServerException, RemoteException {
+        List<DataRecord> unqueried = new ArrayList<>();
+        for (DataRecord sample : samples) {
+            if (!sampleParents.containsKey(sample.getRecordId()))
+                unqueried.add(sample);
+        }
+        if (!unqueried.isEmpty()) {
+            List<List<DataRecord>> parents = drm.getParentsOfType(unqueried, "Sample", user);
+            for (int i = 0; i < unqueried.size(); i++) {
+                sampleParents.put(unqueried.get(i).getRecordId(), parents.get(i));
+            }
+        }
+        Map<Long, List<DataRecord>> parents = new HashMap<>();
+        for (DataRecord sample : samples) {
+            parents.put(sample.getRecordId(), sampleParents.get(sample.getRecordId()));
+        }
+        return parents;
+    }
+
+    private Map<Long, RecordSnapshot> snapshotsById(Collection<DataRecord> records)
+            throws ServerException, RemoteException {
+        Map<Long, RecordSnapshot> snapshots = new HashMap<>();
+        for (RecordSnapshot snapshot : RecordSnapshot.of(unique(records), drm, user)) {
+            snapshots.put(snapshot.getRecordId(), snapshot);
+        }
+        return snapshots;
+    }
+
+    private static List<DataRecord> unique(Collection<DataRecord> records) {
+        Map<Long, DataRecord> unique = new LinkedHashMap<>();
+        for (DataRecord record : records) {
+            unique.putIfAbsent(record.getRecordId(), record);
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    private static List<DataRecord> flatten(Collection<List<DataRecord>> lists) {
+        List<DataRecord> records = new ArrayList<>();
+        for (List<DataRecord> list : lists) {
+            records.addAll(list);
+        }
+        return records;
+    }
+}
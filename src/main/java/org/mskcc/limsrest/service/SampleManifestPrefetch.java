@@ -0,0 +1,185 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.datarecord.IoError;
+import com.velox.api.datarecord.NotFound;
+import com.velox.api.user.User;
+import com.velox.api.util.ServerException;
+import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.util.LimsQuery;
+import org.mskcc.limsrest.util.RecordSnapshot;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LIMS records needed to build the manifests of a batch of samples, loaded for all samples together. The samples are
+ * found with chunked {@code SampleId IN (...)} queries, then their SeqAnalysisSampleQC and Sample descendants, the
+ * FlowCellLane and IndexBarcode descendants of their DNA libraries and the runs of those lanes are each loaded with one
+ * list call.
+ * <p>
+ * Records outside of the prefetched set are looked up one at a time and kept as well. The records send their calls over
+ * the connection of the DataRecordManager they were loaded with, so a prefetch is only used with that connection.
+ */
+public class SampleManifestPrefetch {
+    private static Log log = LogFactory.getLog(SampleManifestPrefetch.class);
+
+    public static final int QUERY_CHUNK_SIZE = 200;
+
+    private final DataRecordManager drm;
+    private final User user;
+    private final Set<String> loadedIgoIds = new HashSet<>();
+    private final Map<String, List<DataRecord>> samplesByIgoId = new ConcurrentHashMap<>();
+    private final Map<Long, RecordSnapshot> fields = new ConcurrentHashMap<>();
+    // data type -> record id -> related records
+    private final Map<String, Map<Long, List<DataRecord>>> descendants = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, List<DataRecord>>> parents = new ConcurrentHashMap<>();
+
+    public SampleManifestPrefetch(DataRecordManager drm, User user) {
+        this.drm = drm;
+        this.user = user;
+    }
+
+    public SampleManifestPrefetch load(Collection<String> igoIds) throws IoError, ServerException, RemoteException {
+        long start = System.currentTimeMillis();
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(igoIds));
+        List<DataRecord> found;
+        try {
+            found = LimsQuery.of("Sample").whereIn("SampleId", ids).withChunkSize(QUERY_CHUNK_SIZE).list(drm, user);
+        } catch (NotFound e) {
+            found = Collections.emptyList();
+        }
+        for (RecordSnapshot sample : loadFields(found)) {
+            samplesByIgoId.computeIfAbsent(sample.getString("SampleId"), k -> new ArrayList<>()).add(sample.getRecord());
+        }
+        loadedIgoIds.addAll(ids);
+
+        List<DataRecord> baseSamples = new ArrayList<>();
+        for (String igoId : ids) {
+            List<DataRecord> samples = samplesByIgoId.get(igoId);
+            if (samples != null)
+                baseSamples.add(samples.get(0));
+        }
+        Deadline.check();
+        loadFields(loadDescendants(baseSamples, SeqAnalysisSampleQCModel.DATA_TYPE_NAME));
+        Deadline.check();
+        List<DataRecord> aliquots = loadDescendants(baseSamples, "Sample");
+        loadFields(aliquots);
+
+        // DNA libraries, or the sample itself when it has none, are where the lane and barcode searches start
+        List<DataRecord> libraries = new ArrayList<>(baseSamples);
+        for (DataRecord aliquot : aliquots) {
+            if ("DNA Library".equals(fields.get(aliquot.getRecordId()).getString("ExemplarSampleType")))
+                libraries.add(aliquot);
+        }
+        libraries = unique(libraries);
+        Deadline.check();
+        loadFields(loadDescendants(libraries, "IndexBarcode"));
+        Deadline.check();
+        List<DataRecord> lanes = loadDescendants(libraries, "FlowCellLane");
+        loadFields(lanes);
+        List<DataRecord> flowCells = loadFirstParents(lanes, "FlowCell");
+        loadFields(loadFirstParents(flowCells, "IlluminaSeqExperiment"));
+
+        log.info(String.format("Prefetched %d samples, %d libraries and %d flow cell lanes in %dms", baseSamples.size(),
+                libraries.size(), lanes.size(), System.currentTimeMillis() - start));
+        return this;
+    }
+
+    /**
+     * @return Sample records with this SampleId, from the prefetch if the id was part of it
+     */
+    public List<DataRecord> getSamples(String igoId) throws NotFound, IoError, RemoteException {
+        if (loadedIgoIds.contains(igoId))
+            return samplesByIgoId.getOrDefault(igoId, Collections.emptyList());
+        return LimsQuery.of("Sample").whereEquals("SampleId", igoId).list(drm, user);
+    }
+
+    public RecordSnapshot getFields(DataRecord record) throws RemoteException {
+        RecordSnapshot snapshot = fields.get(record.getRecordId());
+        if (snapshot == null) {
+            snapshot = RecordSnapshot.of(record, user);
+            fields.put(record.getRecordId(), snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return modifiable copy of the descendants of the given type
+     */
+    public List<DataRecord> getDescendantsOfType(DataRecord record, String dataType) throws RemoteException {
+        Map<Long, List<DataRecord>> byRecord = descendants.computeIfAbsent(dataType, k -> new ConcurrentHashMap<>());
+        List<DataRecord> records = byRecord.get(record.getRecordId());
+        if (records == null) {
+            records = record.getDescendantsOfType(dataType, user);
+            byRecord.put(record.getRecordId(), records);
+        }
+        return new ArrayList<>(records);
+    }
+
+    public List<DataRecord> getParentsOfType(DataRecord record, String dataType) throws IoError, RemoteException {
+        Map<Long, List<DataRecord>> byRecord = parents.computeIfAbsent(dataType, k -> new ConcurrentHashMap<>());
+        List<DataRecord> records = byRecord.get(record.getRecordId());
+        if (records == null) {
+            records = record.getParentsOfType(dataType, user);
+            byRecord.put(record.getRecordId(), records);
+        }
+        return new ArrayList<>(records);
+    }
+
+    private List<RecordSnapshot> loadFields(List<DataRecord> records) throws ServerException, RemoteException {
+        List<RecordSnapshot> snapshots = RecordSnapshot.of(unique(records), drm, user);
+        for (RecordSnapshot snapshot : snapshots) {
+            fields.put(snapshot.getRecordId(), snapshot);
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return all descendants of the records, without duplicates
+     */
+    private List<DataRecord> loadDescendants(List<DataRecord> records, String dataType)
+            throws ServerException, RemoteException {
+        Map<Long, List<DataRecord>> byRecord = descendants.computeIfAbsent(dataType, k -> new ConcurrentHashMap<>());
+        List<DataRecord> all = new ArrayList<>();
+        if (records.isEmpty())
+            return all;
+        List<List<DataRecord>> found = drm.getDescendantsOfType(records, dataType, user);
+        for (int i = 0; i < records.size(); i++) {
+            byRecord.put(records.get(i).getRecordId(), found.get(i));
+            all.addAll(found.get(i));
+        }
+        return unique(all);
+    }
+
+    /**
+     * @return first parent of each record, without duplicates
+     */
+    private List<DataRecord> loadFirstParents(List<DataRecord> records, String dataType)
+            throws IoError, ServerException, RemoteException {
+        Map<Long, List<DataRecord>> byRecord = parents.computeIfAbsent(dataType, k -> new ConcurrentHashMap<>());
+        List<DataRecord> first = new ArrayList<>();
+        if (records.isEmpty())
+            return first;
+        List<List<DataRecord>> found = drm.getParentsOfType(records, dataType, user);
+        for (int i = 0; i < records.size(); i++) {
+            byRecord.put(records.get(i).getRecordId(), found.get(i));
+            if (!found.get(i).isEmpty())
+                first.add(found.get(i).get(0));
+        }
+        return unique(first);
+    }
+
+    private static List<DataRecord> unique(List<DataRecord> records) {
+        Map<Long, DataRecord> unique = new LinkedHashMap<>();
+        for (DataRecord record : records) {
+            unique.putIfAbsent(record.getRecordId(), record);
+        }
+        return new ArrayList<>(unique.values());
+    }
+}
@@ -5,6 +5,8 @@ import com.velox.api.datarecord.DataRecord;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.lang3.StringUtils;
 import org.mskcc.domain.sample.TumorNormalType;
+import org.mskcc.limsrest.ExecutionLane;
+import org.mskcc.limsrest.TaskPriority;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.security.access.prepost.PreAuthorize;
 
@@ -163,6 +165,16 @@ public class SetOrCreateBanked extends LimsTask {
         this.numberOfAmplicons = numberOfAmplicons;
     }
 
+    @Override
+    public ExecutionLane getExecutionLane() {
+        return ExecutionLane.WRITE;
+    }
+
+    @Override
+    public TaskPriority getPriority() {
+        return TaskPriority.INTERACTIVE;
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @Override
     public Object execute(VeloxConnection conn) {
@@ -7,6 +7,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.security.access.prepost.PreAuthorize;
 
@@ -23,7 +24,7 @@ public class SetOrCreateInteropData {
 
     public SetOrCreateInteropData(List<Map<String, Object>> data, ConnectionLIMS conn) {
         this.data = data;
-        VeloxConnection vConn = conn.getConnection();
+        VeloxConnection vConn = conn.getConnection(ExecutionLane.WRITE);
         user = vConn.getUser();
         drm = vConn.getDataRecordManager();
     }
@@ -2,6 +2,7 @@ package org.mskcc.limsrest.service;
 
 import com.velox.api.datarecord.DataRecord;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.mskcc.limsrest.ExecutionLane;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.security.access.prepost.PreAuthorize;
 
@@ -32,6 +33,11 @@ public class SetPairing extends LimsTask {
     this.nIgoId = normalIgoId;
   }
 
+  @Override
+  public ExecutionLane getExecutionLane() {
+    return ExecutionLane.WRITE;
+  }
+
 @PreAuthorize("hasRole('ADMIN')")
 @Override
  public Object execute(VeloxConnection conn){
@@ -7,6 +7,7 @@ import com.velox.sloan.cmo.staticstrings.datatypes.DT_Sample;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 import org.mskcc.limsrest.service.assignedprocess.*;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -32,7 +33,7 @@ public class SetQcInvestigatorDecisionTask {
     @PreAuthorize("hasRole('READ')")
     public String execute() {
         int count = 0;
-        VeloxConnection vConn = conn.getConnection();
+        VeloxConnection vConn = conn.getConnection(ExecutionLane.WRITE);
         User user = vConn.getUser();
         DataRecordManager drm = vConn.getDataRecordManager();
         try {
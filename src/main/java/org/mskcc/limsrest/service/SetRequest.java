@@ -2,6 +2,7 @@ package org.mskcc.limsrest.service;
 
 import com.velox.api.datarecord.DataRecord;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.mskcc.limsrest.ExecutionLane;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
@@ -28,6 +29,11 @@ public class SetRequest extends LimsTask {
         this.possibleRequestFields = requestFields;
     }
 
+    @Override
+    public ExecutionLane getExecutionLane() {
+        return ExecutionLane.WRITE;
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @Override
     public Object execute(VeloxConnection conn) {
@@ -7,6 +7,7 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.io.PrintWriter;
@@ -28,9 +29,13 @@ public class SetRequestStatus {
 
     private ConnectionLIMS conn;
 
+    public SetRequestStatus(ConnectionLIMS conn) {
+        this.conn = conn;
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     public LinkedList<String> execute() {
-        VeloxConnection vConn = conn.getConnection();
+        VeloxConnection vConn = conn.getConnection(ExecutionLane.WRITE);
         User user = vConn.getUser();
         DataRecordManager drm = vConn.getDataRecordManager();
 
@@ -7,6 +7,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.List;
+import org.mskcc.limsrest.ExecutionLane;
 
 /**
  * A queued task that takes a sample id and a flowcellid, lane pair and if no sample has a barcode conflict with the new lane, reassigns the pool to that lane
@@ -24,6 +25,11 @@ public class SetSampleStatus extends LimsTask {
         this.igoUser = igoUser;
     }
 
+    @Override
+    public ExecutionLane getExecutionLane() {
+        return ExecutionLane.WRITE;
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @Override
     public Object execute(VeloxConnection conn) {
@@ -7,6 +7,7 @@ import com.velox.sloan.cmo.recmodels.PoolingSampleLibProtocolModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
 import org.mskcc.limsrest.service.assignedprocess.QcStatusAwareProcessAssigner;
 
@@ -88,7 +89,7 @@ public class ToggleSampleQcStatusTask {
     public String execute() {
         // designed to update either SeqAnalysisSampleQC or PostSeqAnalysisQC LIMS status tables
         try {
-            VeloxConnection vConn = conn.getConnection();
+            VeloxConnection vConn = conn.getConnection(ExecutionLane.WRITE);
             User user = vConn.getUser();
             DataRecordManager dataRecordManager = vConn.getDataRecordManager();
 
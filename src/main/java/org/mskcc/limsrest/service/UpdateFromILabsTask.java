@@ -6,6 +6,7 @@ import com.velox.api.user.User;
 import com.velox.sapioutils.client.standalone.*;
 import org.apache.commons.lang3.tuple.Pair;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 import org.mskcc.limsrest.service.ilabs.Filter;
 import org.mskcc.limsrest.service.ilabs.GetGeneralInfo;
 import org.yaml.snakeyaml.Yaml;
@@ -39,7 +40,7 @@ public class UpdateFromILabsTask {
     }
 
     public Object execute() {
-        VeloxConnection vConn = conn.getConnection();
+        VeloxConnection vConn = conn.getConnection(ExecutionLane.WRITE);
         DataRecordManager dataRecordManager = vConn.getDataRecordManager();
         User user = vConn.getUser();
 
@@ -12,6 +12,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.domain.sample.SampleType;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 
 import java.rmi.RemoteException;
 import java.util.ArrayList;
@@ -62,9 +63,9 @@ public class CheckOrMarkCmoRequestsTask {
     }
 
     public String execute() {
-        DataMgmtServer dataMgmtServer = conn.getConnection().getDataMgmtServer();
-        dataRecordManager = conn.getConnection().getDataRecordManager();
-        user = conn.getConnection().getUser();
+        DataMgmtServer dataMgmtServer = conn.getConnection(ExecutionLane.WRITE).getDataMgmtServer();
+        dataRecordManager = conn.getConnection(ExecutionLane.WRITE).getDataRecordManager();
+        user = conn.getConnection(ExecutionLane.WRITE).getUser();
         try {
             cmoRecipes = Arrays.asList(dataMgmtServer.getPickListManager(user).getPickListConfig("CMO Request Recipes").getEntryList()
                     .toString()
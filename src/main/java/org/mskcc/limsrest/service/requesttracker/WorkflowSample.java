@@ -13,6 +13,8 @@ import org.apache.commons.logging.LogFactory;
 import org.junit.platform.commons.util.StringUtils;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.util.LimsStage;
+import org.mskcc.limsrest.util.RecordSnapshot;
+import org.mskcc.limsrest.util.SampleSubtree;
 
 import java.rmi.RemoteException;
 import java.util.*;
@@ -66,6 +68,27 @@ public class WorkflowSample extends StatusTracker {
         enrichSample(conn);
     }
 
+    /**
+     * Creates the WorkflowSample from a node of an already loaded sample tree, which saves the calls for its fields
+     * and its SeqAnalysisSampleQC children
+     */
+    public WorkflowSample(SampleSubtree.Node node, ConnectionLIMS conn) {
+        setSize(0);
+
+        this.user = conn.getConnection().getUser();
+        this.children = new ArrayList<>();
+        this.recordId = node.getRecordId();
+        this.recordName = getRecordStringValue(node.getFields(), SampleModel.SAMPLE_ID);
+        this.record = node.getRecord();
+        this.parent = null;
+        this.seqAnalysisQcRecords = new ArrayList<>();
+
+        this.complete = Boolean.FALSE;
+
+        boolean hasSampleQcChildren = !node.getChildrenOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME).isEmpty();
+        enrichSample(conn, node.getFields(), hasSampleQcChildren);
+    }
+
     public void addSeqAnalysisQcRecords(List<DataRecord> seqAnalysisQcRecords) {
         this.seqAnalysisQcRecords.addAll(seqAnalysisQcRecords);
     }
@@ -80,12 +103,23 @@ public class WorkflowSample extends StatusTracker {
     public void enrichSample(ConnectionLIMS conn) {
         if (this.record == null || this.user == null) return;
 
-        String status = getRecordStringValue(this.record, SampleModel.EXEMPLAR_SAMPLE_STATUS, this.user);
-        this.sourceSampleId = getRecordStringValue(this.record, SampleModel.SOURCE_LIMS_ID, this.user);
+        RecordSnapshot fields;
+        try {
+            fields = RecordSnapshot.of(this.record, this.user);
+        } catch (RemoteException e) {
+            log.error(String.format("Unable to retrieve fields of Sample Record %d", this.recordId));
+            fields = new RecordSnapshot(this.record, null);
+        }
+        DataRecord[] sampleQcRecords = getChildrenofDataRecord(this.record, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+        enrichSample(conn, fields, sampleQcRecords.length > 0);
+    }
+
+    private void enrichSample(ConnectionLIMS conn, RecordSnapshot fields, boolean hasSampleQcChildren) {
+        String status = getRecordStringValue(fields, SampleModel.EXEMPLAR_SAMPLE_STATUS);
+        this.sourceSampleId = getRecordStringValue(fields, SampleModel.SOURCE_LIMS_ID);
         String stageName = STAGE_AWAITING_PROCESSING;
 
-        DataRecord[] sampleQcRecords = getChildrenofDataRecord(this.record, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
-        if (sampleQcRecords.length > 0) {
+        if (hasSampleQcChildren) {
             // Check immediate children (cheaper) prior to checking for all descendants (more expensive)
             try {
                 /**
@@ -126,8 +160,8 @@ public class WorkflowSample extends StatusTracker {
         super.stage = stageName;
         this.status = status;
         this.failed = isFailedStatus(status);
-        super.startTime = getRecordLongValue(this.record, SampleModel.DATE_CREATED, this.user);
-        super.updateTime = getRecordLongValue(this.record, SampleModel.DATE_MODIFIED, this.user);
+        super.startTime = getRecordLongValue(fields, SampleModel.DATE_CREATED);
+        super.updateTime = getRecordLongValue(fields, SampleModel.DATE_MODIFIED);
     }
 
     /**
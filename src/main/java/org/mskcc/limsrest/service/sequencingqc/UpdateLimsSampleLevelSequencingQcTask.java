@@ -11,6 +11,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.json.JSONObject;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ExecutionLane;
 import org.mskcc.limsrest.util.IGOTools;
 
 import static org.mskcc.limsrest.util.Utils.*;
@@ -54,10 +55,10 @@ public class UpdateLimsSampleLevelSequencingQcTask {
     }
 
     public Map<String, String> execute() {
-        VeloxConnection vConn = conn.getConnection();
+        VeloxConnection vConn = conn.getConnection(ExecutionLane.WRITE);
         user = vConn.getUser();
         dataRecordManager = vConn.getDataRecordManager();
-        user = conn.getConnection().getUser();
+        user = conn.getConnection(ExecutionLane.WRITE).getUser();
 
         Map<String, String> statsAdded = new HashMap<>();
         generateStats(runId, projectId, statsAdded);
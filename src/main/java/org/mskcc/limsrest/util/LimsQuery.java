@@ -0,0 +1,193 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.datarecord.IoError;
+import com.velox.api.datarecord.NotFound;
+import com.velox.api.user.User;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.Deadline;
+import org.mskcc.limsrest.LimsFanOut;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Builds LIMS queries with escaped values instead of concatenated strings. A large IN list is split into balanced
+ * chunks of at most {@link #withChunkSize(int) chunkSize} values, one query per chunk, and the records of all chunks
+ * are merged in chunk order.
+ * <pre>
+ *     List&lt;DataRecord&gt; requests = LimsQuery.of("Request")
+ *             .whereIn("RequestId", requestIds)
+ *             .list(conn);
+ * </pre>
+ * With a {@link ConnectionLIMS} the chunks run in parallel on pooled read connections. An ORDER BY can not be applied
+ * across chunks, so an ordered query whose IN list needs more than one chunk is rejected; give it a chunk size that
+ * holds the whole list instead.
+ */
+public class LimsQuery {
+    private static Log log = LogFactory.getLog(LimsQuery.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private final String dataType;
+    private final List<String> conditions = new ArrayList<>();
+    private String inField;
+    private List<Object> inValues;
+    private String orderBy;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private LimsQuery(String dataType) {
+        this.dataType = dataType;
+    }
+
+    public static LimsQuery of(String dataType) {
+        return new LimsQuery(dataType);
+    }
+
+    public LimsQuery whereEquals(String field, Object value) {
+        conditions.add(field + " = " + literal(value));
+        return this;
+    }
+
+    /**
+     * Adds a condition as is, for comparisons this builder does not cover. Never pass user input here.
+     */
+    public LimsQuery where(String condition) {
+        conditions.add(condition);
+        return this;
+    }
+
+    /**
+     * Only one IN list is chunked per query, duplicate values are queried once.
+     */
+    public LimsQuery whereIn(String field, Collection<?> values) {
+        if (inField != null)
+            throw new IllegalStateException("Only one IN list per query, already have one on " + inField);
+        inField = field;
+        inValues = new ArrayList<>(new LinkedHashSet<>(values));
+        return this;
+    }
+
+    public LimsQuery orderBy(String orderBy) {
+        this.orderBy = orderBy;
+        return this;
+    }
+
+    public LimsQuery withChunkSize(int chunkSize) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Runs the chunks one after the other on this connection.
+     */
+    public List<DataRecord> list(DataRecordManager drm, User user) throws NotFound, IoError, RemoteException {
+        List<DataRecord> records = new ArrayList<>();
+        for (String query : toWhereClauses()) {
+            Deadline.check();
+            records.addAll(drm.queryDataRecords(dataType, query, user));
+        }
+        return records;
+    }
+
+    /**
+     * Runs the chunks in parallel on pooled read connections, or on the connection of the calling thread when there is
+     * only one.
+     */
+    public List<DataRecord> list(ConnectionLIMS conn) throws NotFound, IoError, RemoteException {
+        List<String> queries = toWhereClauses();
+        if (queries.size() <= 1) {
+            VeloxConnection vConn = conn.getConnection();
+            return list(vConn.getDataRecordManager(), vConn.getUser());
+        }
+
+        List<LimsFanOut.Outcome<List<DataRecord>>> outcomes;
+        try {
+            outcomes = new LimsFanOut(conn).map(queries, (query, vConn) ->
+                    vConn.getDataRecordManager().queryDataRecords(dataType, query, vConn.getUser()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while querying " + dataType, e);
+        }
+        List<DataRecord> records = new ArrayList<>();
+        for (LimsFanOut.Outcome<List<DataRecord>> outcome : outcomes) {
+            if (outcome.isFailed())
+                rethrow(outcome.getError());
+            if (outcome.getValue() != null)
+                records.addAll(outcome.getValue());
+        }
+        log.info(String.format("Queried %d %s records in %d chunks", records.size(), dataType, queries.size()));
+        return records;
+    }
+
+    /**
+     * @return where clause of every query to run, none when the IN list is empty
+     * @throws IllegalStateException when the query is ordered and the IN list needs more than one chunk
+     */
+    List<String> toWhereClauses() {
+        String where = String.join(" AND ", conditions);
+        String order = orderBy == null ? "" : " ORDER BY " + orderBy;
+        if (inField == null)
+            return Collections.singletonList((where.isEmpty() ? "1 = 1" : where) + order);
+
+        List<List<Object>> chunks = chunk(inValues, chunkSize);
+        if (orderBy != null && chunks.size() > 1)
+            throw new IllegalStateException("ORDER BY " + orderBy + " can not be applied across " + chunks.size() +
+                    " chunks of " + inField + " values, use a chunk size of at least " + inValues.size());
+        List<String> queries = new ArrayList<>();
+        for (List<Object> chunk : chunks) {
+            String in = inField + " IN (" + chunk.stream().map(LimsQuery::literal).collect(Collectors.joining(",")) + ")";
+            queries.add((where.isEmpty() ? in : where + " AND " + in) + order);
+        }
+        return queries;
+    }
+
+    /**
+     * Splits into the fewest chunks of at most maxSize values, with sizes differing by one at most, so 501 values
+     * become chunks of 251 and 250 instead of 500 and 1.
+     */
+    static <T> List<List<T>> chunk(List<T> values, int maxSize) {
+        List<List<T>> chunks = new ArrayList<>();
+        if (values.isEmpty())
+            return chunks;
+        int count = (values.size() + maxSize - 1) / maxSize;
+        int size = values.size() / count;
+        int larger = values.size() % count;
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            int to = from + size + (i < larger ? 1 : 0);
+            chunks.add(values.subList(from, to));
+            from = to;
+        }
+        return chunks;
+    }
+
+    static String literal(Object value) {
+        if (value == null)
+            throw new IllegalArgumentException("Null values can not be queried, use IS NULL");
+        if (value instanceof Number)
+            return value.toString();
+        if (value instanceof Boolean)
+            return (Boolean) value ? "1" : "0";
+        return "'" + value.toString().replace("\\", "\\\\").replace("'", "''") + "'";
+    }
+
+    private static void rethrow(Exception e) throws NotFound, IoError, RemoteException {
+        if (e instanceof NotFound)
+            throw (NotFound) e;
+        if (e instanceof IoError)
+            throw (IoError) e;
+        if (e instanceof RemoteException)
+            throw (RemoteException) e;
+        if (e instanceof RuntimeException)
+            throw (RuntimeException) e;
+        throw new RemoteException(e.getMessage(), e);
+    }
+}
@@ -0,0 +1,178 @@
+package org.mskcc.limsrest.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * All oncotree tumor types, fetched with one call to the oncotree API and kept in memory so resolving a tumor type to
+ * its main type does not make HTTP calls. The fetched list is also written to a file, so a restart can resolve tumor
+ * types before (or without) reaching oncotree.
+ * <p>
+ * Resolves like the oncotree search did: exact name, then the first name containing it, then the code. Names and
+ * codes are matched ignoring case and extra whitespace.
+ */
+public class OncotreeIndex {
+    private static final Log LOGGER = LogFactory.getLog(OncotreeIndex.class);
+
+    public static final String DEFAULT_API_URL = "http://oncotree.mskcc.org/api";
+    private static final int TIMEOUT_MS = 30000;
+    private static final int MAX_PARTIAL_MATCHES = 10000;
+
+    // null until the first index is loaded from the file or oncotree
+    private static final AtomicReference<OncotreeIndex> current = new AtomicReference<>();
+
+    private final long loadedAt;
+    private final Map<String, String> mainTypeByCode = new HashMap<>();
+    private final Map<String, String> mainTypeByName = new HashMap<>();
+    // in oncotree order, searched for names containing the tumor type
+    private final List<Map.Entry<String, String>> names = new ArrayList<>();
+    private final Map<String, String> partialMatches = new ConcurrentHashMap<>();
+
+    OncotreeIndex(String json, long loadedAt) {
+        this.loadedAt = loadedAt;
+        JSONArray tumorTypes = new JSONArray(json);
+        for (int i = 0; i < tumorTypes.length(); i++) {
+            JSONObject tumorType = tumorTypes.getJSONObject(i);
+            Object mainType = tumorType.opt("mainType");
+            if (mainType == null || JSONObject.NULL.equals(mainType))
+                continue;
+            String code = normalize(tumorType.optString("code", ""));
+            String name = normalize(tumorType.optString("name", ""));
+            if (!code.isEmpty())
+                mainTypeByCode.putIfAbsent(code, mainType.toString());
+            if (!name.isEmpty()) {
+                mainTypeByName.putIfAbsent(name, mainType.toString());
+                names.add(new AbstractMap.SimpleImmutableEntry<>(name, mainType.toString()));
+            }
+        }
+    }
+
+    /**
+     * @return the loaded index, null if neither the file nor oncotree could be read yet
+     */
+    public static OncotreeIndex get() {
+        return current.get();
+    }
+
+    static void set(OncotreeIndex index) {
+        current.set(index);
+    }
+
+    /**
+     * @param tumorType tumor type name or code as entered in the LIMS, e.g. "Breast Cancer" or "BRCA"
+     * @return main tumor type, empty if oncotree does not know the tumor type
+     */
+    public String getMainType(String tumorType) {
+        // In LIMS tumor types entry is not controlled, sometimes the name and other times the code is entered
+        String name = normalize(tumorType.split("/").length > 0 ? tumorType.split("/")[0] : "");
+        String mainType = mainTypeByName.get(name);
+        if (mainType == null && !name.isEmpty())
+            mainType = getPartialMatch(name);
+        if (mainType == null)
+            mainType = mainTypeByCode.get(normalize(tumorType));
+        return mainType == null ? "" : mainType;
+    }
+
+    private String getPartialMatch(String name) {
+        String mainType = partialMatches.get(name);
+        if (mainType != null)
+            return mainType.isEmpty() ? null : mainType;
+        mainType = "";
+        for (Map.Entry<String, String> entry : names) {
+            if (entry.getKey().contains(name)) {
+                mainType = entry.getValue();
+                break;
+            }
+        }
+        if (partialMatches.size() < MAX_PARTIAL_MATCHES)
+            partialMatches.put(name, mainType);
+        return mainType.isEmpty() ? null : mainType;
+    }
+
+    public int size() {
+        return mainTypeByCode.size();
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Uses the tumor types saved by the last successful {@link #refresh(String, Path)}, if any.
+     */
+    public static OncotreeIndex loadFile(Path file) {
+        if (file == null || !Files.isReadable(file))
+            return null;
+        try {
+            OncotreeIndex index = new OncotreeIndex(new String(Files.readAllBytes(file), StandardCharsets.UTF_8),
+                    Files.getLastModifiedTime(file).toMillis());
+            current.compareAndSet(null, index);
+            LOGGER.info(String.format("Loaded %d oncotree tumor types from %s", index.size(), file));
+            return index;
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Unable to read oncotree tumor types from %s: %s", file, e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Fetches all tumor types from oncotree, replaces the index and saves them to the file.
+     *
+     * @param apiUrl oncotree API, e.g. {@value #DEFAULT_API_URL}
+     * @param file   where to save the tumor types, null to not save them
+     */
+    public static OncotreeIndex refresh(String apiUrl, Path file) throws IOException {
+        String json = fetch(new URL(apiUrl + "/tumorTypes"));
+        OncotreeIndex index = new OncotreeIndex(json, System.currentTimeMillis());
+        if (index.size() == 0)
+            throw new IOException("No tumor types returned by " + apiUrl);
+        current.set(index);
+        LOGGER.info(String.format("Fetched %d oncotree tumor types from %s", index.size(), apiUrl));
+        if (file != null) {
+            try {
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Unable to save oncotree tumor types to %s: %s", file, e.getMessage()));
+            }
+        }
+        return index;
+    }
+
+    private static String fetch(URL url) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setRequestMethod("GET");
+        con.setConnectTimeout(TIMEOUT_MS);
+        con.setReadTimeout(TIMEOUT_MS);
+        StringBuilder response = new StringBuilder();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8))) {
+            String inputLine;
+            while ((inputLine = in.readLine()) != null) {
+                response.append(inputLine);
+            }
+        } finally {
+            con.disconnect();
+        }
+        return response.toString();
+    }
+
+    private static String normalize(String value) {
+        return value.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+}
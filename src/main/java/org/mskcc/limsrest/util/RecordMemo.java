@@ -0,0 +1,154 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.IoError;
+import com.velox.api.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memo of the LIMS reads of one task, keyed by record id. Traversals that climb the same lineage again and again, e.g.
+ * once for every lane or every sample of a pool, then cost one call per distinct record and relationship.
+ * <pre>
+ *     try (RecordMemo memo = RecordMemo.open(user)) {
+ *         ...
+ *     }
+ * </pre>
+ * The memo is bound to the opening thread until it is closed; helpers called within pick it up with
+ * {@link #forThread(User)}, which falls back to uncached reads when no memo is open. A memo opened by a nested task
+ * replaces the outer one until it is closed, then the outer one is used again. Records changed during the task
+ * are not refreshed, so it is only meant for read-only tasks.
+ */
+public class RecordMemo implements AutoCloseable {
+    private static Log log = LogFactory.getLog(RecordMemo.class);
+
+    private static final ThreadLocal<RecordMemo> current = new ThreadLocal<>();
+
+    private final User user;
+    private final boolean caching;
+    private final Map<Long, Map<String, Object>> fields = new ConcurrentHashMap<>();
+    // data type -> record id -> related records
+    private final Map<String, Map<Long, DataRecord[]>> children = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, List<DataRecord>>> parents = new ConcurrentHashMap<>();
+    private final Map<String, Map<Long, List<DataRecord>>> ancestors = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // memo open on the thread before this one, restored on close
+    private RecordMemo previous;
+
+    private RecordMemo(User user, boolean caching) {
+        this.user = user;
+        this.caching = caching;
+    }
+
+    /**
+     * Opens a memo bound to the current thread until {@link #close()}.
+     */
+    public static RecordMemo open(User user) {
+        RecordMemo memo = new RecordMemo(user, true);
+        memo.previous = current.get();
+        current.set(memo);
+        return memo;
+    }
+
+    /**
+     * @return the memo open on this thread, or one that reads straight from the LIMS
+     */
+    public static RecordMemo forThread(User user) {
+        RecordMemo memo = current.get();
+        return memo != null ? memo : new RecordMemo(user, false);
+    }
+
+    public Map<String, Object> getFields(DataRecord record) throws RemoteException {
+        Map<String, Object> recordFields = caching ? fields.get(record.getRecordId()) : null;
+        if (recordFields == null) {
+            misses.incrementAndGet();
+            Map<String, Object> loaded = record.getFields(user);
+            recordFields = Collections.unmodifiableMap(loaded == null ? Collections.emptyMap() : loaded);
+            if (caching)
+                fields.put(record.getRecordId(), recordFields);
+        } else {
+            hits.incrementAndGet();
+        }
+        return recordFields;
+    }
+
+    public Object getValue(DataRecord record, String field) throws RemoteException {
+        return getFields(record).get(field);
+    }
+
+    /**
+     * @return value of the field as a string, null if it is not set
+     */
+    public String getString(DataRecord record, String field) throws RemoteException {
+        Object value = getValue(record, field);
+        return value == null ? null : value.toString();
+    }
+
+    public DataRecord[] getChildrenOfType(DataRecord record, String dataType) throws IoError, RemoteException {
+        Map<Long, DataRecord[]> byRecord = children.computeIfAbsent(dataType, k -> new ConcurrentHashMap<>());
+        DataRecord[] records = caching ? byRecord.get(record.getRecordId()) : null;
+        if (records == null) {
+            misses.incrementAndGet();
+            records = record.getChildrenOfType(dataType, user);
+            if (caching)
+                byRecord.put(record.getRecordId(), records);
+        } else {
+            hits.incrementAndGet();
+        }
+        return records.clone();
+    }
+
+    public List<DataRecord> getParentsOfType(DataRecord record, String dataType) throws IoError, RemoteException {
+        Map<Long, List<DataRecord>> byRecord = parents.computeIfAbsent(dataType, k -> new ConcurrentHashMap<>());
+        List<DataRecord> records = caching ? byRecord.get(record.getRecordId()) : null;
+        if (records == null) {
+            misses.incrementAndGet();
+            records = record.getParentsOfType(dataType, user);
+            if (caching)
+                byRecord.put(record.getRecordId(), records);
+        } else {
+            hits.incrementAndGet();
+        }
+        return new ArrayList<>(records);
+    }
+
+    public List<DataRecord> getAncestorsOfType(DataRecord record, String dataType) throws RemoteException {
+        Map<Long, List<DataRecord>> byRecord = ancestors.computeIfAbsent(dataType, k -> new ConcurrentHashMap<>());
+        List<DataRecord> records = caching ? byRecord.get(record.getRecordId()) : null;
+        if (records == null) {
+            misses.incrementAndGet();
+            records = record.getAncestorsOfType(dataType, user);
+            if (caching)
+                byRecord.put(record.getRecordId(), records);
+        } else {
+            hits.incrementAndGet();
+        }
+        return new ArrayList<>(records);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void close() {
+        if (current.get() == this) {
+            if (previous == null)
+                current.remove();
+            else
+                current.set(previous);
+        }
+        if (caching)
+            log.info(String.format("Record memo closed, %d LIMS reads, %d served from memo", misses.get(), hits.get()));
+    }
+}
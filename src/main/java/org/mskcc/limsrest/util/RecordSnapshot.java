@@ -0,0 +1,86 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.api.util.ServerException;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only copy of all fields of a DataRecord fetched in a single RMI call, each {@code DataRecord.getXVal} is
+ * otherwise a round trip to the LIMS server. Accessors return null for missing fields instead of throwing.
+ */
+public class RecordSnapshot {
+    private final DataRecord record;
+    private final Map<String, Object> fields;
+
+    public RecordSnapshot(DataRecord record, Map<String, Object> fields) {
+        this.record = record;
+        this.fields = fields == null ? Collections.emptyMap() : fields;
+    }
+
+    public static RecordSnapshot of(DataRecord record, User user) throws RemoteException {
+        return new RecordSnapshot(record, record.getFields(user));
+    }
+
+    /**
+     * Snapshots all records with one call to the server.
+     */
+    public static List<RecordSnapshot> of(List<DataRecord> records, DataRecordManager drm, User user)
+            throws ServerException, RemoteException {
+        List<RecordSnapshot> snapshots = new ArrayList<>(records.size());
+        if (records.isEmpty())
+            return snapshots;
+        List<Map<String, Object>> fields = drm.getFieldsForRecords(records, user);
+        for (int i = 0; i < records.size(); i++) {
+            snapshots.add(new RecordSnapshot(records.get(i), fields.get(i)));
+        }
+        return snapshots;
+    }
+
+    public DataRecord getRecord() {
+        return record;
+    }
+
+    public long getRecordId() {
+        return record.getRecordId();
+    }
+
+    public Map<String, Object> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    public Object getValue(String key) {
+        return fields.get(key);
+    }
+
+    public String getString(String key) {
+        Object value = fields.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    public Long getLong(String key) {
+        Object value = fields.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    public Double getDouble(String key) {
+        Object value = fields.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    public Short getShort(String key) {
+        Object value = fields.get(key);
+        return value instanceof Number ? ((Number) value).shortValue() : null;
+    }
+
+    public Boolean getBoolean(String key) {
+        Object value = fields.get(key);
+        return value instanceof Boolean ? (Boolean) value : null;
+    }
+}
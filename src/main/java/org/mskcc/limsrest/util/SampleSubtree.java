@@ -0,0 +1,99 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+
+import java.util.*;
+
+/**
+ * In-memory copy of the Sample hierarchy below a set of root samples, loaded by {@link SampleSubtreeLoader}. Every
+ * node carries a snapshot of its fields and, for the requested data types, its immediate child records so tasks can
+ * walk the tree without going back to the LIMS server.
+ * <p>
+ * A sample with several parents (e.g. a pool) is a single node listed as a child of each parent.
+ */
+public class SampleSubtree {
+    private final List<Node> roots;
+    private final Map<Long, Node> nodes;
+    private final int depth;
+
+    SampleSubtree(List<Node> roots, Map<Long, Node> nodes, int depth) {
+        this.roots = roots;
+        this.nodes = nodes;
+        this.depth = depth;
+    }
+
+    public List<Node> getRoots() {
+        return roots;
+    }
+
+    public Node getNode(long recordId) {
+        return nodes.get(recordId);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return number of Sample levels loaded, 1 if the roots have no Sample children
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public static class Node {
+        private final RecordSnapshot sample;
+        private final List<Node> children = new ArrayList<>();
+        private final Map<String, List<RecordSnapshot>> childrenOfType = new HashMap<>();
+        private boolean expanded = false;
+
+        Node(RecordSnapshot sample) {
+            this.sample = sample;
+        }
+
+        public DataRecord getRecord() {
+            return sample.getRecord();
+        }
+
+        public long getRecordId() {
+            return sample.getRecordId();
+        }
+
+        public RecordSnapshot getFields() {
+            return sample;
+        }
+
+        /**
+         * @return Sample children, empty for a node that was not expanded
+         */
+        public List<Node> getChildren() {
+            return children;
+        }
+
+        /**
+         * @return immediate children of one of the data types the tree was loaded with
+         */
+        public List<RecordSnapshot> getChildrenOfType(String dataType) {
+            return childrenOfType.getOrDefault(dataType, Collections.emptyList());
+        }
+
+        /**
+         * @return false if the loader was told not to descend below this sample
+         */
+        public boolean isExpanded() {
+            return expanded;
+        }
+
+        void setExpanded(boolean expanded) {
+            this.expanded = expanded;
+        }
+
+        void addChild(Node child) {
+            children.add(child);
+        }
+
+        void addChildrenOfType(String dataType, List<RecordSnapshot> records) {
+            childrenOfType.put(dataType, records);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.datarecord.IoError;
+import com.velox.api.user.User;
+import com.velox.api.util.ServerException;
+import com.velox.sloan.cmo.recmodels.SampleModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.Deadline;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Loads the Sample hierarchy below a set of samples breadth first, level by level. Each level costs one
+ * getChildrenOfType and one getFieldsForRecords call for all of its samples, plus two calls per extra child data type,
+ * instead of several calls for every sample in the tree.
+ * <pre>
+ *     SampleSubtree tree = new SampleSubtreeLoader(drm, user)
+ *             .withChildrenOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME)
+ *             .descendWhen(sample -&gt; sample.getString(SampleModel.SAMPLE_ID).contains(requestId))
+ *             .load(samples);
+ * </pre>
+ */
+public class SampleSubtreeLoader {
+    private static Log log = LogFactory.getLog(SampleSubtreeLoader.class);
+
+    private final DataRecordManager drm;
+    private final User user;
+    private final List<String> childTypes = new ArrayList<>();
+    private Predicate<RecordSnapshot> descendInto = sample -> true;
+
+    public SampleSubtreeLoader(DataRecordManager drm, User user) {
+        this.drm = drm;
+        this.user = user;
+    }
+
+    /**
+     * Also loads the immediate children of these data types for every expanded sample.
+     */
+    public SampleSubtreeLoader withChildrenOfType(String... dataTypes) {
+        childTypes.addAll(Arrays.asList(dataTypes));
+        return this;
+    }
+
+    /**
+     * Only descends below samples matching the predicate, the others are kept as leaves. Roots are always expanded.
+     */
+    public SampleSubtreeLoader descendWhen(Predicate<RecordSnapshot> descendInto) {
+        this.descendInto = descendInto;
+        return this;
+    }
+
+    public SampleSubtree load(List<DataRecord> roots) throws IoError, ServerException, RemoteException {
+        long start = System.currentTimeMillis();
+        Map<Long, SampleSubtree.Node> nodes = new LinkedHashMap<>();
+        List<SampleSubtree.Node> rootNodes = new ArrayList<>();
+        for (RecordSnapshot sample : RecordSnapshot.of(roots, drm, user)) {
+            SampleSubtree.Node node = nodes.computeIfAbsent(sample.getRecordId(), id -> new SampleSubtree.Node(sample));
+            rootNodes.add(node);
+        }
+
+        List<SampleSubtree.Node> level = new ArrayList<>(new LinkedHashSet<>(rootNodes));
+        int depth = 0;
+        while (!level.isEmpty()) {
+            Deadline.check();
+            depth++;
+            List<SampleSubtree.Node> expand = new ArrayList<>();
+            for (SampleSubtree.Node node : level) {
+                if (depth == 1 || descendInto.test(node.getFields())) {
+                    node.setExpanded(true);
+                    expand.add(node);
+                }
+            }
+            if (expand.isEmpty())
+                break;
+            List<DataRecord> parents = records(expand);
+            for (String childType : childTypes) {
+                loadChildrenOfType(expand, parents, childType);
+            }
+
+            List<List<DataRecord>> children = drm.getChildrenOfType(parents, SampleModel.DATA_TYPE_NAME, user);
+            Map<Long, DataRecord> unseen = new LinkedHashMap<>();
+            for (List<DataRecord> siblings : children) {
+                for (DataRecord child : siblings) {
+                    if (!nodes.containsKey(child.getRecordId()))
+                        unseen.put(child.getRecordId(), child);
+                }
+            }
+            List<SampleSubtree.Node> next = new ArrayList<>();
+            for (RecordSnapshot sample : RecordSnapshot.of(new ArrayList<>(unseen.values()), drm, user)) {
+                SampleSubtree.Node node = new SampleSubtree.Node(sample);
+                nodes.put(sample.getRecordId(), node);
+                next.add(node);
+            }
+            for (int i = 0; i < expand.size(); i++) {
+                for (DataRecord child : children.get(i)) {
+                    expand.get(i).addChild(nodes.get(child.getRecordId()));
+                }
+            }
+            level = next;
+        }
+        log.info(String.format("Loaded %d samples in %d levels below %d roots in %dms", nodes.size(), depth,
+                rootNodes.size(), System.currentTimeMillis() - start));
+        return new SampleSubtree(rootNodes, nodes, depth);
+    }
+
+    private void loadChildrenOfType(List<SampleSubtree.Node> expand, List<DataRecord> parents, String childType)
+            throws IoError, ServerException, RemoteException {
+        List<List<DataRecord>> children = drm.getChildrenOfType(parents, childType, user);
+        List<DataRecord> flat = new ArrayList<>();
+        for (List<DataRecord> siblings : children) {
+            flat.addAll(siblings);
+        }
+        Iterator<RecordSnapshot> snapshots = RecordSnapshot.of(flat, drm, user).iterator();
+        for (int i = 0; i < expand.size(); i++) {
+            List<RecordSnapshot> ofNode = new ArrayList<>(children.get(i).size());
+            for (int j = 0; j < children.get(i).size(); j++) {
+                ofNode.add(snapshots.next());
+            }
+            expand.get(i).addChildrenOfType(childType, ofNode);
+        }
+    }
+
+    private static List<DataRecord> records(List<SampleSubtree.Node> nodes) {
+        List<DataRecord> records = new ArrayList<>(nodes.size());
+        for (SampleSubtree.Node node : nodes) {
+            records.add(node.getRecord());
+        }
+        return records;
+    }
+}
@@ -1,5 +1,6 @@
 package org.mskcc.limsrest.util;
 
+import com.velox.api.datamgmtserver.DataMgmtServer;
 import com.velox.api.datarecord.DataRecord;
 import com.velox.api.user.User;
 import com.velox.api.util.ServerException;
@@ -14,6 +15,8 @@ import org.mskcc.limsrest.service.assignedprocess.QcStatus;
 
 import java.rmi.RemoteException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static org.mskcc.limsrest.util.Utils.*;
@@ -86,6 +89,13 @@ public class StatusTrackerConfig {
             STAGE_IGO_COMPLETE,
             STAGE_RETURNED_TO_USER
     };
+    // Stage -> position in STAGE_ORDER, the first one for stages listed twice. Read on every stage TreeMap comparison
+    private static final Map<String, Integer> STAGE_ORDER_INDEX = new HashMap<>();
+    static {
+        for (int i = 0; i < STAGE_ORDER.length; i++) {
+            STAGE_ORDER_INDEX.putIfAbsent(STAGE_ORDER[i], i);
+        }
+    }
 
     /**
      * Returns the position of the stage. Returns out-of-bounds index if not present
@@ -94,10 +104,7 @@ public class StatusTrackerConfig {
      * @return
      */
     public static int getStageOrder(String status) {
-        for (int i = 0; i < STAGE_ORDER.length; i++) {
-            if (status.equals(STAGE_ORDER[i])) return i;
-        }
-        return STAGE_ORDER.length;
+        return STAGE_ORDER_INDEX.getOrDefault(status, STAGE_ORDER.length);
     }
 
     /**
@@ -148,6 +155,22 @@ public class StatusTrackerConfig {
         return requestType.toLowerCase().contains("extraction");
     }
 
+    /**
+     * Same as {@link #isIgoComplete(DataRecord, User)} using already fetched fields of the request
+     */
+    public static boolean isIgoComplete(RecordSnapshot record) {
+        if (getRecordLongValue(record, RequestModel.RECENT_DELIVERY_DATE) != null) {
+            return true;
+        }
+        Long completedDate = getRecordLongValue(record, RequestModel.COMPLETED_DATE);
+        return (completedDate != null) && isExtractionRequest(record);
+    }
+
+    public static boolean isExtractionRequest(RecordSnapshot record) {
+        String requestType = getRecordStringValue(record, RequestModel.REQUEST_NAME);
+        return requestType.toLowerCase().contains("extraction");
+    }
+
     /**
      * This should match ToggleSampleQcStatus > setSeqAnalysisSampleQcStatus
      *
@@ -220,47 +243,157 @@ public class StatusTrackerConfig {
     private static final Log LOGGER = LogFactory.getLog(StatusTrackerConfig.class);
     // This flag is used to indicate if a a stage is complete when that workflow has been completed
     private static final String IS_COMPLETE_FIELD = "LIMS_COMPLETE_STATUS";
-    // Many Workflows -> One Stage. Maps workflows to the stage they belong to
-    private static final Map<String, LimsStage> workflowNameToStageMap = new HashMap<>();
+    // Many Workflows -> One Stage. Maps workflows to the stage they belong to, replaced as a whole on every reload
+    private static final AtomicReference<WorkflowStageMap> workflowStageMap =
+            new AtomicReference<>(WorkflowStageMap.EMPTY);
 
     /**
-     * Retrieving the workflowList, workflow names, & categories requires DB access and only needs to be done once. This
-     * ensures that the population is only done once. When called for the first time, the workflow map is computed from
-     * the input connection to the DB.
+     * Immutable workflow name -> stage map. The version goes up with every successful reload, 0 until the first one.
+     * <p>
+     * Every standard ExemplarSampleStatus, a progress status followed by a workflow name, is compiled to its stage when
+     * the map is loaded, so resolving a sample's status is a single lookup. Other statuses are parsed once and their
+     * stage remembered until the next reload.
+     */
+    public static class WorkflowStageMap {
+        static final WorkflowStageMap EMPTY = new WorkflowStageMap(0, 0, Collections.emptyMap());
+        private static final int MAX_RESOLVED_STATUSES = 10000;
+
+        private final long version;
+        private final long loadedAt;
+        private final Map<String, LimsStage> stages;
+        private final Map<String, LimsStage> statuses = new ConcurrentHashMap<>();
+
+        private WorkflowStageMap(long version, long loadedAt, Map<String, LimsStage> stages) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.stages = stages;
+            for (Map.Entry<String, LimsStage> workflow : stages.entrySet()) {
+                for (String progressStatus : WORKFLOW_PROGRESS_STATUSES) {
+                    statuses.put(progressStatus + workflow.getKey(), workflow.getValue());
+                }
+            }
+        }
+
+        /**
+         * @return the stage of the ExemplarSampleStatus, Awaiting Processing if its workflow is unknown
+         */
+        LimsStage resolve(String status) {
+            LimsStage stage = statuses.get(status);
+            if (stage != null)
+                return stage;
+            stage = stages.get(getWorkflowNameFromStatus(status));
+            if (stage == null) {
+                LOGGER.warn(String.format("Stage (Short Description) for Exemplar status not found: %s", status));
+                stage = new LimsStage(STAGE_AWAITING_PROCESSING, false);
+            }
+            // unknown statuses are looked up again once the map is loaded
+            if (version > 0 && statuses.size() < MAX_RESOLVED_STATUSES)
+                statuses.put(status, stage);
+            return stage;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+
+        public Map<String, LimsStage> getStages() {
+            return stages;
+        }
+    }
+
+    public static WorkflowStageMap getWorkflowStageMap() {
+        return workflowStageMap.get();
+    }
+
+    /**
+     * Reloads the workflow map with a connection checked out of the pool, e.g. at startup and on a schedule.
      *
-     * @param conn
-     * @return
+     * @return the current map, the previous one if the workflows could not be read
+     */
+    public static WorkflowStageMap refreshWorkflowMap(ConnectionLIMS conn) {
+        try (ConnectionLIMS.Lease lease = conn.checkout()) {
+            return refreshWorkflowMap(lease.getConnection());
+        }
+    }
+
+    /**
+     * Retrieving the workflowList, workflow names, & categories requires DB access. The map is built aside and swapped
+     * in at once so readers never see a partial map, and never wait on a reload.
+     */
+    private static WorkflowStageMap refreshWorkflowMap(VeloxConnection vConn) {
+        return swapWorkflowMap(loadWorkflowMap(vConn));
+    }
+
+    /**
+     * @param stages workflow name -> stage, null if the workflows could not be read to keep the current map
      */
-    private static synchronized Map<String, LimsStage> computeIfAbsentWorkflowMap(ConnectionLIMS conn) {
-        if (workflowNameToStageMap.size() == 0) {
-            VeloxConnection vConn = conn.getConnection();
-            User user = vConn.getUser();
-
-            Set<String> validStages = new HashSet<>(Arrays.asList(STAGE_ORDER));
-            try {
-                List<Workflow> workflowList = vConn.getDataMgmtServer().getWorkflowManager(user).getLatestWorkflowList(user);
-
-                // Create the mapping of the workflow name to its corresponding stage, stored in category
-                for (Workflow wkflw : workflowList) {
-                    // LIMS workflow's name is by default initialized on creation in LIMS, but the workflow creator
-                    // should also be responsible for populating the "Short Description" field with the desired stage
-                    String wkflwName = wkflw.getWorkflowName();
-
-                    String stageName = wkflw.getShortDesc();
-                    Boolean isComplete = isCompleteWorkflow(wkflw, stageName);
-                    LimsStage stage = new LimsStage(stageName, isComplete);
-                    if (!validStages.contains(stageName)) {
-                        // TODO - Send alert
-                        LOGGER.error(String.format("%s is not recognized as a valid stage. Please amend or remove", stageName));
-                    }
-
-                    workflowNameToStageMap.put(wkflwName, stage);
+    static WorkflowStageMap swapWorkflowMap(Map<String, LimsStage> stages) {
+        if (stages == null)
+            return workflowStageMap.get();
+        long loadedAt = System.currentTimeMillis();
+        WorkflowStageMap loaded = workflowStageMap.updateAndGet(
+                previous -> new WorkflowStageMap(previous.version + 1, loadedAt, Collections.unmodifiableMap(stages)));
+        LOGGER.info(String.format("Loaded %d LIMS workflow stages, version %d", stages.size(), loaded.version));
+        return loaded;
+    }
+
+    /**
+     * Returns the loaded map, loading it on the calling thread's connection if it was not warmed yet. Only the cold
+     * path takes a lock, so concurrent first callers load it once.
+     */
+    private static WorkflowStageMap getWorkflowMap(ConnectionLIMS conn) {
+        WorkflowStageMap current = workflowStageMap.get();
+        if (current.version > 0)
+            return current;
+        synchronized (workflowStageMap) {
+            current = workflowStageMap.get();
+            if (current.version == 0)
+                current = refreshWorkflowMap(conn.getConnection());
+        }
+        return current;
+    }
+
+    /**
+     * @return workflow name -> stage, null if the workflows could not be read
+     */
+    private static Map<String, LimsStage> loadWorkflowMap(VeloxConnection vConn) {
+        User user = vConn.getUser();
+        Set<String> validStages = new HashSet<>(Arrays.asList(STAGE_ORDER));
+        Map<String, LimsStage> stages = new HashMap<>();
+        try {
+            DataMgmtServer server = vConn.getDataMgmtServer();
+            if (server == null) {
+                // e.g. a fake LIMS, every status resolves to Awaiting Processing
+                LOGGER.error("Could not fetch Lims Stage Name - No dataManagement Server");
+                return null;
+            }
+            List<Workflow> workflowList = server.getWorkflowManager(user).getLatestWorkflowList(user);
+
+            // Create the mapping of the workflow name to its corresponding stage, stored in category
+            for (Workflow wkflw : workflowList) {
+                // LIMS workflow's name is by default initialized on creation in LIMS, but the workflow creator
+                // should also be responsible for populating the "Short Description" field with the desired stage
+                String wkflwName = wkflw.getWorkflowName();
+
+                String stageName = wkflw.getShortDesc();
+                Boolean isComplete = isCompleteWorkflow(wkflw, stageName);
+                LimsStage stage = new LimsStage(stageName, isComplete);
+                if (!validStages.contains(stageName)) {
+                    // TODO - Send alert
+                    LOGGER.error(String.format("%s is not recognized as a valid stage. Please amend or remove", stageName));
                 }
-            } catch (RemoteException | ServerException e) {
-                LOGGER.error("Could not fetch Lims Stage Name - Unable to get dataManagement Server");
+
+                stages.put(wkflwName, stage);
             }
+        } catch (RemoteException | ServerException e) {
+            LOGGER.error("Could not fetch Lims Stage Name - Unable to get dataManagement Server");
+            return null;
         }
-        return workflowNameToStageMap;
+        return stages;
     }
 
     /**
@@ -292,13 +425,7 @@ public class StatusTrackerConfig {
      * @return
      */
     public static LimsStage getLimsStageFromStatus(ConnectionLIMS conn, String status) {
-        String workflowName = getWorkflowNameFromStatus(status);
-        Map<String, LimsStage> workflowMap = computeIfAbsentWorkflowMap(conn);
-        if (workflowMap.containsKey(workflowName)) {
-            return workflowMap.get(workflowName);
-        }
-        LOGGER.warn(String.format("Stage (Short Description) for Exemplar status not found: %s", status));
-        return new LimsStage(STAGE_AWAITING_PROCESSING, false);
+        return getWorkflowMap(conn).resolve(status);
     }
 
     /**
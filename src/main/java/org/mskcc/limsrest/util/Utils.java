@@ -372,6 +372,42 @@ public class Utils {
         return null;
     }
 
+    /**
+     * Retrieves a String value from a record snapshot, empty string if the field is not set
+     */
+    public static String getRecordStringValue(RecordSnapshot record, String key) {
+        String value = record.getString(key);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Retrieves a Long value from a record snapshot, null if the field is not set
+     */
+    public static Long getRecordLongValue(RecordSnapshot record, String key) {
+        return record.getLong(key);
+    }
+
+    /**
+     * Retrieves a Double value from a record snapshot, null if the field is not set
+     */
+    public static Double getRecordDoubleValue(RecordSnapshot record, String key) {
+        return record.getDouble(key);
+    }
+
+    /**
+     * Retrieves a Short value from a record snapshot, null if the field is not set
+     */
+    public static Short getRecordShortValue(RecordSnapshot record, String key) {
+        return record.getShort(key);
+    }
+
+    /**
+     * Retrieves a Boolean value from a record snapshot, null if the field is not set
+     */
+    public static Boolean getRecordBooleanValue(RecordSnapshot record, String key) {
+        return record.getBoolean(key);
+    }
+
     /**
      * Returns the DataRecord children of an input datatype of an input data record
      *
@@ -516,12 +552,17 @@ public class Utils {
     }
 
     /**
-     * Get MainCancerType from oncotree
+     * Get MainCancerType from oncotree, from the {@link OncotreeIndex} once it is loaded
      *
      * @param tumorType
      * @return String
      */
     public static String getOncotreeTumorType(String tumorType) {
+        OncotreeIndex index = OncotreeIndex.get();
+        if (index != null)
+            return index.getMainType(tumorType);
+
+        // not loaded yet, search oncotree for this tumor type
         String mainTumorType = "";
         try {
             // In LIMS tumor types entry is not controlled. Sometimes tumor type as tumor name is entered and other times tumor type code is entered.
@@ -553,23 +594,20 @@ public class Utils {
      */
     public static String getOriginSampleId(DataRecord sample, User user) {
         String sampleId = "";
+        RecordMemo memo = RecordMemo.forThread(user);
         try {
             sampleId = sample.getStringVal("SampleId", user);
-            if (sample.getChildrenOfType("SampleCMOInfoRecords", user).length > 0) {
-                return sample.getStringVal("SampleId", user);
+            if (memo.getChildrenOfType(sample, "SampleCMOInfoRecords").length > 0) {
+                return sampleId;
             }
             Stack<DataRecord> sampleStack = new Stack<>();
-            if (sample.getParentsOfType("Sample", user).size() > 0) {
-                sampleStack.addAll((sample.getParentsOfType("Sample", user)));
-            }
+            sampleStack.addAll(memo.getParentsOfType(sample, "Sample"));
             do {
                 DataRecord startSample = sampleStack.pop();
-                if (startSample.getChildrenOfType("SampleCMOInfoRecords", user).length > 0) {
-                    return sample.getStringVal("SampleId", user);
-                }
-                if (startSample.getParentsOfType("Sample", user).size() > 0) {
-                    sampleStack.addAll(startSample.getParentsOfType("Sample", user));
+                if (memo.getChildrenOfType(startSample, "SampleCMOInfoRecords").length > 0) {
+                    return sampleId;
                 }
+                sampleStack.addAll(memo.getParentsOfType(startSample, "Sample"));
 
             } while (!sampleStack.isEmpty());
         } catch (Exception e) {
@@ -730,19 +768,22 @@ public class Utils {
      */
     public static List<DataRecord> getRecordsOfTypeFromParents(DataRecord record, String parentDataType, String targetDataType, User user) {
         List<DataRecord> records = new ArrayList<>();
+        RecordMemo memo = RecordMemo.forThread(user);
         try {
-            if (record.getChildrenOfType(targetDataType, user).length > 0){
-                return Arrays.asList(record.getChildrenOfType(targetDataType, user));
+            DataRecord[] targets = memo.getChildrenOfType(record, targetDataType);
+            if (targets.length > 0){
+                return Arrays.asList(targets);
             }
             Stack<DataRecord> recordsStack = new Stack<>();
-            List<DataRecord> parentRecords = record.getParentsOfType(parentDataType, user);
+            List<DataRecord> parentRecords = memo.getParentsOfType(record, parentDataType);
             recordsStack.addAll(parentRecords);
             while (!recordsStack.isEmpty()){
                 DataRecord poppedRecord = recordsStack.pop();
-                if (poppedRecord.getChildrenOfType(targetDataType, user).length > 0){
-                    return Arrays.asList(poppedRecord.getChildrenOfType(targetDataType, user));
+                targets = memo.getChildrenOfType(poppedRecord, targetDataType);
+                if (targets.length > 0){
+                    return Arrays.asList(targets);
                 }
-                recordsStack.addAll(poppedRecord.getParentsOfType(parentDataType, user));
+                recordsStack.addAll(memo.getParentsOfType(poppedRecord, parentDataType));
             }
         } catch (IoError | RemoteException e) {
             LOGGER.error(String.format("%s -> Error while getting %s records for %s record with Record Id %d,\n%s",
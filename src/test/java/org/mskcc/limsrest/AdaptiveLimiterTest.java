@@ -0,0 +1,88 @@
+package org.mskcc.limsrest;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveLimiterTest {
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void backsOffWhenLatencyRises() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 8, 8, 2.0, 100);
+        call(limiter, 10 * MS, false);
+        assertEquals(8, limiter.getLimit());
+
+        for (int i = 0; i < 10; i++)
+            call(limiter, 100 * MS, false);
+
+        assertTrue(limiter.getLimit() < 8);
+        assertEquals(10.0, limiter.getBaselineLatencyMs("queryDataRecords(Sample)"), 0.001);
+    }
+
+    @Test
+    public void cutsAtMostOncePerRoundOfCalls() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 8, 8, 2.0, 100);
+        call(limiter, 10 * MS, false);
+        for (int i = 0; i < 7; i++)
+            call(limiter, 100 * MS, false);
+        assertEquals(7, limiter.getLimit());
+
+        call(limiter, 100 * MS, false);
+        assertEquals(6, limiter.getLimit());
+    }
+
+    @Test
+    public void holdsLimitForMixedLatencyMethods() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 8, 8, 2.0, 100);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            call(limiter, "getStringVal", MS + random.nextInt(200_000), false);
+            call(limiter, "queryDataRecords(Sample)", 15 * MS + random.nextInt(10) * MS, false);
+            if (i % 10 == 0)
+                call(limiter, "getChildrenOfType(Sample)", 5 * MS + random.nextInt(3) * MS, false);
+        }
+
+        assertEquals(8, limiter.getLimit());
+        assertEquals(1.0, limiter.getBaselineLatencyMs("getStringVal"), 0.2);
+        assertEquals(15.0, limiter.getBaselineLatencyMs("queryDataRecords(Sample)"), 1.0);
+    }
+
+    @Test
+    public void backsOffOnFailureAndNeverBelowMinimum() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 4, 4, 2.0, 100);
+        for (int i = 0; i < 50; i++)
+            call(limiter, MS, true);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void growsWhileSaturatedAndFast() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 4, 1, 2.0, 100);
+        for (int i = 0; i < 10; i++)
+            call(limiter, MS, false);
+        assertTrue(limiter.getLimit() > 1);
+    }
+
+    @Test(expected = LimsConnectionTimeoutException.class)
+    public void rejectsAfterMaxWait() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 1, 2.0, 10);
+        limiter.acquire();
+        try {
+            limiter.acquire();
+        } finally {
+            assertEquals(1, limiter.getRejected());
+        }
+    }
+
+    private static void call(AdaptiveLimiter limiter, long latencyNanos, boolean failed) {
+        call(limiter, "queryDataRecords(Sample)", latencyNanos, failed);
+    }
+
+    private static void call(AdaptiveLimiter limiter, String method, long latencyNanos, boolean failed) {
+        limiter.acquire();
+        limiter.release(method, latencyNanos, failed);
+    }
+}
@@ -0,0 +1,49 @@
+package org.mskcc.limsrest;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BulkheadTest {
+    @Test
+    public void rejectsOnceLimitAndQueueAreFull() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("/getHiseqList", 1, 0, 1000);
+
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire());
+        assertEquals(1, bulkhead.getActive());
+        assertEquals(1, bulkhead.getRejected());
+
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+    }
+
+    @Test
+    public void queuedCallerGetsReleasedPermit() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("/getWESSampleData", 1, 1, 5000);
+        assertTrue(bulkhead.tryAcquire());
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            bulkhead.release();
+        }).start();
+
+        assertTrue(bulkhead.tryAcquire());
+        assertEquals(0, bulkhead.getRejected());
+    }
+
+    @Test
+    public void parsesEndpointList() {
+        Map<String, Bulkhead> bulkheads = BulkheadFilter.parse("/getWESSampleData:2:4, /getHiseqList:3:0", 100);
+
+        assertEquals(2, bulkheads.size());
+        assertEquals(2, bulkheads.get("/getWESSampleData").getLimit());
+        assertEquals(4, bulkheads.get("/getWESSampleData").getMaxQueue());
+        assertEquals(3, bulkheads.get("/getHiseqList").getLimit());
+    }
+}
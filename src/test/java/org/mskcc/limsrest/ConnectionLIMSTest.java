@@ -0,0 +1,58 @@
+package org.mskcc.limsrest;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ConnectionLIMSTest {
+    private static final FakeLims LIMS = FakeLims.load(new StringReader(String.join("\n",
+            "records:",
+            "  - type: Request",
+            "    fields: {RequestId: 06302_AB}")));
+
+    private static ConnectionLIMS pool(int size, int writeConnections, int batchConnections) {
+        return new ConnectionLIMS("fake", 0, "", Collections.singletonList(new ConnectionLIMS.Credential("test", "")),
+                size, writeConnections, batchConnections, ConnectionLIMS.Routing.ROUND_ROBIN, 1000, 0,
+                (credential, limiter) -> new FakeVeloxConnection(LIMS, credential.getUser(), limiter));
+    }
+
+    @Test
+    public void batchWritesDoNotHoldTheWriteConnection() {
+        ConnectionLIMS conn = pool(4, 1, 1);
+        try {
+            assertEquals(2, conn.getBudget(ExecutionLane.READ));
+            assertEquals(1, conn.getBudget(ExecutionLane.WRITE));
+            assertEquals(1, conn.getBudget(ExecutionLane.BATCH));
+
+            try (ConnectionLIMS.Lease batch = conn.checkout(ExecutionLane.BATCH)) {
+                assertNull(conn.tryCheckout(ExecutionLane.BATCH));
+                ConnectionLIMS.Lease write = conn.tryCheckout(ExecutionLane.WRITE);
+                assertNotNull(write);
+                write.close();
+            }
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void batchWritesShareTheWriteBudgetWhenNoReadIsLeft() {
+        ConnectionLIMS conn = pool(2, 1, 1);
+        try {
+            assertEquals(1, conn.getBudget(ExecutionLane.READ));
+            assertEquals(1, conn.getBudget(ExecutionLane.BATCH));
+
+            try (ConnectionLIMS.Lease batch = conn.checkout(ExecutionLane.BATCH)) {
+                assertNull(conn.tryCheckout(ExecutionLane.WRITE));
+            }
+            ConnectionLIMS.Lease write = conn.tryCheckout(ExecutionLane.WRITE);
+            assertNotNull(write);
+            write.close();
+        } finally {
+            conn.close();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.mskcc.limsrest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class DeadlineTest {
+    @After
+    public void tearDown() {
+        Deadline.set(null);
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void checkFailsOnceExpired() throws Exception {
+        Deadline.set(Deadline.after(10));
+        Deadline.check();
+        Thread.sleep(30);
+        Deadline.check();
+    }
+
+    @Test
+    public void queuedWorkInheritsDeadline() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Deadline deadline = Deadline.after(60000);
+            Deadline.set(deadline);
+            Future<Deadline> seen = executor.submit(Deadline.propagate(Deadline::current));
+            assertSame(deadline, seen.get());
+            assertNull(executor.submit(Deadline::current).get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void awaitCancelsWorkPastDeadline() throws Exception {
+        Deadline.set(Deadline.after(20));
+        CompletableFuture<String> neverCompletes = new CompletableFuture<>();
+        try {
+            Deadline.await(neverCompletes);
+            fail("expected DeadlineExceededException");
+        } catch (DeadlineExceededException e) {
+            assertTrue(neverCompletes.isCancelled());
+        }
+    }
+
+    @Test
+    public void invalidOrMissingHeaderUsesDefault() {
+        DeadlineFilter filter = new DeadlineFilter(1000, 5000);
+        assertEquals(1000, filter.budgetMs(null));
+        assertEquals(1000, filter.budgetMs("soon"));
+        assertEquals(2000, filter.budgetMs("2000"));
+        assertEquals(5000, filter.budgetMs("99999"));
+    }
+}
@@ -0,0 +1,94 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FakeLimsTest {
+    private static final String FIXTURE = String.join("\n",
+            "records:",
+            "  - type: Request",
+            "    fields: {RequestId: 06302_AB, LaboratoryHead: Jane Doe}",
+            "    children:",
+            "      - type: Sample",
+            "        id: 101",
+            "        fields: {SampleId: 06302_AB_1, OtherSampleId: s1}",
+            "        children:",
+            "          - type: SeqAnalysisSampleQC",
+            "            fields: {SeqQCStatus: Passed, TotalReads: 24000000}",
+            "      - type: Sample",
+            "        id: 102",
+            "        fields: {SampleId: 06302_AB_2, OtherSampleId: s2}",
+            "  - type: FlowCellLane",
+            "    fields: {LaneNum: 1}",
+            "    parents: [101, 102]");
+
+    private final FakeLims lims = FakeLims.load(new StringReader(FIXTURE));
+    private final DataRecordManager drm = lims.getDataRecordManager();
+
+    @Test
+    public void queriesWithWhereClause() throws Exception {
+        List<DataRecord> samples = drm.queryDataRecords("Sample",
+                "RequestId IS NULL AND SampleId IN ('06302_AB_1', '06302_AB_3') AND OtherSampleId LIKE 's%'", null);
+
+        assertEquals(1, samples.size());
+        assertEquals(101, samples.get(0).getRecordId());
+        assertEquals(2, drm.queryDataRecords("sample", "1 = 1 ORDER BY SampleId", null).size());
+        assertEquals(1, drm.queryDataRecords("SeqAnalysisSampleQC", "TotalReads > 1000000", null).size());
+    }
+
+    @Test
+    public void walksRecordGraph() throws Exception {
+        DataRecord request = drm.queryDataRecords("Request", "RequestId = '06302_AB'", null).get(0);
+        DataRecord[] samples = request.getChildrenOfType("Sample", null);
+
+        assertEquals(2, samples.length);
+        assertEquals("06302_AB_2", samples[1].getStringVal("SampleId", null));
+        List<List<DataRecord>> lanes = drm.getChildrenOfType(Arrays.asList(samples), "FlowCellLane", null);
+        assertEquals(lanes.get(0).get(0).getRecordId(), lanes.get(1).get(0).getRecordId());
+        DataRecord lane = lanes.get(0).get(0);
+        assertEquals(1, lane.getAncestorsOfType("Request", null).size());
+    }
+
+    @Test
+    public void conditionsWithQuotesAndUnsupportedSyntax() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("InvestigatorName", "Smith and O'Brien");
+        fields.put("IsPooled", true);
+
+        assertTrue(new FakeLimsCondition("investigatorname = 'Smith and O''Brien' AND IsPooled = 1").matches(fields));
+        assertFalse(new FakeLimsCondition("InvestigatorName != 'Smith and O''Brien'").matches(fields));
+        assertFalse(new FakeLimsCondition("InvestigatorName = 'x' OR IsPooled = 0").matches(fields));
+        assertTrue(new FakeLimsCondition("InvestigatorName = 'x' OR IsPooled = 1").matches(fields));
+        assertTrue(new FakeLimsCondition("(InvestigatorName = 'x' OR InvestigatorName LIKE '%(and)%') AND 1 = 1")
+                .matches(Collections.singletonMap("InvestigatorName", "a (and) b")));
+        assertFalse(new FakeLimsCondition("IsPooled = 0 AND (InvestigatorName IN ('x', 'y') OR IsPooled = 1)").matches(fields));
+        assertTrue(new FakeLimsCondition("IsPooled = 0 OR InvestigatorName = 'x' OR (IsPooled IS NOT NULL AND 1 = 1)").matches(fields));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void conditionsItCanNotEvaluateThrow() {
+        new FakeLimsCondition("IsPooled = 1 AND NOT (InvestigatorName = 'x')");
+    }
+
+    @Test
+    public void injectsLatencyPerCall() throws Exception {
+        lims.setLatency(20, 0);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < 5; i++) {
+            drm.queryDataRecords("Sample", "SampleId = '06302_AB_1'", null);
+        }
+
+        assertTrue((System.nanoTime() - start) / 1_000_000 >= 100);
+    }
+}
@@ -0,0 +1,56 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class IndexBarcodeReferenceTest {
+    private static final String FIXTURE = String.join("\n",
+            "records:",
+            "  - {type: IndexAssignment, fields: {IndexType: IDT, IndexId: IDT_2, IndexTag: CCGG}}",
+            "  - {type: IndexAssignment, fields: {IndexType: DMP, IndexId: DMP_1, IndexTag: AATT}}",
+            "  - {type: IndexAssignment, fields: {IndexType: IDT, IndexId: IDT_1, IndexTag: GGCC}}",
+            "  - {type: IndexAssignment, fields: {IndexType: IDT_TRIM, IndexId: TRIM_1, IndexTag: TTAA}}");
+
+    private final DataRecordManager drm = FakeLims.load(new StringReader(FIXTURE)).getDataRecordManager();
+    private final AtomicLong now = new AtomicLong(1000);
+    private final IndexBarcodeReference reference = new IndexBarcodeReference(now::get);
+
+    @Test
+    public void loadsBarcodesOnceOrderedByTypeAndId() throws Exception {
+        IndexBarcodeReference.Barcodes barcodes = reference.get(drm, null);
+
+        assertEquals(3, barcodes.getBarcodes().size());
+        assertEquals("DMP_1", barcodes.getBarcodes().get(0).getIndexId());
+        assertEquals("IDT_2", barcodes.getBarcodes().get(2).getIndexId());
+        assertEquals("GGCC", barcodes.getIndexTags().get("IDT_1"));
+        assertNull(barcodes.get("TRIM_1"));
+        assertSame(barcodes, reference.get(drm, null));
+    }
+
+    @Test
+    public void unknownIndexIdReloadsAtMostOncePerInterval() throws Exception {
+        assertEquals("AATT", reference.get("DMP_1", drm, null).getIndexTag());
+        assertNull(reference.get("IDT_3", drm, null));
+        assertEquals(1, reference.getLoaded().getVersion());
+
+        DataRecord added = drm.addDataRecord("IndexAssignment", null);
+        added.setDataField("IndexType", "IDT", null);
+        added.setDataField("IndexId", "IDT_3", null);
+        added.setDataField("IndexTag", "ACGT", null);
+        now.addAndGet(IndexBarcodeReference.MIN_RELOAD_INTERVAL_MS - 1);
+        assertNull(reference.get("IDT_3", drm, null));
+        assertEquals(1, reference.getLoaded().getVersion());
+
+        now.addAndGet(1);
+        assertEquals("ACGT", reference.get("IDT_3", drm, null).getIndexTag());
+        assertEquals(2, reference.getLoaded().getVersion());
+        assertNull(reference.get("IDT_4", drm, null));
+        assertEquals(2, reference.getLoaded().getVersion());
+    }
+}
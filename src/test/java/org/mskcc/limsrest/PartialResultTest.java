@@ -0,0 +1,117 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.After;
+import org.junit.Test;
+import org.mskcc.limsrest.model.SampleManifest;
+import org.mskcc.limsrest.service.GetSampleManifestTask;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+public class PartialResultTest {
+    private static final String FIXTURE = String.join("\n",
+            "records:",
+            "  - type: Request",
+            "    fields: {RequestId: 06302_AB}",
+            "    children:",
+            "      - type: Sample",
+            "        fields: {SampleId: 06302_AB_1, OtherSampleId: s1}",
+            "      - type: Sample",
+            "        fields: {SampleId: 06302_AB_2, OtherSampleId: s2}",
+            "      - type: Sample",
+            "        fields: {SampleId: 06302_AB_3, OtherSampleId: s3}");
+    private static final String[] IGO_IDS = {"06302_AB_1", "06302_AB_2", "06302_AB_3"};
+
+    private final ConnectionLIMS conn = new ConnectionLIMS("fake", 0, "",
+            Collections.singletonList(new ConnectionLIMS.Credential("test", "")), 1, 0,
+            ConnectionLIMS.Routing.ROUND_ROBIN, 1000, 0,
+            (credential, limiter) -> new FakeVeloxConnection(FakeLims.load(new StringReader(FIXTURE)),
+                    credential.getUser(), limiter));
+
+    /**
+     * Takes longer than the deadline for the second sample, like a sample with a large workflow tree.
+     */
+    private class SlowSecondSample extends GetSampleManifestTask {
+        SlowSecondSample(boolean partial, boolean parallel) {
+            super(IGO_IDS, conn, partial, parallel);
+        }
+
+        @Override
+        protected SampleManifest getSampleManifest(String igoId, User user, DataRecordManager drm) throws Exception {
+            if (igoId.equals("06302_AB_2")) {
+                Thread.sleep(Deadline.current().remainingMs() + 50);
+                Deadline.check();
+            }
+            SampleManifest manifest = new SampleManifest();
+            manifest.setIgoId(igoId);
+            return manifest;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Deadline.set(null);
+        conn.releaseConnection();
+        conn.close();
+    }
+
+    @Test
+    public void returnsManifestsGeneratedBeforeDeadlinePassedInsideSample() {
+        Deadline.set(Deadline.after(300));
+        GetSampleManifestTask.SampleManifestResult result = new SlowSecondSample(true, false).execute();
+
+        assertEquals(1, result.smList.size());
+        assertEquals("06302_AB_1", result.smList.get(0).getIgoId());
+        assertEquals(Arrays.asList("06302_AB_2", "06302_AB_3"), result.unprocessedIgoIds);
+    }
+
+    @Test
+    public void returnsParallelManifestsGeneratedBeforeDeadlinePassedInsideSample() {
+        Deadline.set(Deadline.after(300));
+        GetSampleManifestTask.SampleManifestResult result = new SlowSecondSample(true, true).execute();
+
+        assertEquals(1, result.smList.size());
+        assertEquals(Arrays.asList("06302_AB_2", "06302_AB_3"), result.unprocessedIgoIds);
+        assertTrue(result.failedIgoIds.isEmpty());
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void failsWhenDeadlinePassesInsideSampleWithoutPartial() {
+        Deadline.set(Deadline.after(300));
+        new SlowSecondSample(false, false).execute();
+    }
+
+    @Test
+    public void runningPartialWorkIsNotFailedByTheDeadline() throws Exception {
+        ConnectionPoolLIMS queue = new ConnectionPoolLIMS(conn);
+        try {
+            Deadline.set(Deadline.after(100));
+            CompletableFuture<String> partial = queue.supplyAsync(() -> {
+                Thread.sleep(300);
+                return "partial";
+            }, true);
+            assertEquals("partial", partial.get());
+
+            Deadline.set(Deadline.after(100));
+            CompletableFuture<String> complete = queue.supplyAsync(() -> {
+                Thread.sleep(300);
+                return "complete";
+            });
+            try {
+                complete.get();
+                fail("Expected the deadline to fail the request");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof DeadlineExceededException);
+            }
+        } finally {
+            queue.cleanup();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.mskcc.limsrest;
+
+import org.junit.Test;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class PickListCacheTest {
+    private final AtomicLong now = new AtomicLong(1000);
+    private final AtomicInteger loads = new AtomicInteger();
+    private volatile boolean lims = true;
+
+    private final PickListCache cache = new PickListCache(pickList -> {
+        loads.incrementAndGet();
+        if (!lims)
+            throw new RemoteException("LIMS unavailable");
+        return "Unknown".equals(pickList) ? null : Arrays.asList(pickList + " 1", pickList + " 2");
+    }, 60000, now::get);
+
+    @Test
+    public void servesListFromMemoryUntilTtlExpires() throws Exception {
+        assertEquals(Arrays.asList("Recipes 1", "Recipes 2"), cache.get("Recipes"));
+        now.addAndGet(59999);
+        cache.get("Recipes").clear();
+        assertEquals(2, cache.get("Recipes").size());
+        assertEquals(1, loads.get());
+
+        now.addAndGet(1);
+        cache.get("Recipes");
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void invalidatedListIsReadAgain() throws Exception {
+        cache.get("Recipes");
+        cache.get("Request Types");
+        cache.invalidate("Recipes");
+        cache.get("Recipes");
+        cache.get("Request Types");
+
+        assertEquals(3, loads.get());
+        cache.invalidateAll();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void servesExpiredListWhenReloadFails() throws Exception {
+        List<String> loaded = cache.get("Recipes");
+        lims = false;
+        now.addAndGet(120000);
+
+        assertEquals(loaded, cache.get("Recipes"));
+        assertEquals(1, cache.getLoadFailures());
+        assertNull(new PickListCache(pickList -> null, 60000, now::get).get("Unknown"));
+    }
+
+    @Test
+    public void waitsBeforeRetryingFailedReload() throws Exception {
+        cache.get("Recipes");
+        lims = false;
+        now.addAndGet(120000);
+        cache.get("Recipes");
+        now.addAndGet(PickListCache.RETRY_AFTER_FAILURE_MS - 1);
+        cache.get("Recipes");
+        assertEquals(2, loads.get());
+
+        lims = true;
+        now.addAndGet(1);
+        cache.get("Recipes");
+        now.addAndGet(59999);
+        cache.get("Recipes");
+        assertEquals(3, loads.get());
+        assertEquals(1, cache.getLoadFailures());
+    }
+
+    @Test
+    public void concurrentMissesLoadListOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PickListCache slow = new PickListCache(pickList -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RemoteException("Interrupted", e);
+            }
+            return Arrays.asList(pickList + " 1");
+        }, 60000, now::get);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++)
+                results.add(executor.submit(() -> slow.get("Recipes")));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<List<String>> result : results)
+                assertEquals(Collections.singletonList("Recipes 1"), result.get());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void servesPreviousValuesWhileOneCallerReloads() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger version = new AtomicInteger();
+        PickListCache slow = new PickListCache(pickList -> {
+            int v = version.incrementAndGet();
+            if (v == 2) {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RemoteException("Interrupted", e);
+                }
+            }
+            return Arrays.asList(pickList + " " + v);
+        }, 60000, now::get);
+        slow.get("Recipes");
+        now.addAndGet(60000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<String>> reload = executor.submit(() -> slow.get("Recipes"));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            assertEquals(Collections.singletonList("Recipes 1"), slow.get("Recipes"));
+            assertEquals(Collections.singletonList("Other 3"), slow.get("Other"));
+            release.countDown();
+            assertEquals(Collections.singletonList("Recipes 2"), reload.get());
+            assertEquals(Collections.singletonList("Recipes 2"), slow.get("Recipes"));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = RemoteException.class)
+    public void failsWhenListWasNeverLoaded() throws Exception {
+        lims = false;
+        cache.get("Recipes");
+    }
+}
@@ -0,0 +1,75 @@
+package org.mskcc.limsrest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PriorityTaskSchedulerTest {
+    private PriorityTaskScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void interactiveRunsAheadOfQueuedBatchWork() throws Exception {
+        scheduler = new PriorityTaskScheduler("test", 1, 60000);
+        CountDownLatch blocker = block(scheduler);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        Future<Boolean> maintenance = scheduler.submit(() -> order.add("maintenance"), TaskPriority.MAINTENANCE);
+        Future<Boolean> batch1 = scheduler.submit(() -> order.add("batch1"), TaskPriority.BATCH);
+        Future<Boolean> batch2 = scheduler.submit(() -> order.add("batch2"), TaskPriority.BATCH);
+        Future<Boolean> interactive = scheduler.submit(() -> order.add("interactive"), TaskPriority.INTERACTIVE);
+        assertEquals(2, scheduler.getQueueDepth(TaskPriority.BATCH));
+
+        blocker.countDown();
+        waitForAll(maintenance, batch1, batch2, interactive);
+
+        assertEquals(Arrays.asList("interactive", "batch1", "batch2", "maintenance"), order);
+    }
+
+    @Test
+    public void agedBatchWorkIsNotStarved() throws Exception {
+        scheduler = new PriorityTaskScheduler("test", 1, 50);
+        CountDownLatch blocker = block(scheduler);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        Future<Boolean> batch = scheduler.submit(() -> order.add("batch"), TaskPriority.BATCH);
+        // waiting more than one aging interval puts the batch task ahead of a fresh interactive one
+        Thread.sleep(150);
+        Future<Boolean> interactive = scheduler.submit(() -> order.add("interactive"), TaskPriority.INTERACTIVE);
+
+        blocker.countDown();
+        waitForAll(batch, interactive);
+
+        assertEquals(Arrays.asList("batch", "interactive"), order);
+    }
+
+    private static CountDownLatch block(PriorityTaskScheduler scheduler) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        scheduler.submit(() -> {
+            started.countDown();
+            return blocker.await(5, TimeUnit.SECONDS);
+        }, TaskPriority.INTERACTIVE);
+        started.await(5, TimeUnit.SECONDS);
+        return blocker;
+    }
+
+    private static void waitForAll(Future<?>... futures) throws Exception {
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.mskcc.limsrest;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class RequestCoalescerTest {
+    @Test
+    public void concurrentCallersShareOneComputation() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        CompletableFuture<String> work = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> first = coalescer.coalesce("k", () -> { calls.incrementAndGet(); return work; });
+        CompletableFuture<String> second = coalescer.coalesce("k", () -> { calls.incrementAndGet(); return work; });
+        work.complete("result");
+
+        assertEquals("result", first.get());
+        assertEquals("result", second.get());
+        assertEquals(1, calls.get());
+        assertEquals(1, coalescer.getCoalesced());
+        assertEquals(0, coalescer.getInFlight());
+
+        coalescer.coalesce("k", () -> { calls.incrementAndGet(); return CompletableFuture.completedFuture("again"); });
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void joinerWithLaterDeadlineExtendsSharedWork() throws Exception {
+        ConnectionLIMS conn = new ConnectionLIMS("fake", 0, "",
+                Collections.singletonList(new ConnectionLIMS.Credential("test", "")), 1, 0,
+                ConnectionLIMS.Routing.ROUND_ROBIN, 1000, 0,
+                (credential, limiter) -> new FakeVeloxConnection(new FakeLims(0, 0), credential.getUser(), limiter));
+        ConnectionPoolLIMS queue = new ConnectionPoolLIMS(conn);
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        Supplier<CompletableFuture<String>> work = () -> queue.supplyAsync(() -> {
+            Thread.sleep(300);
+            Deadline.check();
+            return "result";
+        });
+        try {
+            Deadline.set(Deadline.after(100));
+            CompletableFuture<String> first = coalescer.coalesce("k", work);
+            Deadline.set(Deadline.after(60000));
+            CompletableFuture<String> second = coalescer.coalesce("k", work);
+
+            assertEquals("result", second.get());
+            // the first caller stopped waiting at its own deadline
+            assertDeadlineExceeded(first);
+            assertEquals(1, coalescer.getStarted());
+        } finally {
+            Deadline.set(null);
+            queue.cleanup();
+            conn.close();
+        }
+    }
+
+    @Test
+    public void joinerWithEarlierDeadlineTimesOutAlone() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        CompletableFuture<String> work = new CompletableFuture<>();
+        try {
+            Deadline.set(Deadline.after(60000));
+            CompletableFuture<String> first = coalescer.coalesce("k", () -> work);
+            Deadline.set(Deadline.after(50));
+            CompletableFuture<String> second = coalescer.coalesce("k", () -> work);
+
+            assertDeadlineExceeded(second);
+            assertFalse(first.isDone());
+            work.complete("result");
+            assertEquals("result", first.get());
+            assertEquals(1, coalescer.getCoalesced());
+        } finally {
+            Deadline.set(null);
+        }
+    }
+
+    @Test
+    public void expiredWorkIsNotJoined() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(true);
+        CompletableFuture<String> expired = new CompletableFuture<>();
+        try {
+            Deadline.set(Deadline.after(10));
+            coalescer.coalesce("k", () -> expired);
+            Thread.sleep(30);
+            Deadline.set(Deadline.after(60000));
+            CompletableFuture<String> second = coalescer.coalesce("k", () -> CompletableFuture.completedFuture("own"));
+
+            assertEquals("own", second.get());
+            assertEquals(2, coalescer.getStarted());
+            assertEquals(0, coalescer.getCoalesced());
+        } finally {
+            Deadline.set(null);
+        }
+    }
+
+    @Test
+    public void keyIgnoresParameterOrder() {
+        Map<String, String[]> a = new HashMap<>();
+        a.put("request", new String[]{"06302_AB"});
+        a.put("partial", new String[]{"true"});
+        Map<String, String[]> b = new HashMap<>();
+        b.put("partial", new String[]{"true"});
+        b.put("request", new String[]{" 06302_AB "});
+
+        assertEquals(RequestCoalescer.key("/getRequestTracking", a), RequestCoalescer.key("/getRequestTracking", b));
+    }
+
+    private static void assertDeadlineExceeded(CompletableFuture<String> future)
+            throws InterruptedException, TimeoutException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected the caller's deadline to pass");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DeadlineExceededException);
+        }
+    }
+}
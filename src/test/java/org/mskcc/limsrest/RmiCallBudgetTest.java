@@ -0,0 +1,180 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.DataRecordProxy;
+import org.junit.After;
+import org.junit.Test;
+import org.mskcc.limsrest.service.GetDeliveredTask;
+import org.mskcc.limsrest.service.GetRequestTrackingTask;
+import org.mskcc.limsrest.service.RequestSummary;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class RmiCallBudgetTest {
+    private static final String[] REQUEST_FIELDS = {"Investigator", "LaboratoryHead", "BICAnalysis", "AnalysisType",
+            "RequestName", "ProjectManager", "SampleNumber", "ReceivedDate"};
+
+    private final DataRecordProxy records = LimsRmiProxy.counting(new MockDataRecord());
+
+    private ConnectionLIMS conn;
+
+    @After
+    public void clear() {
+        RmiCallStats.set(null);
+        if (conn != null) {
+            conn.releaseConnection();
+            conn.close();
+        }
+    }
+
+    @Test
+    public void parsesFlatAndPerItemBudgets() {
+        Map<String, RmiCallBudget> budgets = RmiCallBudget.parse("/getRequestTracking:200/100, /getPickListValues:3");
+
+        RmiCallBudget tracking = budgets.get("/getRequestTracking");
+        assertEquals(200, tracking.getAllowedCalls(0));
+        assertEquals(200, tracking.getAllowedCalls(100));
+        assertEquals(400, tracking.getAllowedCalls(101));
+        assertEquals(3, budgets.get("/getPickListValues").getAllowedCalls(1000));
+        assertTrue(RmiCallBudget.parse(" ").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBudgetWithoutCalls() {
+        RmiCallBudget.parse("/getRequestTracking");
+    }
+
+    @Test
+    public void perFieldReadsOfEveryRequestExceedBudget() throws Exception {
+        RmiCallBudget budget = new RmiCallBudget("/getRecentDeliveries", 100, 100);
+        RmiCallStats stats = start();
+
+        for (long request = 0; request < 20; request++) {
+            RmiCallStats.addItems(1);
+            for (String field : REQUEST_FIELDS) {
+                records.getDataField(request, "Request", field, null);
+            }
+        }
+
+        assertTrue(budget.describe(stats), budget.isExceeded(stats));
+        String topSite = stats.getCallsBySite().keySet().iterator().next();
+        assertTrue(topSite, topSite.startsWith("RmiCallBudgetTest.perFieldReadsOfEveryRequestExceedBudget:"));
+        assertTrue(topSite, topSite.endsWith("getDataField(Request)"));
+    }
+
+    @Test
+    public void oneReadPerRequestStaysWithinBudget() throws Exception {
+        RmiCallBudget budget = new RmiCallBudget("/getRecentDeliveries", 100, 100);
+        RmiCallStats stats = start();
+
+        for (long request = 0; request < 20; request++) {
+            RmiCallStats.addItems(1);
+            records.getFields(request, "Request", null);
+        }
+
+        assertFalse(budget.describe(stats), budget.isExceeded(stats));
+        assertEquals(20, stats.getCalls());
+    }
+
+    @Test
+    public void configuredBudgetsMatchEndpointPaths() throws Exception {
+        Map<String, RmiCallBudget> budgets = configuredBudgets();
+
+        assertNotNull(budgets.get("/getRequestTracking"));
+        assertNotNull(budgets.get("/api/getSampleManifest"));
+        assertNotNull(budgets.get("/getRecentDeliveries"));
+    }
+
+    @Test
+    public void recentDeliveriesStayWithinConfiguredBudget() throws Exception {
+        StringBuilder fixture = new StringBuilder("records:\n");
+        for (int request = 1; request <= 3; request++) {
+            fixture.append(request("0630" + request + "_AB", 40, System.currentTimeMillis()));
+        }
+        conn = fakeConnection(fixture.toString());
+        RmiCallBudget budget = configuredBudgets().get("/getRecentDeliveries");
+        RmiCallStats stats = start();
+
+        GetDeliveredTask task = new GetDeliveredTask(conn);
+        task.init(2, "w");
+        @SuppressWarnings("unchecked")
+        List<RequestSummary> delivered = (List<RequestSummary>) task.execute();
+
+        assertEquals(3, delivered.size());
+        assertEquals(40, delivered.get(0).getSamples().size());
+        assertEquals(120, stats.getItems());
+        assertFalse(budget.describe(stats) + " " + stats.getCallsBySite(), budget.isExceeded(stats));
+    }
+
+    @Test
+    public void requestTrackingStaysWithinConfiguredBudget() throws Exception {
+        conn = fakeConnection("records:\n" + request("06302_AB", 120, 0));
+        RmiCallBudget budget = configuredBudgets().get("/getRequestTracking");
+        RmiCallStats stats = start();
+
+        Map<String, Object> tracking = new GetRequestTrackingTask("06302_AB", conn).execute();
+
+        assertEquals(120, ((List<?>) tracking.get("samples")).size());
+        assertEquals(120, stats.getItems());
+        assertFalse(budget.describe(stats) + " " + stats.getCallsBySite(), budget.isExceeded(stats));
+    }
+
+    /**
+     * @return a request whose samples each have an aliquot with a sequencing QC record, as YAML list entry
+     */
+    private static String request(String requestId, int samples, long deliveryDate) {
+        StringBuilder request = new StringBuilder();
+        request.append("  - type: Request\n");
+        request.append("    fields: {RequestId: ").append(requestId).append(", RecentDeliveryDate: ")
+                .append(deliveryDate).append(", LaboratoryHead: Jane Doe, RequestName: IMPACT468, BICAnalysis: false}\n");
+        request.append("    children:\n");
+        for (int i = 1; i <= samples; i++) {
+            String sampleId = requestId + "_" + i;
+            request.append("      - type: Sample\n");
+            request.append("        fields: {SampleId: ").append(sampleId).append(", OtherSampleId: s").append(i)
+                    .append(", RequestId: ").append(requestId).append(", ExemplarSampleStatus: Received")
+                    .append(", DateCreated: 1600000000000, DateModified: 1600000000000}\n");
+            request.append("        children:\n");
+            request.append("          - type: Sample\n");
+            request.append("            fields: {SampleId: ").append(sampleId).append("_1, RequestId: ")
+                    .append(requestId).append(", ExemplarSampleStatus: Completed - Illumina Sequencing Analysis")
+                    .append(", DateCreated: 1600000000000, DateModified: 1600000000000}\n");
+            request.append("            children:\n");
+            request.append("              - type: SeqAnalysisSampleQC\n");
+            request.append("                fields: {Request: ").append(requestId).append(", OtherSampleId: s").append(i)
+                    .append(", SeqQCStatus: Passed, SequencerRunFolder: RUN_0001, TotalReads: 24000000}\n");
+        }
+        return request.toString();
+    }
+
+    private static ConnectionLIMS fakeConnection(String fixture) {
+        FakeLims lims = FakeLims.load(new StringReader(fixture));
+        return new ConnectionLIMS("fake", 0, "", Collections.singletonList(new ConnectionLIMS.Credential("test", "")),
+                1, 0, ConnectionLIMS.Routing.ROUND_ROBIN, 1000, 0,
+                (credential, limiter) -> new FakeVeloxConnection(lims, credential.getUser(), limiter));
+    }
+
+    private static Map<String, RmiCallBudget> configuredBudgets() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get("src/production/resources/app.properties"))) {
+            properties.load(reader);
+        }
+        return RmiCallBudget.parse(properties.getProperty("lims.rmi.budgets"));
+    }
+
+    private static RmiCallStats start() {
+        RmiCallStats stats = new RmiCallStats();
+        stats.trackCallSites();
+        RmiCallStats.set(stats);
+        return stats;
+    }
+}
@@ -0,0 +1,89 @@
+package org.mskcc.limsrest;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.datarecord.DataRecordProxy;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.*;
+
+public class RmiCallStatsTest {
+    @After
+    public void clear() {
+        RmiCallStats.set(null);
+    }
+
+    @Test
+    public void countsRecordCallsByMethodAndDataType() throws Exception {
+        DataRecordProxy records = LimsRmiProxy.counting(new MockDataRecord());
+        RmiCallStats stats = new RmiCallStats();
+        RmiCallStats.set(stats);
+        long before = RmiCallStats.totals().getCalls();
+
+        records.setDataField(1, "Sample", "SampleId", "06302_AB_1", null);
+        records.getDataField(1, "Sample", "SampleId", null);
+        records.getDataField(2, "Sample", "OtherSampleId", null);
+        records.getChildrenOfType(1, "Sample", "IndexBarcode", null);
+
+        assertEquals(4, stats.getCalls());
+        assertEquals(Long.valueOf(2), stats.getCallsByMethod().get("getDataField(Sample)"));
+        assertEquals(Long.valueOf(1), stats.getCallsByMethod().get("getChildrenOfType(IndexBarcode)"));
+        assertEquals("getDataField(Sample)", stats.getCallsByMethod().keySet().iterator().next());
+        assertTrue(RmiCallStats.totals().getCalls() >= before + 4);
+    }
+
+    @Test
+    public void countsCallsOnRecordsReturnedByManager() throws Exception {
+        DataRecordProxy server = (DataRecordProxy) Proxy.newProxyInstance(DataRecordProxy.class.getClassLoader(),
+                new Class<?>[]{DataRecordProxy.class}, (proxy, method, args) ->
+                        method.getName().equals("getChildrenOfType")
+                                ? new DataRecord[]{new DataRecord(2, "Sample", (DataRecordProxy) proxy)} : null);
+        List<DataRecord> requests = Collections.singletonList(new DataRecord(1, "Request", server));
+        DataRecordManager drm = LimsRmiProxy.wrap((DataRecordManager) Proxy.newProxyInstance(
+                DataRecordManager.class.getClassLoader(), new Class<?>[]{DataRecordManager.class},
+                (proxy, method, args) -> requests), null);
+        RmiCallStats stats = new RmiCallStats();
+        RmiCallStats.set(stats);
+
+        DataRecord request = drm.queryDataRecords("Request", "RequestId = '06302'", null).get(0);
+        request.getStringVal("RequestId", null);
+        DataRecord sample = request.getChildrenOfType("Sample", null)[0];
+        sample.getStringVal("SampleId", null);
+
+        assertEquals(1, request.getRecordId());
+        assertEquals(2, sample.getRecordId());
+        assertEquals(4, stats.getCalls());
+        assertEquals(Long.valueOf(1), stats.getCallsByMethod().get("getChildrenOfType(Sample)"));
+        assertEquals(Long.valueOf(1), stats.getCallsByMethod().get("getStringVal(Request)"));
+        assertEquals(Long.valueOf(1), stats.getCallsByMethod().get("getStringVal(Sample)"));
+    }
+
+    @Test
+    public void queuedWorkCountsTowardsSubmittingRequest() throws Exception {
+        DataRecordProxy records = LimsRmiProxy.counting(new MockDataRecord());
+        RmiCallStats stats = new RmiCallStats();
+        RmiCallStats.set(stats);
+        Callable<Object> task = RmiCallStats.propagate(() -> records.getDataField(1, "Request", "RequestId", null));
+        RmiCallStats.set(null);
+
+        Thread worker = new Thread(() -> {
+            try {
+                task.call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        worker.start();
+        worker.join();
+
+        assertEquals(1, stats.getCalls());
+        assertTrue(stats.summary(10).startsWith("calls=1, ms="));
+        assertTrue(stats.summary(10).endsWith("getDataField(Request)=1"));
+    }
+}
@@ -0,0 +1,35 @@
+package org.mskcc.limsrest;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ScheduledReloadTest {
+    @Test
+    public void nextRunTriesAgainAfterFailedReload() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch reloaded = new CountDownLatch(1);
+        try (ScheduledReload reload = new ScheduledReload("test data", 10, () -> {
+            if (runs.incrementAndGet() == 1)
+                throw new IOException("LIMS unavailable");
+            reloaded.countDown();
+        })) {
+            assertTrue(reloaded.await(5, TimeUnit.SECONDS));
+            assertTrue(runs.get() >= 2);
+        }
+    }
+
+    @Test
+    public void loadsOnceWithoutRefreshInterval() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(2);
+        try (ScheduledReload reload = new ScheduledReload("test data", 0, loaded::countDown)) {
+            assertFalse(loaded.await(200, TimeUnit.MILLISECONDS));
+            assertEquals(1, loaded.getCount());
+        }
+    }
+}
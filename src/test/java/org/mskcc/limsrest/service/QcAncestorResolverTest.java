@@ -0,0 +1,152 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import org.junit.Test;
+import org.mskcc.limsrest.FakeLims;
+import org.mskcc.limsrest.util.RecordSnapshot;
+
+import java.io.StringReader;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class QcAncestorResolverTest {
+    private static final String FIXTURE = String.join("\n",
+            "records:",
+            "  - type: Request",
+            "    fields: {RequestId: 06302_AB}",
+            "    children:",
+            "      - type: Sample",
+            "        id: 101",
+            "        fields: {SampleId: 06302_AB_1}",
+            "        children:",
+            "          - type: SeqRequirement",
+            "            id: 301",
+            "            fields: {RequestedReads: 10}",
+            "          - type: Sample",
+            "            id: 102",
+            "            fields: {SampleId: 06302_AB_1_1}",
+            "            children:",
+            "              - type: Sample",
+            "                id: 103",
+            "                fields: {SampleId: 06302_AB_1_1_1}",
+            "                children:",
+            "                  - type: SeqAnalysisSampleQC",
+            "                    id: 201",
+            "      - type: Sample",
+            "        id: 104",
+            "        fields: {SampleId: 06302_AB_2}",
+            "        children:",
+            "          - type: SeqRequirement",
+            "            id: 302",
+            "            fields: {RequestedReads: 20}",
+            "          - type: Sample",
+            "            id: 105",
+            "            fields: {SampleId: 06302_AB_2_1}",
+            "            children:",
+            "              - type: SeqAnalysisSampleQC",
+            "                id: 202",
+            "      - type: Sample",
+            "        id: 106",
+            "        fields: {SampleId: 06302_AB_3}",
+            "        children:",
+            "          - type: SeqAnalysisSampleQC",
+            "            id: 203",
+            "      - type: Sample",
+            "        id: 107",
+            "        fields: {SampleId: 06302_AB_4}",
+            // under the request and also aliquoted from 06302_AB_1
+            "        parents: [101]",
+            "        children:",
+            "          - type: SeqAnalysisSampleQC",
+            "            id: 204",
+            // a pool of both branches
+            "  - type: Sample",
+            "    id: 108",
+            "    fields: {SampleId: Pool-06302_AB}",
+            "    parents: [103, 105]",
+            "    children:",
+            "      - type: SeqAnalysisSampleQC",
+            "        id: 205");
+
+    private final DataRecordManager drm = FakeLims.load(new StringReader(FIXTURE)).getDataRecordManager();
+
+    @Test
+    public void matchesPerRecordWalkInEitherOrder() throws Exception {
+        List<DataRecord> qcRecords = drm.queryDataRecords("SeqAnalysisSampleQC", "1 = 1", null);
+        assertEquals(5, qcRecords.size());
+
+        QcAncestorResolver requirementsFirst = new QcAncestorResolver(drm, null);
+        List<RecordSnapshot> samples = parents(requirementsFirst, qcRecords);
+        assertResolvedLikePerRecordWalk(samples, requirementsFirst.getSeqRequirements(samples),
+                requirementsFirst.getBaseSampleIds(samples));
+
+        QcAncestorResolver baseSamplesFirst = new QcAncestorResolver(drm, null);
+        samples = parents(baseSamplesFirst, qcRecords);
+        Map<Long, String> baseSampleIds = baseSamplesFirst.getBaseSampleIds(samples);
+        assertResolvedLikePerRecordWalk(samples, baseSamplesFirst.getSeqRequirements(samples), baseSampleIds);
+    }
+
+    private static List<RecordSnapshot> parents(QcAncestorResolver resolver, List<DataRecord> qcRecords)
+            throws Exception {
+        List<RecordSnapshot> samples = resolver.getParentSamples(qcRecords);
+        for (int i = 0; i < qcRecords.size(); i++) {
+            assertEquals(qcRecords.get(i).getParentsOfType("Sample", null).get(0).getRecordId(),
+                    samples.get(i).getRecordId());
+        }
+        return samples;
+    }
+
+    private static void assertResolvedLikePerRecordWalk(List<RecordSnapshot> samples,
+                                                        Map<Long, RecordSnapshot> seqRequirements,
+                                                        Map<Long, String> baseSampleIds) throws Exception {
+        Map<String, String> bases = new TreeMap<>();
+        for (RecordSnapshot sample : samples) {
+            DataRecord requirement = seqRequirement(sample.getRecord());
+            RecordSnapshot resolved = seqRequirements.get(sample.getRecordId());
+            assertEquals(requirement == null ? null : requirement.getRecordId(),
+                    resolved == null ? null : resolved.getRecordId());
+            assertEquals(baseSampleId(sample.getRecord()), baseSampleIds.get(sample.getRecordId()));
+            bases.put(sample.getString("SampleId"), baseSampleIds.get(sample.getRecordId()));
+        }
+        assertEquals("06302_AB_1", bases.get("06302_AB_1_1_1"));
+        assertEquals("06302_AB_1", bases.get("Pool-06302_AB"));
+        assertEquals("06302_AB_4", bases.get("06302_AB_4"));
+    }
+
+    /**
+     * The base sample lookup GetSampleQcTask made one record at a time.
+     */
+    private static String baseSampleId(DataRecord sample) throws Exception {
+        DataRecord searchSample = sample;
+        boolean canSearch = true;
+        while (searchSample.getParentsOfType("Request", null).size() == 0 && canSearch) {
+            List<DataRecord> searchParents = searchSample.getParentsOfType("Sample", null);
+            if (searchParents.size() == 0)
+                canSearch = false;
+            else
+                searchSample = searchParents.get(0);
+        }
+        return searchSample.getStringVal("SampleId", null);
+    }
+
+    /**
+     * The SeqRequirement search GetSampleQcTask made one record at a time.
+     */
+    private static DataRecord seqRequirement(DataRecord sample) throws Exception {
+        DataRecord[] requirements = sample.getChildrenOfType("SeqRequirement", null);
+        Deque<DataRecord> queue = new LinkedList<>();
+        queue.addLast(sample);
+        Set<Long> visited = new HashSet<>();
+        while (requirements.length == 0 && !queue.isEmpty()) {
+            DataRecord current = queue.removeFirst();
+            requirements = current.getChildrenOfType("SeqRequirement", null);
+            for (DataRecord parent : current.getParentsOfType("Sample", null)) {
+                if (visited.add(parent.getRecordId()))
+                    queue.addLast(parent);
+            }
+        }
+        return requirements.length > 0 ? requirements[0] : null;
+    }
+}
@@ -0,0 +1,131 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import org.junit.After;
+import org.junit.Test;
+import org.mskcc.limsrest.FakeLims;
+import org.mskcc.limsrest.RmiCallStats;
+
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SampleManifestPrefetchTest {
+    private static final String FIXTURE = String.join("\n",
+            "records:",
+            "  - type: Request",
+            "    fields: {RequestId: 06302_AB}",
+            "    children:",
+            "      - type: Sample",
+            "        id: 101",
+            "        fields: {SampleId: 06302_AB_1, OtherSampleId: s1, Recipe: IMPACT505}",
+            "        children:",
+            "          - type: SeqAnalysisSampleQC",
+            "            id: 201",
+            "            fields: {SeqQCStatus: Passed, SequencerRunFolder: RUN_0001}",
+            "          - type: Sample",
+            "            id: 111",
+            "            fields: {SampleId: 06302_AB_1_1, ExemplarSampleType: DNA Library}",
+            "            children:",
+            "              - type: IndexBarcode",
+            "                fields: {IndexId: DUAL_1, IndexTag: ACGT-TGCA}",
+            "      - type: Sample",
+            "        id: 102",
+            "        fields: {SampleId: 06302_AB_2, OtherSampleId: s2, Recipe: IMPACT505}",
+            "        children:",
+            "          - type: Sample",
+            "            id: 121",
+            "            fields: {SampleId: 06302_AB_2_1, ExemplarSampleType: DNA Library}",
+            "            children:",
+            "              - type: IndexBarcode",
+            "                fields: {IndexId: DUAL_2, IndexTag: GGCC-CCGG}",
+            "  - type: IlluminaSeqExperiment",
+            "    id: 401",
+            "    fields: {SequencerRunFolder: RUN_0001}",
+            "    children:",
+            "      - type: FlowCell",
+            "        id: 402",
+            "        children:",
+            "          - type: FlowCellLane",
+            "            id: 403",
+            "            fields: {LaneNum: 1}",
+            "            parents: [111, 121]");
+    private static final List<String> IGO_IDS = Arrays.asList("06302_AB_1", "06302_AB_2", "06302_AB_9");
+
+    private final AtomicLong managerCalls = new AtomicLong();
+    private final DataRecordManager drm = counting(FakeLims.load(new StringReader(FIXTURE)).getDataRecordManager());
+
+    @After
+    public void clear() {
+        RmiCallStats.set(null);
+    }
+
+    @Test
+    public void prefetchedRecordsMatchOnDemandLookups() throws Exception {
+        List<Object> onDemand = read(new SampleManifestPrefetch(drm, null));
+        assertTrue(onDemand.containsAll(Arrays.asList("ACGT-TGCA", "GGCC-CCGG", 1L, "RUN_0001")));
+
+        SampleManifestPrefetch prefetch = new SampleManifestPrefetch(drm, null).load(IGO_IDS);
+        RmiCallStats stats = new RmiCallStats();
+        RmiCallStats.set(stats);
+        managerCalls.set(0);
+        assertEquals(onDemand, read(prefetch));
+        // the manifest lookups of the requested samples are all served from the prefetch
+        assertEquals(0, stats.getCalls());
+        assertEquals(0, managerCalls.get());
+    }
+
+    /**
+     * The lookups GetSampleManifestTask makes for a sample, from the sample down to the run of its lanes.
+     */
+    private static List<Object> read(SampleManifestPrefetch records) throws Exception {
+        List<Object> read = new ArrayList<>();
+        for (String igoId : IGO_IDS) {
+            List<DataRecord> samples = records.getSamples(igoId);
+            read.add(ids(samples));
+            if (samples.isEmpty())
+                continue;
+            DataRecord sample = samples.get(0);
+            read.add(records.getFields(sample).getString("Recipe"));
+            for (DataRecord qc : records.getDescendantsOfType(sample, "SeqAnalysisSampleQC"))
+                read.add(records.getFields(qc).getString("SequencerRunFolder"));
+            for (DataRecord aliquot : records.getDescendantsOfType(sample, "Sample")) {
+                read.add(records.getFields(aliquot).getString("ExemplarSampleType"));
+                for (DataRecord barcode : records.getDescendantsOfType(aliquot, "IndexBarcode"))
+                    read.add(records.getFields(barcode).getString("IndexTag"));
+                for (DataRecord lane : records.getDescendantsOfType(aliquot, "FlowCellLane")) {
+                    read.add(records.getFields(lane).getLong("LaneNum"));
+                    List<DataRecord> flowCells = records.getParentsOfType(lane, "FlowCell");
+                    read.add(ids(flowCells));
+                    List<DataRecord> runs = records.getParentsOfType(flowCells.get(0), "IlluminaSeqExperiment");
+                    read.add(records.getFields(runs.get(0)).getString("SequencerRunFolder"));
+                }
+            }
+        }
+        return read;
+    }
+
+    private static List<Long> ids(List<DataRecord> records) {
+        List<Long> ids = new ArrayList<>();
+        for (DataRecord record : records)
+            ids.add(record.getRecordId());
+        return ids;
+    }
+
+    private DataRecordManager counting(DataRecordManager target) {
+        return (DataRecordManager) Proxy.newProxyInstance(DataRecordManager.class.getClassLoader(),
+                new Class<?>[]{DataRecordManager.class}, (proxy, method, args) -> {
+                    managerCalls.incrementAndGet();
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,63 @@
+package org.mskcc.limsrest.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LimsQueryTest {
+    @Test
+    public void chunksAreBalanced() {
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            values.add(i);
+        }
+        List<List<Integer>> chunks = LimsQuery.chunk(values, 500);
+
+        assertEquals(2, chunks.size());
+        assertEquals(251, chunks.get(0).size());
+        assertEquals(250, chunks.get(1).size());
+        assertEquals(Integer.valueOf(251), chunks.get(1).get(0));
+        assertTrue(LimsQuery.chunk(Collections.emptyList(), 500).isEmpty());
+    }
+
+    @Test
+    public void valuesAreEscaped() {
+        List<String> clauses = LimsQuery.of("Request")
+                .whereEquals("LaboratoryHead", "O'Reilly")
+                .whereIn("RequestId", Arrays.asList("06302_AB", "x') OR ('1'='1", "06302_AB"))
+                .toWhereClauses();
+
+        assertEquals(Collections.singletonList(
+                "LaboratoryHead = 'O''Reilly' AND RequestId IN ('06302_AB','x'') OR (''1''=''1')"), clauses);
+    }
+
+    @Test
+    public void numbersAreNotQuotedAndOrderIsKept() {
+        List<String> clauses = LimsQuery.of("BankedSample")
+                .whereIn("RecordId", Arrays.asList(1L, 2L, 3L))
+                .orderBy("transactionId, rowIndex")
+                .withChunkSize(3)
+                .toWhereClauses();
+
+        assertEquals(Collections.singletonList("RecordId IN (1,2,3) ORDER BY transactionId, rowIndex"), clauses);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void orderIsNotAppliedAcrossChunks() {
+        LimsQuery.of("BankedSample")
+                .whereIn("RecordId", Arrays.asList(1L, 2L, 3L))
+                .orderBy("transactionId, rowIndex")
+                .withChunkSize(2)
+                .toWhereClauses();
+    }
+
+    @Test
+    public void emptyInListRunsNoQuery() {
+        assertTrue(LimsQuery.of("Request").whereIn("RequestId", Collections.emptyList()).toWhereClauses().isEmpty());
+    }
+}
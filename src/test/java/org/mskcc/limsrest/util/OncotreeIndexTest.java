@@ -0,0 +1,48 @@
+package org.mskcc.limsrest.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class OncotreeIndexTest {
+    private static final String TUMOR_TYPES = "[" +
+            "{\"code\": \"BRCA\", \"name\": \"Invasive Breast Carcinoma\", \"mainType\": \"Breast Cancer\"}," +
+            "{\"code\": \"PAAD\", \"name\": \"Pancreatic Adenocarcinoma\", \"mainType\": \"Pancreatic Cancer\"}," +
+            "{\"code\": \"TISSUE\", \"name\": \"Tissue\", \"mainType\": null}]";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final OncotreeIndex index = new OncotreeIndex(TUMOR_TYPES, 0);
+
+    @Test
+    public void resolvesNamesThenPartialNamesThenCodes() {
+        assertEquals("Breast Cancer", index.getMainType("invasive  breast carcinoma"));
+        assertEquals("Pancreatic Cancer", index.getMainType("Pancreatic Adenocarcinoma/Other"));
+        assertEquals("Pancreatic Cancer", index.getMainType("Pancreatic"));
+        assertEquals("Breast Cancer", index.getMainType("brca "));
+        assertEquals("", index.getMainType("Tissue"));
+        assertEquals("", index.getMainType("Unknown"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void loadsTumorTypesSavedByPreviousRun() throws Exception {
+        Path file = folder.newFile("oncotree.json").toPath();
+        Files.write(file, TUMOR_TYPES.getBytes());
+
+        OncotreeIndex.set(null);
+        try {
+            assertNotNull(OncotreeIndex.loadFile(file));
+            assertEquals("Breast Cancer", Utils.getOncotreeTumorType("BRCA"));
+            assertNull(OncotreeIndex.loadFile(folder.getRoot().toPath().resolve("missing.json")));
+        } finally {
+            OncotreeIndex.set(null);
+        }
+    }
+}
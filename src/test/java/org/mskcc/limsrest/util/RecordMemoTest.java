@@ -0,0 +1,89 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import org.junit.After;
+import org.junit.Test;
+import org.mskcc.limsrest.FakeLims;
+import org.mskcc.limsrest.RmiCallStats;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RecordMemoTest {
+    private static final String FIXTURE = String.join("\n",
+            "records:",
+            "  - type: Request",
+            "    fields: {RequestId: 06302_AB}",
+            "    children:",
+            "      - type: Sample",
+            "        fields: {SampleId: 06302_AB_1}",
+            "        children:",
+            "          - type: SeqRequirement",
+            "            fields: {RequestedReads: 10}",
+            "          - type: SampleCMOInfoRecords",
+            "            fields: {CorrectedCMOID: C-1}",
+            "          - type: Sample",
+            "            fields: {SampleId: 06302_AB_1_1}",
+            "            children:",
+            "              - type: Sample",
+            "                fields: {SampleId: 06302_AB_1_1_1}",
+            "              - type: Sample",
+            "                fields: {SampleId: 06302_AB_1_1_2}",
+            "              - type: Sample",
+            "                fields: {SampleId: 06302_AB_1_1_3}");
+
+    private final DataRecordManager drm = FakeLims.load(new StringReader(FIXTURE)).getDataRecordManager();
+
+    @After
+    public void clear() {
+        RmiCallStats.set(null);
+    }
+
+    @Test
+    public void memoizedLineageMatchesUncachedWalk() throws Exception {
+        List<DataRecord> aliquots = drm.queryDataRecords("Sample", "SampleId LIKE '06302_AB_1_1_%'", null);
+        assertEquals(3, aliquots.size());
+
+        RmiCallStats uncached = new RmiCallStats();
+        RmiCallStats.set(uncached);
+        List<Object> expected = walk(aliquots);
+        assertEquals(0, RecordMemo.forThread(null).getHits());
+
+        RmiCallStats memoized = new RmiCallStats();
+        RmiCallStats.set(memoized);
+        try (RecordMemo memo = RecordMemo.open(null)) {
+            assertEquals(expected, walk(aliquots));
+            // 10 reads per aliquot: its own SeqRequirement and SampleCMOInfoRecords children and Sample parents are
+            // read once each, the children and parents of the shared parent and base sample once for all aliquots
+            assertEquals(3 * 3 + 5, memo.getMisses());
+            assertEquals(3 * 10 - 14, memo.getHits());
+        }
+        assertTrue(memoized.getCalls() < uncached.getCalls());
+    }
+
+    @Test
+    public void closingNestedMemoRestoresOuterMemo() {
+        try (RecordMemo outer = RecordMemo.open(null)) {
+            try (RecordMemo inner = RecordMemo.open(null)) {
+                assertSame(inner, RecordMemo.forThread(null));
+            }
+            assertSame(outer, RecordMemo.forThread(null));
+        }
+        assertEquals(0, RecordMemo.forThread(null).getHits());
+        assertNotSame(RecordMemo.forThread(null), RecordMemo.forThread(null));
+    }
+
+    private static List<Object> walk(List<DataRecord> aliquots) throws Exception {
+        List<Object> results = new ArrayList<>();
+        for (DataRecord aliquot : aliquots) {
+            for (DataRecord requirement : Utils.getRecordsOfTypeFromParents(aliquot, "Sample", "SeqRequirement", null))
+                results.add(requirement.getRecordId());
+            results.add(Utils.getOriginSampleId(aliquot, null));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,41 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.sloan.cmo.recmodels.RequestModel;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class RecordSnapshotTest {
+    @Test
+    public void typedAccessorsAreNullSafe() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("RequestId", "06302_AB");
+        fields.put("SampleNumber", 12);
+        fields.put("IsCmoRequest", Boolean.TRUE);
+        RecordSnapshot snapshot = new RecordSnapshot(null, fields);
+
+        assertEquals("06302_AB", snapshot.getString("RequestId"));
+        assertEquals(Short.valueOf((short) 12), snapshot.getShort("SampleNumber"));
+        assertEquals(Long.valueOf(12), snapshot.getLong("SampleNumber"));
+        assertTrue(snapshot.getBoolean("IsCmoRequest"));
+        assertNull(snapshot.getString("Investigator"));
+        assertNull(snapshot.getLong("RequestId"));
+        assertEquals("", Utils.getRecordStringValue(snapshot, "Investigator"));
+    }
+
+    @Test
+    public void isIgoCompleteFromSnapshot() {
+        Map<String, Object> extraction = new HashMap<>();
+        extraction.put(RequestModel.REQUEST_NAME, "DNAExtraction");
+        extraction.put(RequestModel.COMPLETED_DATE, 1590000000000L);
+        assertTrue(StatusTrackerConfig.isIgoComplete(new RecordSnapshot(null, extraction)));
+
+        Map<String, Object> sequencing = new HashMap<>();
+        sequencing.put(RequestModel.REQUEST_NAME, "IMPACT505");
+        sequencing.put(RequestModel.COMPLETED_DATE, 1590000000000L);
+        assertFalse(StatusTrackerConfig.isIgoComplete(new RecordSnapshot(null, sequencing)));
+    }
+}
@@ -0,0 +1,153 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import org.junit.After;
+import org.junit.Test;
+import org.mskcc.limsrest.FakeLims;
+import org.mskcc.limsrest.RmiCallStats;
+
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SampleSubtreeLoaderTest {
+    private static final String FIXTURE = String.join("\n",
+            "records:",
+            "  - type: Request",
+            "    fields: {RequestId: 06302_AB}",
+            "    children:",
+            "      - type: Sample",
+            "        id: 101",
+            "        fields: {SampleId: 06302_AB_1}",
+            "        children:",
+            "          - type: Sample",
+            "            id: 111",
+            "            fields: {SampleId: 06302_AB_1_1}",
+            "            children:",
+            "              - type: SeqAnalysisSampleQC",
+            "                fields: {SeqQCStatus: Passed}",
+            "          - type: Sample",
+            "            id: 112",
+            "            fields: {SampleId: 06302_AB_1_2}",
+            "      - type: Sample",
+            "        id: 102",
+            "        fields: {SampleId: 06302_AB_2}",
+            "        children:",
+            "          - type: Sample",
+            "            id: 121",
+            "            fields: {SampleId: 06302_AB_2_1}",
+            // pooled with the samples of another request, not descended into
+            "          - type: Sample",
+            "            id: 122",
+            "            fields: {SampleId: Pool-06302_AB-07951_C}",
+            "            children:",
+            "              - type: Sample",
+            "                id: 123",
+            "                fields: {SampleId: Pool-06302_AB-07951_C_1}",
+            // pool of both samples of the request
+            "  - type: Sample",
+            "    id: 131",
+            "    fields: {SampleId: 06302_AB_POOL_1}",
+            "    parents: [111, 121]",
+            "    children:",
+            "      - type: SeqAnalysisSampleQC",
+            "        fields: {SeqQCStatus: Failed}",
+            "      - type: Sample",
+            "        id: 132",
+            "        fields: {SampleId: 06302_AB_POOL_1_1}");
+
+    private final AtomicLong managerCalls = new AtomicLong();
+    private final DataRecordManager drm = counting(FakeLims.load(new StringReader(FIXTURE)).getDataRecordManager());
+
+    @After
+    public void clear() {
+        RmiCallStats.set(null);
+    }
+
+    @Test
+    public void treeMatchesPerSampleWalk() throws Exception {
+        DataRecord[] roots = drm.queryDataRecords("Request", "RequestId = '06302_AB'", null).get(0)
+                .getChildrenOfType("Sample", null);
+
+        RmiCallStats perSample = new RmiCallStats();
+        RmiCallStats.set(perSample);
+        Map<Long, List<Long>> expected = new TreeMap<>();
+        for (DataRecord root : roots) {
+            walk(root, expected);
+        }
+        long perSampleCalls = perSample.getCalls() + managerCalls.getAndSet(0);
+
+        RmiCallStats batched = new RmiCallStats();
+        RmiCallStats.set(batched);
+        SampleSubtree tree = new SampleSubtreeLoader(drm, null)
+                .withChildrenOfType("SeqAnalysisSampleQC")
+                .descendWhen(sample -> sample.getString("SampleId").contains("06302_AB_"))
+                .load(Arrays.asList(roots));
+
+        Map<Long, List<Long>> loaded = new TreeMap<>();
+        for (SampleSubtree.Node root : tree.getRoots()) {
+            edges(root, loaded);
+        }
+        assertEquals(expected, loaded);
+        assertEquals(4, tree.getDepth());
+        // the fields of the roots, then per level at most a list call and a fields call each for the Sample and QC
+        // children, and none of the per record calls
+        assertEquals(0, batched.getCalls());
+        assertTrue(managerCalls.get() <= 1 + 4 * tree.getDepth());
+        assertTrue(managerCalls.get() < perSampleCalls);
+
+        // the pool is one node below both of its parents, with its QC child loaded once
+        SampleSubtree.Node pool = tree.getNode(131);
+        assertSame(pool, tree.getNode(111).getChildren().get(0));
+        assertSame(pool, tree.getNode(121).getChildren().get(0));
+        assertEquals("Failed", pool.getChildrenOfType("SeqAnalysisSampleQC").get(0).getString("SeqQCStatus"));
+        assertEquals("Passed", tree.getNode(111).getChildrenOfType("SeqAnalysisSampleQC").get(0).getString("SeqQCStatus"));
+        // samples of other requests are leaves
+        assertFalse(tree.getNode(122).isExpanded());
+        assertNull(tree.getNode(123));
+    }
+
+    private DataRecordManager counting(DataRecordManager target) {
+        return (DataRecordManager) Proxy.newProxyInstance(DataRecordManager.class.getClassLoader(),
+                new Class<?>[]{DataRecordManager.class}, (proxy, method, args) -> {
+                    managerCalls.incrementAndGet();
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * The walk request tracking made one sample at a time, following children of the request only.
+     */
+    private static void walk(DataRecord sample, Map<Long, List<Long>> edges) throws Exception {
+        List<Long> children = new ArrayList<>();
+        for (DataRecord child : sample.getChildrenOfType("Sample", null)) {
+            if (child.getStringVal("SampleId", null).contains("06302_AB_")) {
+                children.add(child.getRecordId());
+                walk(child, edges);
+            }
+        }
+        if (!children.isEmpty())
+            edges.put(sample.getRecordId(), children);
+    }
+
+    private static void edges(SampleSubtree.Node node, Map<Long, List<Long>> edges) {
+        List<Long> children = new ArrayList<>();
+        for (SampleSubtree.Node child : node.getChildren()) {
+            if (child.getFields().getString("SampleId").contains("06302_AB_")) {
+                children.add(child.getRecordId());
+                edges(child, edges);
+            }
+        }
+        if (!children.isEmpty())
+            edges.put(node.getRecordId(), children);
+    }
+}
@@ -0,0 +1,69 @@
+package org.mskcc.limsrest.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mskcc.limsrest.util.StatusTrackerConfig.*;
+
+public class WorkflowStageMapTest {
+    @Test
+    public void compiledStatusesResolveLikeParsedStatuses() {
+        Map<String, LimsStage> stages = new HashMap<>();
+        stages.put("Illumina Sequencing", new LimsStage(STAGE_SEQUENCING, false));
+        stages.put("DNA Extraction", new LimsStage(STAGE_EXTRACTION, true));
+        stages.put("Returned to User", new LimsStage(STAGE_RETURNED_TO_USER, true));
+        WorkflowStageMap map = swapWorkflowMap(stages);
+
+        List<String> statuses = new ArrayList<>();
+        for (String workflow : Arrays.asList("Illumina Sequencing", "DNA Extraction", "Unknown Workflow")) {
+            for (String progressStatus : WORKFLOW_PROGRESS_STATUSES)
+                statuses.add(progressStatus + workflow);
+        }
+        // non-standard statuses, parsed on first use
+        statuses.addAll(Arrays.asList("Returned to User", "Awaiting Processing", "Sample Received - Failed - DNA Extraction",
+                "Ready for - ", "Completed - Illumina Sequencing - Completed - DNA Extraction"));
+
+        for (String status : statuses) {
+            assertEquals(status, parsed(stages, status).toString(), map.resolve(status).toString());
+            // the second lookup is served from the statuses seen before
+            assertSame(status, map.resolve(status), map.resolve(status));
+        }
+        // the compiled statuses are the stage of the workflow itself
+        assertSame(stages.get("DNA Extraction"), map.resolve("Failed - DNA Extraction"));
+    }
+
+    @Test
+    public void stageOrderMatchesLinearScan() {
+        List<String> names = new ArrayList<>(Arrays.asList(STAGE_ORDER));
+        names.addAll(Arrays.asList("Unknown Stage", "", STAGE_SEQUENCING.toUpperCase()));
+        for (String name : names)
+            assertEquals(name, scan(name), getStageOrder(name));
+    }
+
+    /**
+     * The stage lookup made for every status before the statuses were compiled.
+     */
+    private static LimsStage parsed(Map<String, LimsStage> stages, String status) {
+        String workflowName = status;
+        for (String progressStatus : WORKFLOW_PROGRESS_STATUSES) {
+            String[] workflowStatus = status.split(progressStatus);
+            if (workflowStatus.length == 2) {
+                workflowName = workflowStatus[1];
+                break;
+            }
+        }
+        if (stages.containsKey(workflowName))
+            return stages.get(workflowName);
+        return new LimsStage(STAGE_AWAITING_PROCESSING, false);
+    }
+
+    private static int scan(String status) {
+        for (int i = 0; i < STAGE_ORDER.length; i++) {
+            if (STAGE_ORDER[i].equals(status))
+                return i;
+        }
+        return STAGE_ORDER.length;
+    }
+}
@@ -0,0 +1,41 @@
+package org.mskcc.limsrest.util;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mskcc.limsrest.util.StatusTrackerConfig.*;
+
+public class WorkflowStageReloadTest {
+    @Test
+    public void reloadSwapsInNewStagesAndKeepsThemWhenReloadFails() {
+        WorkflowStageMap first = swapWorkflowMap(Collections.singletonMap("DNA Extraction",
+                new LimsStage(STAGE_EXTRACTION, true)));
+        // once loaded, lookups never need the connection
+        assertEquals(STAGE_EXTRACTION, getLimsStageFromStatus(null, "Completed - DNA Extraction").getStageName());
+
+        Map<String, LimsStage> renamed = new HashMap<>();
+        renamed.put("Nucleic Acid Extraction", new LimsStage(STAGE_EXTRACTION, true));
+        renamed.put("Illumina Sequencing", new LimsStage(STAGE_SEQUENCING, false));
+        WorkflowStageMap second = swapWorkflowMap(renamed);
+
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertSame(second, getWorkflowStageMap());
+        assertEquals(STAGE_EXTRACTION,
+                getLimsStageFromStatus(null, "Ready for - Nucleic Acid Extraction").getStageName());
+        assertEquals("Sequencing - In-Processing",
+                getLimsStageFromStatus(null, "In Process - Illumina Sequencing").toString());
+        assertEquals(STAGE_AWAITING_PROCESSING,
+                getLimsStageFromStatus(null, "Completed - DNA Extraction").getStageName());
+        // a task still holding the previous map keeps getting the answers of that map
+        assertEquals(STAGE_EXTRACTION, first.resolve("Completed - DNA Extraction").getStageName());
+        assertEquals(1, first.getStages().size());
+
+        // the workflows could not be read
+        assertSame(second, swapWorkflowMap(null));
+        assertEquals(STAGE_SEQUENCING, getLimsStageFromStatus(null, "Completed - Illumina Sequencing").getStageName());
+    }
+}